@@ -0,0 +1,37 @@
+package br.com.fiap.smartlocation.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+/**
+ * Coloca o controle de admissão ({@link AdmissaoConexaoDataSource}) na frente do DataSource do Hikari.
+ * As propriedades são lidas do Environment porque BeanPostProcessors são criados antes da injeção de @Value.
+ */
+@Component
+@Slf4j
+public class AdmissaoConexaoConfig implements BeanPostProcessor, EnvironmentAware {
+
+    private Environment environment;
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.environment = environment;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof HikariDataSource hikari)
+                || !environment.getProperty("banco.admissao.habilitado", Boolean.class, true)) {
+            return bean;
+        }
+        long esperaMaxMs = environment.getProperty("banco.admissao.espera-max-ms", Long.class, 3000L);
+        int maxFila = environment.getProperty("banco.admissao.max-fila", Integer.class, 50);
+        log.info("Admissão de conexões ativa: {} conexões, espera máx. {} ms, fila máx. {} threads",
+                hikari.getMaximumPoolSize(), esperaMaxMs, maxFila);
+        return new AdmissaoConexaoDataSource(hikari, hikari.getMaximumPoolSize(), esperaMaxMs, maxFila);
+    }
+}
@@ -0,0 +1,165 @@
+package br.com.fiap.smartlocation.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Controle de admissão na frente do pool de conexões: uma fila justa (FIFO) com uma permissão por conexão,
+ * espera limitada e recusa imediata quando a fila de espera já está longa.
+ * Assim, com o pool de uma conexão, as requisições não ficam presas até o connection-timeout do Hikari:
+ * esperam em ordem de chegada por pouco tempo ou falham rápido (a API responde 503).
+ * Um thread que já possui uma conexão admitida não disputa outra permissão com os demais.
+ */
+@Slf4j
+public class AdmissaoConexaoDataSource extends DelegatingDataSource {
+
+    private final Semaphore permissoes;
+    private final long esperaMaxMs;
+    private final int maxFila;
+
+    // Conexões admitidas ainda abertas por thread
+    private final ThreadLocal<AtomicInteger> abertasNoThread = ThreadLocal.withInitial(AtomicInteger::new);
+
+    private final AtomicLong admitidas = new AtomicLong();
+    private final AtomicLong recusadasFila = new AtomicLong();
+    private final AtomicLong recusadasEspera = new AtomicLong();
+    private final AtomicLong nanosEspera = new AtomicLong();
+
+    public AdmissaoConexaoDataSource(DataSource alvo, int conexoes, long esperaMaxMs, int maxFila) {
+        super(alvo);
+        this.permissoes = new Semaphore(Math.max(1, conexoes), true);
+        this.esperaMaxMs = esperaMaxMs;
+        this.maxFila = maxFila;
+    }
+
+    /**
+     * Recusa de admissão: nenhuma conexão ficou livre dentro da espera máxima ou a fila estava cheia
+     */
+    public static class ConexaoIndisponivelException extends SQLTransientConnectionException {
+        private static final long serialVersionUID = 1L;
+
+        public ConexaoIndisponivelException(String mensagem) {
+            super(mensagem);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        AtomicInteger abertas = admitir();
+        try {
+            return envolver(obterDataSourceAlvo().getConnection(), abertas);
+        } catch (SQLException | RuntimeException e) {
+            liberar(abertas);
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String usuario, String senha) throws SQLException {
+        AtomicInteger abertas = admitir();
+        try {
+            return envolver(obterDataSourceAlvo().getConnection(usuario, senha), abertas);
+        } catch (SQLException | RuntimeException e) {
+            liberar(abertas);
+            throw e;
+        }
+    }
+
+    private DataSource obterDataSourceAlvo() {
+        DataSource alvo = getTargetDataSource();
+        if (alvo == null) {
+            throw new IllegalStateException("DataSource de destino não configurado");
+        }
+        return alvo;
+    }
+
+    private AtomicInteger admitir() throws SQLException {
+        AtomicInteger abertas = abertasNoThread.get();
+        if (abertas.get() > 0) {
+            // Já admitido: esperar pela própria permissão travaria o thread
+            abertas.incrementAndGet();
+            return abertas;
+        }
+        if (permissoes.getQueueLength() >= maxFila) {
+            recusadasFila.incrementAndGet();
+            throw new ConexaoIndisponivelException("Fila de espera por conexão cheia (" + maxFila + " threads)");
+        }
+        long inicio = System.nanoTime();
+        boolean admitido;
+        try {
+            admitido = permissoes.tryAcquire(esperaMaxMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConexaoIndisponivelException("Espera por conexão interrompida");
+        }
+        nanosEspera.addAndGet(System.nanoTime() - inicio);
+        if (!admitido) {
+            recusadasEspera.incrementAndGet();
+            log.warn("Nenhuma conexão livre após {} ms ({} threads aguardando)", esperaMaxMs, permissoes.getQueueLength());
+            throw new ConexaoIndisponivelException("Nenhuma conexão livre após " + esperaMaxMs + " ms");
+        }
+        admitidas.incrementAndGet();
+        abertas.incrementAndGet();
+        return abertas;
+    }
+
+    private void liberar(AtomicInteger abertas) {
+        if (abertas.decrementAndGet() == 0) {
+            permissoes.release();
+        }
+    }
+
+    /**
+     * Conexão que devolve a permissão ao ser fechada (uma única vez)
+     */
+    private Connection envolver(Connection conexao, AtomicInteger abertas) {
+        AtomicBoolean fechada = new AtomicBoolean(false);
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, metodo, args) -> {
+                    if ("close".equals(metodo.getName()) && metodo.getParameterCount() == 0) {
+                        if (fechada.compareAndSet(false, true)) {
+                            try {
+                                conexao.close();
+                            } finally {
+                                liberar(abertas);
+                            }
+                        }
+                        return null;
+                    }
+                    try {
+                        return metodo.invoke(conexao, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getTargetException();
+                    }
+                });
+    }
+
+    /**
+     * Métricas da admissão: threads aguardando, admitidas, recusadas e espera média (ms)
+     */
+    public Map<String, Number> getMetricas() {
+        long n = admitidas.get() + recusadasEspera.get();
+        Map<String, Number> metricas = new LinkedHashMap<>();
+        metricas.put("aguardando", permissoes.getQueueLength());
+        metricas.put("permissoesLivres", permissoes.availablePermits());
+        metricas.put("admitidas", admitidas.get());
+        metricas.put("recusadasFilaCheia", recusadasFila.get());
+        metricas.put("recusadasTempoEsgotado", recusadasEspera.get());
+        metricas.put("esperaMediaMs", n > 0 ? nanosEspera.get() / 1_000_000d / n : 0d);
+        return metricas;
+    }
+}
@@ -1,15 +1,28 @@
 package br.com.fiap.smartlocation.controller.api;
 
-import br.com.fiap.smartlocation.dto.AnaliseResultadoDTO;
+import br.com.fiap.smartlocation.dto.AnaliseJobDTO;
 import br.com.fiap.smartlocation.dto.DeteccaoDTO;
+import br.com.fiap.smartlocation.dto.IngestaoResultadoDTO;
+import br.com.fiap.smartlocation.dto.RastreamentoResultadoDTO;
+import br.com.fiap.smartlocation.service.AnaliseJobService;
+import br.com.fiap.smartlocation.service.DeteccaoMotoService;
+import br.com.fiap.smartlocation.service.DeteccaoStreamService;
 import br.com.fiap.smartlocation.service.PythonIntegrationService;
+import br.com.fiap.smartlocation.service.RastreamentoService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.net.URI;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Optional;
 
 /**
  * Controller REST para integração com Python
@@ -22,25 +35,127 @@ import java.util.concurrent.CompletableFuture;
 public class AnaliseRestController {
 
     private final PythonIntegrationService pythonService;
+    private final AnaliseJobService jobService;
+    private final DeteccaoStreamService deteccaoStream;
+    private final RastreamentoService rastreamentoService;
+    private final DeteccaoMotoService deteccaoService;
+
+    @Value("${analise.pendentes.limite-previa:200}")
+    private int limitePreviaPendentes;
 
     @PostMapping("/iniciar")
-    public ResponseEntity<String> iniciarAnalise() {
+    public ResponseEntity<AnaliseJobDTO> iniciarAnalise() {
         log.info("POST /api/analise/iniciar - Iniciando análise Python");
-        
-        if (pythonService.isAnaliseEmExecucao()) {
-            return ResponseEntity.badRequest().body("Já existe uma análise em execução");
+        return submeter(null, 0);
+    }
+
+    /**
+     * Enfileira a análise de um vídeo da pasta 'video' (ex.: uma câmera do pátio)
+     */
+    @PostMapping("/jobs")
+    public ResponseEntity<AnaliseJobDTO> criarJob(@RequestParam(required = false) String video,
+                                                  @RequestParam(defaultValue = "0") int prioridade) {
+        log.info("POST /api/analise/jobs - Enfileirando análise do vídeo {} (prioridade {})", video, prioridade);
+        return submeter(video, prioridade);
+    }
+
+    @GetMapping("/jobs")
+    public ResponseEntity<List<AnaliseJobDTO>> listarJobs() {
+        log.info("GET /api/analise/jobs - Listando jobs de análise");
+        return ResponseEntity.ok(jobService.listar());
+    }
+
+    @GetMapping("/jobs/{id}")
+    public ResponseEntity<AnaliseJobDTO> buscarJob(@PathVariable String id) {
+        log.info("GET /api/analise/jobs/{} - Consultando job", id);
+        return jobService.buscar(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Detecções do job via Server-Sent Events à medida que o worker as produz.
+     * Eventos: "deteccoes" (lote de DeteccaoDTO) e "fim" (status e total).
+     */
+    @GetMapping(value = "/jobs/{id}/deteccoes/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> acompanharDeteccoes(@PathVariable String id) {
+        log.info("GET /api/analise/jobs/{}/deteccoes/stream - Inscrevendo cliente SSE", id);
+        return jobService.buscar(id)
+                .map(job -> {
+                    boolean finalizado = !"FILA".equals(job.getStatus()) && !"EXECUTANDO".equals(job.getStatus());
+                    return ResponseEntity.ok(deteccaoStream.inscrever(id, finalizado, job.getStatus()));
+                })
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Trilhas (uma por moto) e eventos de entrada/saída do resultado de um job concluído
+     */
+    @GetMapping("/jobs/{id}/tracks")
+    public ResponseEntity<RastreamentoResultadoDTO> rastrearJob(@PathVariable String id) {
+        log.info("GET /api/analise/jobs/{}/tracks - Rastreando detecções do job", id);
+        if (jobService.isEmAndamento(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         }
+        try {
+            return rastreamentoService.rastrearExecucao(id)
+                    .map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (IOException e) {
+            log.error("Erro ao rastrear detecções do job {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 
-        CompletableFuture<AnaliseResultadoDTO> futureResultado = pythonService.executarAnalise();
-        
-        return ResponseEntity.accepted().body("Análise iniciada com sucesso");
+    /**
+     * Persiste uma detecção por trilha (em vez de uma por quadro) do resultado de um job.
+     * Cada job é salvo uma única vez; repetições recebem 409.
+     */
+    @PostMapping("/jobs/{id}/tracks/salvar")
+    public ResponseEntity<IngestaoResultadoDTO> salvarTracks(@PathVariable String id) {
+        log.info("POST /api/analise/jobs/{}/tracks/salvar - Salvando uma detecção por trilha", id);
+        if (jobService.isEmAndamento(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        }
+        try {
+            Optional<RastreamentoResultadoDTO> resultado = rastreamentoService.rastrearExecucao(id);
+            if (resultado.isEmpty()) {
+                return ResponseEntity.notFound().build();
+            }
+            if (!rastreamentoService.marcarTracksSalvas(id)) {
+                log.warn("Trilhas do job {} já foram salvas", id);
+                return ResponseEntity.status(HttpStatus.CONFLICT).build();
+            }
+            try {
+                return ResponseEntity.status(HttpStatus.CREATED)
+                        .body(deteccaoService.ingerirEmLote(rastreamentoService.consolidar(resultado.get())));
+            } catch (RuntimeException e) {
+                rastreamentoService.desmarcarTracksSalvas(id);
+                throw e;
+            }
+        } catch (IOException e) {
+            log.error("Erro ao rastrear detecções do job {}", id, e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @DeleteMapping("/jobs/{id}")
+    public ResponseEntity<AnaliseJobDTO> cancelarJob(@PathVariable String id) {
+        log.info("DELETE /api/analise/jobs/{} - Cancelando job", id);
+        if (jobService.buscar(id).isEmpty()) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!jobService.cancelar(id)) {
+            return ResponseEntity.status(409).body(jobService.buscar(id).orElse(null));
+        }
+        return ResponseEntity.ok(jobService.buscar(id).orElse(null));
     }
 
     @GetMapping("/status")
     public ResponseEntity<String> verificarStatus() {
         log.info("GET /api/analise/status - Verificando status da análise");
         
-        if (pythonService.isAnaliseEmExecucao()) {
+        if (jobService.isAnaliseEmExecucao()) {
             return ResponseEntity.ok("EM_EXECUCAO");
         } else {
             return ResponseEntity.ok("CONCLUIDA");
@@ -49,21 +164,41 @@ public class AnaliseRestController {
 
     @PostMapping("/cancelar")
     public ResponseEntity<String> cancelarAnalise() {
-        log.info("POST /api/analise/cancelar - Cancelando análise");
-        pythonService.cancelarAnalise();
+        log.info("POST /api/analise/cancelar - Cancelando análises");
+        jobService.cancelarTodos();
         return ResponseEntity.ok("Análise cancelada");
     }
 
+    /**
+     * Primeiras detecções do último resultado, no máximo analise.pendentes.limite-previa
+     * (ou o {@code limite} informado, se menor)
+     */
     @GetMapping("/deteccoes-pendentes")
-    public ResponseEntity<List<DeteccaoDTO>> carregarDeteccoesPendentes() {
+    public ResponseEntity<List<DeteccaoDTO>> carregarDeteccoesPendentes(@RequestParam(required = false) Integer limite) {
         log.info("GET /api/analise/deteccoes-pendentes - Carregando detecções pendentes");
         
         try {
-            List<DeteccaoDTO> deteccoes = pythonService.carregarDeteccoesPendentes();
+            int maximo = limite != null ? Math.max(0, Math.min(limite, limitePreviaPendentes)) : limitePreviaPendentes;
+            List<DeteccaoDTO> deteccoes = pythonService.carregarDeteccoesPendentes(maximo);
             return ResponseEntity.ok(deteccoes);
         } catch (Exception e) {
             log.error("Erro ao carregar detecções pendentes", e);
             return ResponseEntity.internalServerError().build();
         }
     }
+
+    private ResponseEntity<AnaliseJobDTO> submeter(String video, int prioridade) {
+        try {
+            AnaliseJobDTO job = jobService.submeter(video, prioridade);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/analise/jobs/" + job.getId()))
+                    .body(job);
+        } catch (FileNotFoundException e) {
+            log.warn("Vídeo não encontrado: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            log.error("Erro ao enfileirar análise", e);
+            return ResponseEntity.internalServerError().build();
+        }
+    }
 }
@@ -0,0 +1,40 @@
+package br.com.fiap.smartlocation.controller.api;
+
+import br.com.fiap.smartlocation.config.AdmissaoConexaoDataSource.ConexaoIndisponivelException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.util.Map;
+
+/**
+ * Converte a recusa da admissão de conexões em 503 com Retry-After nas APIs REST.
+ * A recusa chega embrulhada conforme o ponto em que ocorreu: na abertura da transação, no acesso
+ * via JPA (DataAccessResourceFailureException) ou via JdbcTemplate, que traduz a
+ * SQLTransientConnectionException em TransientDataAccessResourceException.
+ */
+@RestControllerAdvice(basePackages = "br.com.fiap.smartlocation.controller.api")
+@Slf4j
+public class ConexaoIndisponivelAdvice {
+
+    private static final String SEGUNDOS_PARA_REENVIO = "1";
+
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class,
+            TransientDataAccessResourceException.class})
+    public ResponseEntity<Map<String, String>> conexaoIndisponivel(RuntimeException e) {
+        if (!(NestedExceptionUtils.getMostSpecificCause(e) instanceof ConexaoIndisponivelException)) {
+            throw e;
+        }
+        log.debug("Requisição recusada por falta de conexão: {}", e.getMessage());
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, SEGUNDOS_PARA_REENVIO)
+                .body(Map.of("erro", "Banco de dados ocupado, tente novamente"));
+    }
+}
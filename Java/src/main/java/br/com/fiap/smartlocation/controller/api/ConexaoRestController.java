@@ -0,0 +1,29 @@
+package br.com.fiap.smartlocation.controller.api;
+
+import br.com.fiap.smartlocation.config.AdmissaoConexaoDataSource;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * Métricas da admissão de conexões ao banco
+ */
+@RestController
+@RequestMapping("/api/conexoes")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "*")
+public class ConexaoRestController {
+
+    private final DataSource dataSource;
+
+    @GetMapping("/admissao")
+    public ResponseEntity<Map<String, Number>> metricasAdmissao() {
+        if (dataSource instanceof AdmissaoConexaoDataSource admissao) {
+            return ResponseEntity.ok(admissao.getMetricas());
+        }
+        return ResponseEntity.notFound().build();
+    }
+}
@@ -1,16 +1,28 @@
 package br.com.fiap.smartlocation.controller.api;
 
+import br.com.fiap.smartlocation.dto.DeteccaoDTO;
+import br.com.fiap.smartlocation.dto.DeteccaoResumoDTO;
+import br.com.fiap.smartlocation.dto.IngestaoResultadoDTO;
+import br.com.fiap.smartlocation.dto.PaginaDeteccoesDTO;
 import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import br.com.fiap.smartlocation.service.DeduplicacaoDeteccoesService;
+import br.com.fiap.smartlocation.service.DeteccaoRollupService;
+import br.com.fiap.smartlocation.service.FilaIngestaoDeteccoesService;
 import br.com.fiap.smartlocation.service.DeteccaoMotoService;
+import br.com.fiap.smartlocation.service.IndiceEspacialDeteccoesService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controller REST para gerenciamento de detecções
@@ -23,11 +35,67 @@ import java.util.List;
 public class DeteccaoRestController {
 
     private final DeteccaoMotoService deteccaoService;
+    private final IndiceEspacialDeteccoesService indiceEspacial;
+    private final DeduplicacaoDeteccoesService deduplicacao;
+    private final DeteccaoRollupService rollup;
+    private final FilaIngestaoDeteccoesService filaIngestao;
 
+    private static final String HEADER_RESOLUCAO = "X-Resolucao";
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    /**
+     * Lista detecções paginadas por cursor (horário, id) da mais recente para a mais antiga.
+     * Para a próxima página, repassar proximoHorario/proximoId da resposta anterior.
+     */
     @GetMapping
-    public ResponseEntity<List<DeteccaoMoto>> listarTodas() {
-        log.info("GET /api/deteccoes - Listando todas as detecções");
-        return ResponseEntity.ok(deteccaoService.listarTodas());
+    public ResponseEntity<PaginaDeteccoesDTO> listarPagina(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorHorario,
+            @RequestParam(required = false) Long cursorId,
+            @RequestParam(required = false) Integer tamanho) {
+        log.info("GET /api/deteccoes - Listando página de detecções (cursor: {} / {})", cursorHorario, cursorId);
+        return ResponseEntity.ok(deteccaoService.listarPagina(cursorHorario, cursorId, tamanho));
+    }
+
+    /**
+     * Exporta todas as detecções em NDJSON, em streaming, sem carregar a tabela em memória
+     */
+    @GetMapping(value = "/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportar() {
+        log.info("GET /api/deteccoes/export - Exportando detecções em NDJSON");
+        StreamingResponseBody body = deteccaoService::exportarNdjson;
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"deteccoes.ndjson\"")
+                .body(body);
+    }
+
+    /**
+     * Detecções recentes dentro de um retângulo (coordenadas em pixels), servidas pelo índice espacial
+     */
+    @GetMapping("/area")
+    public ResponseEntity<List<DeteccaoDTO>> buscarNaArea(
+            @RequestParam double xMin, @RequestParam double yMin,
+            @RequestParam double xMax, @RequestParam double yMax,
+            @RequestParam(defaultValue = "500") int limite) {
+        log.info("GET /api/deteccoes/area - Buscando detecções em [{}, {}] x [{}, {}]", xMin, xMax, yMin, yMax);
+        if (xMin > xMax || yMin > yMax) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(indiceEspacial.buscarNaArea(xMin, yMin, xMax, yMax, limite));
+    }
+
+    /**
+     * Detecções recentes a até {@code raio} pixels do ponto (x, y), servidas pelo índice espacial
+     */
+    @GetMapping("/raio")
+    public ResponseEntity<List<DeteccaoDTO>> buscarNoRaio(
+            @RequestParam double x, @RequestParam double y, @RequestParam double raio,
+            @RequestParam(defaultValue = "500") int limite) {
+        log.info("GET /api/deteccoes/raio - Buscando detecções a {} px de ({}, {})", raio, x, y);
+        if (raio < 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(indiceEspacial.buscarNoRaio(x, y, raio, limite));
     }
 
     @GetMapping("/{id}")
@@ -39,30 +107,82 @@ public class DeteccaoRestController {
     }
 
     @GetMapping("/moto/{idMoto}")
-    public ResponseEntity<List<DeteccaoMoto>> buscarPorMoto(@PathVariable Long idMoto) {
+    public ResponseEntity<List<DeteccaoResumoDTO>> buscarPorMoto(@PathVariable Long idMoto) {
         log.info("GET /api/deteccoes/moto/{} - Buscando detecções por moto", idMoto);
         return ResponseEntity.ok(deteccaoService.buscarPorMoto(idMoto));
     }
 
+    /**
+     * Detecções do período. Períodos curtos (ou {@code bruto=true}) devolvem as detecções;
+     * os longos devolvem a série agregada na resolução mais fina que cabe no limite de pontos.
+     * O cabeçalho X-Resolucao informa o formato: BRUTO, MINUTO, HORA ou DIA; {@code patioId} filtra só a série.
+     */
     @GetMapping("/periodo")
-    public ResponseEntity<List<DeteccaoMoto>> buscarPorPeriodo(
+    public ResponseEntity<List<?>> buscarPorPeriodo(
             @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
-            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim) {
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim,
+            @RequestParam(required = false) Long patioId,
+            @RequestParam(defaultValue = "false") boolean bruto) {
         log.info("GET /api/deteccoes/periodo - Buscando detecções entre {} e {}", inicio, fim);
-        return ResponseEntity.ok(deteccaoService.buscarPorPeriodo(inicio, fim));
+        if (fim.isBefore(inicio)) {
+            return ResponseEntity.badRequest().build();
+        }
+        if (bruto || !rollup.usarAgregados(inicio, fim)) {
+            return ResponseEntity.ok()
+                    .header(HEADER_RESOLUCAO, "BRUTO")
+                    .body(deteccaoService.buscarPorPeriodo(inicio, fim));
+        }
+        return ResponseEntity.ok()
+                .header(HEADER_RESOLUCAO, rollup.resolucaoPara(inicio, fim).name())
+                .body(rollup.serie(inicio, fim, patioId));
     }
 
     @GetMapping("/confianca")
-    public ResponseEntity<List<DeteccaoMoto>> buscarPorConfianca(@RequestParam Double minConfianca) {
+    public ResponseEntity<List<DeteccaoResumoDTO>> buscarPorConfianca(@RequestParam Double minConfianca) {
         log.info("GET /api/deteccoes/confianca - Buscando detecções com confiança >= {}", minConfianca);
         return ResponseEntity.ok(deteccaoService.buscarPorConfianca(minConfianca));
     }
 
+    /**
+     * Detecções novas entram na fila de gravação em lote e são confirmadas com 202 (sem ID);
+     * com a fila cheia responde 429 e com o banco indisponível 503, ambos com Retry-After.
+     * Atualizações (com ID) e {@code sincrono=true} gravam na hora e devolvem a entidade salva.
+     */
     @PostMapping
-    public ResponseEntity<DeteccaoMoto> criar(@RequestBody DeteccaoMoto deteccao) {
-        log.info("POST /api/deteccoes - Criando nova detecção");
-        DeteccaoMoto deteccaoCriada = deteccaoService.salvar(deteccao);
-        return ResponseEntity.status(HttpStatus.CREATED).body(deteccaoCriada);
+    public ResponseEntity<DeteccaoMoto> criar(@RequestBody DeteccaoMoto deteccao,
+                                              @RequestParam(defaultValue = "false") boolean sincrono) {
+        if (sincrono || deteccao.getIdDeteccao() != null) {
+            log.info("POST /api/deteccoes - Criando nova detecção");
+            DeteccaoMoto deteccaoCriada = deteccaoService.salvar(deteccao);
+            return ResponseEntity.status(HttpStatus.CREATED).body(deteccaoCriada);
+        }
+        log.debug("POST /api/deteccoes - Enfileirando detecção");
+        FilaIngestaoDeteccoesService.Resultado resultado = filaIngestao.enfileirar(deteccao);
+        if (resultado == FilaIngestaoDeteccoesService.Resultado.ACEITA) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(deteccao);
+        }
+        HttpStatus status = resultado == FilaIngestaoDeteccoesService.Resultado.FILA_CHEIA
+                ? HttpStatus.TOO_MANY_REQUESTS
+                : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(filaIngestao.getSegundosParaReenvio()))
+                .build();
+    }
+
+    /**
+     * Métricas da fila de ingestão: profundidade, aceitas/recusadas e latência de gravação por lote
+     */
+    @GetMapping("/fila/metricas")
+    public ResponseEntity<Map<String, Number>> metricasFila() {
+        return ResponseEntity.ok(filaIngestao.getMetricas());
+    }
+
+    /**
+     * Estatísticas da deduplicação aplicada em /batch (quadros, descartes e tempo médio por quadro)
+     */
+    @GetMapping("/dedup/estatisticas")
+    public ResponseEntity<Map<String, Number>> estatisticasDeduplicacao() {
+        return ResponseEntity.ok(deduplicacao.getEstatisticas());
     }
 
     @PostMapping("/batch")
@@ -72,6 +192,16 @@ public class DeteccaoRestController {
         return ResponseEntity.status(HttpStatus.CREATED).body(deteccoesCriadas);
     }
 
+    /**
+     * Ingestão em massa via batch JDBC; retorna totais e vazão (linhas/s) em vez das entidades
+     */
+    @PostMapping("/ingestao")
+    public ResponseEntity<IngestaoResultadoDTO> ingerir(@RequestBody List<DeteccaoMoto> deteccoes) {
+        log.info("POST /api/deteccoes/ingestao - Ingerindo {} detecções em lote", deteccoes.size());
+        IngestaoResultadoDTO resultado = deteccaoService.ingerirEmLote(deteccoes);
+        return ResponseEntity.status(HttpStatus.CREATED).body(resultado);
+    }
+
     @DeleteMapping("/{id}")
     public ResponseEntity<Void> deletar(@PathVariable Long id) {
         log.info("DELETE /api/deteccoes/{} - Deletando detecção", id);
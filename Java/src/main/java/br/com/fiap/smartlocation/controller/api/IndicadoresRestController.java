@@ -1,7 +1,7 @@
 package br.com.fiap.smartlocation.controller.api;
 
 import br.com.fiap.smartlocation.dto.IndicadoresDTO;
-import br.com.fiap.smartlocation.repository.MotoRepository;
+import br.com.fiap.smartlocation.service.IndicadoresService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -16,25 +16,12 @@ import java.time.LocalDateTime;
 @Slf4j
 public class IndicadoresRestController {
 
-    private final MotoRepository motoRepository;
+    private final IndicadoresService indicadoresService;
 
     @GetMapping
     public IndicadoresDTO indicadores() {
         try {
-            long total = motoRepository.count();
-            long disponivel = motoRepository.countByStatus("DISPONIVEL");
-            long emUso = motoRepository.countByStatus("EM_USO");
-            long manutencao = motoRepository.countByStatus("MANUTENCAO");
-            long inativa = motoRepository.countByStatus("INATIVA");
-
-            IndicadoresDTO dto = new IndicadoresDTO();
-            dto.setTotalMotos(total);
-            dto.setDisponivel(disponivel);
-            dto.setEmUso(emUso);
-            dto.setManutencao(manutencao);
-            dto.setInativa(inativa);
-            dto.setAtualizadoEm(LocalDateTime.now());
-            return dto;
+            return indicadoresService.obterIndicadores();
         } catch (Exception e) {
             log.error("Falha ao calcular indicadores", e);
             // Em falha, retornar zeros para não quebrar o front
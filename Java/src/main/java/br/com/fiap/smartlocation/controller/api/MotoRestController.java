@@ -1,6 +1,9 @@
 package br.com.fiap.smartlocation.controller.api;
 
+import br.com.fiap.smartlocation.dto.MotoResumoDTO;
+import br.com.fiap.smartlocation.dto.RemocaoMotosDTO;
 import br.com.fiap.smartlocation.model.Moto;
+import br.com.fiap.smartlocation.service.CacheCatalogoService;
 import br.com.fiap.smartlocation.service.MotoService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -9,6 +12,7 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Controller REST para gerenciamento de motos
@@ -21,11 +25,12 @@ import java.util.List;
 public class MotoRestController {
 
     private final MotoService motoService;
+    private final CacheCatalogoService catalogo;
 
     @GetMapping
-    public ResponseEntity<List<Moto>> listarTodas() {
+    public ResponseEntity<List<MotoResumoDTO>> listarTodas() {
         log.info("GET /api/motos - Listando todas as motos");
-        return ResponseEntity.ok(motoService.listarTodas());
+        return ResponseEntity.ok(motoService.listarResumo());
     }
 
     @GetMapping("/{id}")
@@ -45,13 +50,13 @@ public class MotoRestController {
     }
 
     @GetMapping("/status/{status}")
-    public ResponseEntity<List<Moto>> buscarPorStatus(@PathVariable String status) {
+    public ResponseEntity<List<MotoResumoDTO>> buscarPorStatus(@PathVariable String status) {
         log.info("GET /api/motos/status/{} - Buscando motos por status", status);
         return ResponseEntity.ok(motoService.buscarPorStatus(status));
     }
 
     @GetMapping("/disponiveis")
-    public ResponseEntity<List<Moto>> listarDisponiveis() {
+    public ResponseEntity<List<MotoResumoDTO>> listarDisponiveis() {
         log.info("GET /api/motos/disponiveis - Listando motos disponíveis");
         return ResponseEntity.ok(motoService.listarDisponiveis());
     }
@@ -95,4 +100,28 @@ public class MotoRestController {
             return ResponseEntity.notFound().build();
         }
     }
+
+    /**
+     * Remove várias motos (e seus registros dependentes) em uma única transação
+     */
+    @DeleteMapping("/batch")
+    public ResponseEntity<RemocaoMotosDTO> deletarVarias(@RequestBody List<Long> ids) {
+        log.info("DELETE /api/motos/batch - Deletando {} motos", ids.size());
+        return ResponseEntity.ok(motoService.deletarVarias(ids));
+    }
+
+    /**
+     * Estatísticas do cache de motos, placas e pátios (acertos, faltas e invalidações)
+     */
+    @GetMapping("/cache/estatisticas")
+    public ResponseEntity<Map<String, Map<String, Number>>> estatisticasCache() {
+        return ResponseEntity.ok(catalogo.getEstatisticas());
+    }
+
+    @DeleteMapping("/cache")
+    public ResponseEntity<Void> invalidarCache() {
+        log.info("DELETE /api/motos/cache - Invalidando cache do catálogo");
+        catalogo.invalidarTudo();
+        return ResponseEntity.noContent().build();
+    }
 }
@@ -0,0 +1,88 @@
+package br.com.fiap.smartlocation.controller.api;
+
+import br.com.fiap.smartlocation.dto.MovimentacaoDTO;
+import br.com.fiap.smartlocation.service.MovimentacaoService;
+import br.com.fiap.smartlocation.service.MovimentacaoStreamService;
+import br.com.fiap.smartlocation.service.RegrasMovimentacaoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller REST para registro e acompanhamento em tempo real das movimentações das motos
+ */
+@RestController
+@RequestMapping("/api/movimentacoes")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class MovimentacaoRestController {
+
+    private final MovimentacaoService movimentacaoService;
+    private final MovimentacaoStreamService streamService;
+    private final RegrasMovimentacaoService regrasService;
+
+    @PostMapping
+    public ResponseEntity<MovimentacaoDTO> registrar(@RequestBody MovimentacaoDTO movimentacao) {
+        log.info("POST /api/movimentacoes - Registrando {} da moto {}", movimentacao.getTipoEvento(), movimentacao.getMotoId());
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(movimentacaoService.registrar(movimentacao));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<MovimentacaoDTO>> registrarVarias(@RequestBody List<MovimentacaoDTO> movimentacoes) {
+        log.info("POST /api/movimentacoes/batch - Registrando {} movimentações", movimentacoes.size());
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(movimentacaoService.registrarVarias(movimentacoes));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Movimentações novas via Server-Sent Events (evento "movimentacao"), filtradas por pátio e/ou moto.
+     * Ao reconectar, o navegador envia o Last-Event-ID e recebe o que perdeu enquanto estava no buffer;
+     * {@code desde} faz o mesmo para clientes que não enviam o cabeçalho.
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter acompanhar(
+            @RequestParam(required = false) Long patioId,
+            @RequestParam(required = false) Long motoId,
+            @RequestParam(required = false) Long desde,
+            @RequestHeader(value = "Last-Event-ID", required = false) String ultimoEventId) {
+        Long ultimoId = desde;
+        if (ultimoEventId != null) {
+            try {
+                ultimoId = Long.parseLong(ultimoEventId.trim());
+            } catch (NumberFormatException ignored) {
+                // ID inválido: inscreve sem reenvio
+            }
+        }
+        log.info("GET /api/movimentacoes/stream - Inscrevendo cliente SSE (pátio {}, moto {}, desde {})",
+                patioId, motoId, ultimoId);
+        return streamService.inscrever(patioId, motoId, ultimoId);
+    }
+
+    @GetMapping("/stream/metricas")
+    public ResponseEntity<Map<String, Number>> metricasStream() {
+        return ResponseEntity.ok(streamService.getMetricas());
+    }
+
+    /**
+     * Métricas da geração automática de entradas/saídas a partir das detecções
+     */
+    @GetMapping("/regras/metricas")
+    public ResponseEntity<Map<String, Number>> metricasRegras() {
+        return ResponseEntity.ok(regrasService.getMetricas());
+    }
+}
@@ -0,0 +1,59 @@
+package br.com.fiap.smartlocation.controller.api;
+
+import br.com.fiap.smartlocation.dto.AlertaOcupacaoDTO;
+import br.com.fiap.smartlocation.dto.OcupacaoPatioDTO;
+import br.com.fiap.smartlocation.service.OcupacaoPatioService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller REST para a ocupação dos pátios em tempo real
+ */
+@RestController
+@RequestMapping("/api/patios")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class PatioRestController {
+
+    private final OcupacaoPatioService ocupacaoService;
+
+    @GetMapping("/ocupacao")
+    public ResponseEntity<List<OcupacaoPatioDTO>> listarOcupacao() {
+        log.info("GET /api/patios/ocupacao - Ocupação de todos os pátios");
+        return ResponseEntity.ok(ocupacaoService.listarOcupacao());
+    }
+
+    @GetMapping("/ocupacao/{patioId}")
+    public ResponseEntity<OcupacaoPatioDTO> buscarOcupacao(@PathVariable Long patioId) {
+        log.info("GET /api/patios/ocupacao/{} - Ocupação do pátio", patioId);
+        return ocupacaoService.buscarOcupacao(patioId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/ocupacao/alertas")
+    public ResponseEntity<List<AlertaOcupacaoDTO>> listarAlertas() {
+        return ResponseEntity.ok(ocupacaoService.listarAlertas());
+    }
+
+    @GetMapping("/ocupacao/metricas")
+    public ResponseEntity<Map<String, Number>> metricas() {
+        return ResponseEntity.ok(ocupacaoService.getMetricas());
+    }
+
+    /**
+     * Reconstrói a ocupação a partir do banco (ex.: após alterar pátios direto no banco)
+     */
+    @PostMapping("/ocupacao/recarregar")
+    public ResponseEntity<List<OcupacaoPatioDTO>> recarregar() {
+        log.info("POST /api/patios/ocupacao/recarregar - Recarregando ocupação dos pátios");
+        ocupacaoService.recarregar();
+        return ResponseEntity.ok(ocupacaoService.listarOcupacao());
+    }
+}
@@ -0,0 +1,146 @@
+package br.com.fiap.smartlocation.controller.api;
+
+import br.com.fiap.smartlocation.dto.IngestaoResultadoDTO;
+import br.com.fiap.smartlocation.dto.PaginaPosicoesDTO;
+import br.com.fiap.smartlocation.dto.PosicaoDTO;
+import br.com.fiap.smartlocation.dto.TrajetoriaDTO;
+import br.com.fiap.smartlocation.service.HistoricoPosicaoService;
+import br.com.fiap.smartlocation.service.PosicaoService;
+import br.com.fiap.smartlocation.service.UltimaPosicaoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Controller REST para registro e consulta de posições das motos
+ */
+@RestController
+@RequestMapping("/api/posicoes")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class PosicaoRestController {
+
+    private final PosicaoService posicaoService;
+    private final UltimaPosicaoService ultimaPosicaoService;
+    private final HistoricoPosicaoService historicoService;
+
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
+    @PostMapping
+    public ResponseEntity<PosicaoDTO> registrar(@RequestBody PosicaoDTO posicao) {
+        log.info("POST /api/posicoes - Registrando posição da moto {}", posicao.getMotoId());
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(posicaoService.registrar(posicao));
+        } catch (IllegalArgumentException e) {
+            log.warn("Posições recusadas: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    @PostMapping("/batch")
+    public ResponseEntity<List<PosicaoDTO>> registrarVarias(@RequestBody List<PosicaoDTO> posicoes) {
+        log.info("POST /api/posicoes/batch - Registrando {} posições", posicoes.size());
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(posicaoService.registrarVarias(posicoes));
+        } catch (IllegalArgumentException e) {
+            log.warn("Posições recusadas: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Última posição conhecida de toda a frota, servida da memória
+     */
+    @GetMapping("/ultimas")
+    public ResponseEntity<List<PosicaoDTO>> listarUltimas() {
+        log.debug("GET /api/posicoes/ultimas - Snapshot das últimas posições");
+        return ResponseEntity.ok(ultimaPosicaoService.listar());
+    }
+
+    @GetMapping("/ultimas/{motoId}")
+    public ResponseEntity<PosicaoDTO> buscarUltima(@PathVariable Long motoId) {
+        log.debug("GET /api/posicoes/ultimas/{} - Última posição da moto", motoId);
+        return ultimaPosicaoService.buscar(motoId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    /**
+     * Acrescenta um lote grande de posições ao histórico via batch JDBC
+     */
+    @PostMapping("/ingestao")
+    public ResponseEntity<IngestaoResultadoDTO> ingerirEmLote(@RequestBody List<PosicaoDTO> posicoes) {
+        log.info("POST /api/posicoes/ingestao - Ingerindo {} posições em lote", posicoes.size());
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(posicaoService.ingerirEmLote(posicoes));
+        } catch (IllegalArgumentException e) {
+            log.warn("Posições recusadas: {}", e.getMessage());
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Trajetória da moto no período, simplificada no servidor (Douglas-Peucker) até {@code maxPontos} pontos
+     */
+    @GetMapping("/trajetoria/{motoId}")
+    public ResponseEntity<TrajetoriaDTO> trajetoria(
+            @PathVariable Long motoId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim,
+            @RequestParam(required = false) Integer maxPontos,
+            @RequestParam(required = false) Double toleranciaMetros) {
+        log.info("GET /api/posicoes/trajetoria/{} - Trajetória de {} a {}", motoId, inicio, fim);
+        if (!inicio.isBefore(fim)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(historicoService.trajetoria(motoId, inicio, fim, maxPontos, toleranciaMetros));
+    }
+
+    /**
+     * Histórico da moto no período em ordem cronológica, paginado por cursor (horário, id).
+     * Para a próxima página, repassar proximoHorario/proximoId da resposta anterior.
+     */
+    @GetMapping("/historico/{motoId}")
+    public ResponseEntity<PaginaPosicoesDTO> listarHistorico(
+            @PathVariable Long motoId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorHorario,
+            @RequestParam(required = false) Long cursorId,
+            @RequestParam(required = false) Integer tamanho) {
+        log.info("GET /api/posicoes/historico/{} - Página do histórico (cursor: {} / {})", motoId, cursorHorario, cursorId);
+        if (!inicio.isBefore(fim)) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(historicoService.listarPagina(motoId, inicio, fim, cursorHorario, cursorId, tamanho));
+    }
+
+    /**
+     * Exporta o histórico da moto no período em NDJSON, em streaming
+     */
+    @GetMapping(value = "/historico/{motoId}/export", produces = "application/x-ndjson")
+    public ResponseEntity<StreamingResponseBody> exportarHistorico(
+            @PathVariable Long motoId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime inicio,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime fim) {
+        log.info("GET /api/posicoes/historico/{}/export - Exportando histórico em NDJSON", motoId);
+        if (!inicio.isBefore(fim)) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody body = out -> historicoService.exportarNdjson(motoId, inicio, fim, out);
+        return ResponseEntity.ok()
+                .contentType(APPLICATION_NDJSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"posicoes-moto-" + motoId + ".ndjson\"")
+                .body(body);
+    }
+}
@@ -0,0 +1,50 @@
+package br.com.fiap.smartlocation.controller.api;
+
+import br.com.fiap.smartlocation.dto.DeteccaoDTO;
+import br.com.fiap.smartlocation.dto.EventoTrackDTO;
+import br.com.fiap.smartlocation.dto.RastreamentoResultadoDTO;
+import br.com.fiap.smartlocation.service.RastreamentoService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+/**
+ * Controller REST para rastreamento de motos entre quadros.
+ * Cada sessão recebe um fluxo de detecções (campo {@code quadro} indica o quadro de cada uma)
+ * e mantém as trilhas até ser encerrada.
+ */
+@RestController
+@RequestMapping("/api/rastreamento")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class RastreamentoRestController {
+
+    private final RastreamentoService rastreamentoService;
+
+    @PostMapping("/{sessao}/quadros")
+    public ResponseEntity<List<EventoTrackDTO>> processar(@PathVariable String sessao,
+                                                          @RequestBody List<DeteccaoDTO> deteccoes) {
+        log.debug("POST /api/rastreamento/{}/quadros - {} detecções", sessao, deteccoes.size());
+        return ResponseEntity.ok(rastreamentoService.processar(sessao, deteccoes));
+    }
+
+    @GetMapping("/{sessao}")
+    public ResponseEntity<RastreamentoResultadoDTO> consultar(@PathVariable String sessao) {
+        log.info("GET /api/rastreamento/{} - Consultando trilhas", sessao);
+        return rastreamentoService.consultar(sessao)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @DeleteMapping("/{sessao}")
+    public ResponseEntity<RastreamentoResultadoDTO> encerrar(@PathVariable String sessao) {
+        log.info("DELETE /api/rastreamento/{} - Encerrando sessão", sessao);
+        return rastreamentoService.encerrar(sessao)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
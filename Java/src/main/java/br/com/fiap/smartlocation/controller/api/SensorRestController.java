@@ -0,0 +1,52 @@
+package br.com.fiap.smartlocation.controller.api;
+
+import br.com.fiap.smartlocation.dto.IngestaoTelemetriaDTO;
+import br.com.fiap.smartlocation.dto.LeituraSensorDTO;
+import br.com.fiap.smartlocation.service.TelemetriaSensorService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Controller REST para telemetria dos sensores das motos
+ */
+@RestController
+@RequestMapping("/api/sensores")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class SensorRestController {
+
+    private final TelemetriaSensorService telemetriaService;
+
+    /**
+     * Recebe um lote de leituras; a gravação no banco é feita em segundo plano (202)
+     */
+    @PostMapping("/leituras")
+    public ResponseEntity<IngestaoTelemetriaDTO> registrarLeituras(@RequestBody List<LeituraSensorDTO> leituras) {
+        log.debug("POST /api/sensores/leituras - {} leituras", leituras.size());
+        return ResponseEntity.status(HttpStatus.ACCEPTED).body(telemetriaService.registrar(leituras));
+    }
+
+    @GetMapping
+    public ResponseEntity<List<LeituraSensorDTO>> listar() {
+        return ResponseEntity.ok(telemetriaService.listar());
+    }
+
+    @GetMapping("/{motoId}")
+    public ResponseEntity<LeituraSensorDTO> buscar(@PathVariable Long motoId) {
+        return telemetriaService.buscar(motoId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/metricas")
+    public ResponseEntity<Map<String, Number>> metricas() {
+        return ResponseEntity.ok(telemetriaService.getMetricas());
+    }
+}
@@ -1,72 +1,187 @@
 package br.com.fiap.smartlocation.controller.web;
 
+import br.com.fiap.smartlocation.service.ArtefatosResultadoService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.beans.factory.annotation.Value;
-import org.springframework.core.io.FileSystemResource;
-import org.springframework.core.io.Resource;
 import org.springframework.http.HttpHeaders;
-import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Controller;
-import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
 
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
-import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 
 /**
- * Controller para servir vídeos gerados pela análise Python
+ * Serve o vídeo anotado de cada execução com suporte a requisições parciais (Range/206),
+ * ETag forte (execução + tamanho + data de modificação) e GET condicional.
+ * Como a URL é específica da execução, o vídeo de um job é imutável e pode ficar no cache do navegador;
+ * a saída do notebook (execução "runs") é reaproveitada, então só é revalidada via ETag.
  */
 @Controller
-@RequestMapping("/__videos_disabled__")
+@RequestMapping("/resultados")
+@RequiredArgsConstructor
 @Slf4j
 public class VideoController {
 
-    @Value("${python.notebook.path:../visao_computacional/SmartLocation.ipynb}")
-    private String notebookPath;
+    private static final String CACHE_IMUTAVEL = "public, max-age=31536000, immutable";
+    private static final String CACHE_REVALIDAR = "no-cache";
+
+    // Atributos do conector do Tomcat para envio via sendfile (cópia zero do arquivo para o socket)
+    private static final String SENDFILE_SUPORTE = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARQUIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIM = "org.apache.tomcat.sendfile.end";
+
+    private final ArtefatosResultadoService artefatosResultado;
+
+    @RequestMapping(value = "/{execucao}/video", method = {RequestMethod.GET, RequestMethod.HEAD})
+    public void servirVideo(@PathVariable String execucao,
+                            HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        ArtefatosResultadoService.Artefato video = artefatosResultado.obterPorExecucao(execucao)
+                .map(ArtefatosResultadoService.Artefatos::getVideo)
+                .filter(v -> Files.isRegularFile(v.getCaminho()))
+                .orElse(null);
+        if (video == null) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+
+        Path caminho = video.getCaminho();
+        long tamanho = video.getTamanho();
+        String etag = "\"" + execucao + "-" + Long.toHexString(tamanho) + "-"
+                + Long.toHexString(video.getModificado().toMillis()) + "\"";
+
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setDateHeader(HttpHeaders.LAST_MODIFIED, video.getModificado().toMillis());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+        response.setHeader(HttpHeaders.CACHE_CONTROL,
+                ArtefatosResultadoService.EXECUCAO_NOTEBOOK.equals(execucao) ? CACHE_REVALIDAR : CACHE_IMUTAVEL);
+
+        if (corresponde(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpStatus.NOT_MODIFIED.value());
+            return;
+        }
+
+        String contentType = Files.probeContentType(caminho);
+        response.setContentType(contentType != null ? contentType : "video/mp4");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + caminho.getFileName() + "\"");
+
+        long inicio = 0;
+        long fim = tamanho - 1;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        // If-Range com ETag diferente: o cliente tem outra versão, envia o arquivo inteiro
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            long[] intervalo = interpretarRange(range, tamanho);
+            if (intervalo == null) {
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + tamanho);
+                response.sendError(HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE.value());
+                return;
+            }
+            if (intervalo.length == 2) {
+                inicio = intervalo[0];
+                fim = intervalo[1];
+                response.setStatus(HttpStatus.PARTIAL_CONTENT.value());
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + inicio + "-" + fim + "/" + tamanho);
+            }
+        }
+
+        long quantidade = fim - inicio + 1;
+        response.setContentLengthLong(quantidade);
+        if ("HEAD".equals(request.getMethod()) || quantidade <= 0) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPORTE))) {
+            // O conector envia o trecho direto do arquivo para o socket após o retorno do controller
+            request.setAttribute(SENDFILE_ARQUIVO, caminho.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_INICIO, inicio);
+            request.setAttribute(SENDFILE_FIM, fim + 1);
+            return;
+        }
+        transferir(caminho, inicio, quantidade, response);
+    }
+
+    private void transferir(Path caminho, long inicio, long quantidade, HttpServletResponse response) throws IOException {
+        try (FileChannel arquivo = FileChannel.open(caminho, StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(response.getOutputStream());
+            long posicao = inicio;
+            long restante = quantidade;
+            while (restante > 0) {
+                long enviados = arquivo.transferTo(posicao, restante, destino);
+                if (enviados <= 0) {
+                    break;
+                }
+                posicao += enviados;
+                restante -= enviados;
+            }
+        } catch (IOException e) {
+            // Comum ao avançar o vídeo: o player aborta a requisição anterior
+            log.debug("Transferência de {} interrompida: {}", caminho.getFileName(), e.getMessage());
+        }
+    }
 
     /**
-     * Desabilitado: o serviço de vídeos agora é feito via ResourceHandler em WebConfig.
-     * Este endpoint permanece apenas para referência e não é utilizado.
+     * Interpreta um cabeçalho Range de intervalo único ("bytes=a-b", "bytes=a-" ou "bytes=-n").
+     *
+     * @return {inicio, fim}; vetor vazio quando o cabeçalho deve ser ignorado (resposta 200 completa);
+     *         null quando o intervalo não pode ser atendido (416)
      */
-    @GetMapping("/**")
-    public ResponseEntity<Resource> servirVideo() throws IOException {
-        // Obter o caminho completo a partir da requisição
-        String requestPath = org.springframework.web.context.request.RequestContextHolder
-            .currentRequestAttributes()
-            .getAttribute("org.springframework.web.servlet.HandlerMapping.pathWithinHandlerMapping", 0)
-            .toString();
-        
-        // Remover /videos/ do início
-        String relativePath = requestPath.substring("/videos/".length());
-        
-        Path notebookDir = Paths.get(notebookPath).getParent().toAbsolutePath();
-        Path videoPath = notebookDir.resolve(relativePath).normalize();
-        
-        log.info("Tentando servir vídeo: {}", videoPath);
-        
-        // Validar que o arquivo existe e está dentro do diretório permitido
-        if (!Files.exists(videoPath) || !videoPath.startsWith(notebookDir)) {
-            log.warn("Vídeo não encontrado ou fora do diretório permitido: {}", videoPath);
-            return ResponseEntity.notFound().build();
+    private long[] interpretarRange(String range, long tamanho) {
+        if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+            // Unidade desconhecida ou múltiplos intervalos: servidor pode ignorar o Range
+            return new long[0];
+        }
+        String especificacao = range.substring("bytes=".length()).trim();
+        int hifen = especificacao.indexOf('-');
+        if (hifen < 0) {
+            return new long[0];
+        }
+        try {
+            String a = especificacao.substring(0, hifen).trim();
+            String b = especificacao.substring(hifen + 1).trim();
+            long inicio;
+            long fim;
+            if (a.isEmpty()) {
+                long sufixo = Long.parseLong(b);
+                if (sufixo <= 0) {
+                    return null;
+                }
+                inicio = Math.max(0, tamanho - sufixo);
+                fim = tamanho - 1;
+            } else {
+                inicio = Long.parseLong(a);
+                fim = b.isEmpty() ? tamanho - 1 : Math.min(Long.parseLong(b), tamanho - 1);
+            }
+            if (inicio >= tamanho || inicio > fim) {
+                return null;
+            }
+            return new long[]{inicio, fim};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+    private boolean corresponde(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
         }
-        
-        Resource resource = new FileSystemResource(videoPath);
-        
-        // Determinar tipo de mídia baseado na extensão
-        String contentType = Files.probeContentType(videoPath);
-        if (contentType == null) {
-            contentType = "video/mp4"; // Fallback
+        for (String candidato : ifNoneMatch.split(",")) {
+            String valor = candidato.trim();
+            if (valor.equals("*") || valor.equals(etag) || valor.equals("W/" + etag)) {
+                return true;
+            }
         }
-        
-        log.info("Servindo vídeo: {} ({})", videoPath.getFileName(), contentType);
-        
-        return ResponseEntity.ok()
-            .contentType(MediaType.parseMediaType(contentType))
-            .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"" + videoPath.getFileName() + "\"")
-            .body(resource);
+        return false;
     }
 }
@@ -1,21 +1,27 @@
 package br.com.fiap.smartlocation.controller.web;
 
 import br.com.fiap.smartlocation.dto.DeteccaoDTO;
+import br.com.fiap.smartlocation.dto.PaginaDeteccoesDTO;
 import br.com.fiap.smartlocation.model.DeteccaoMoto;
 import br.com.fiap.smartlocation.model.Moto;
+import br.com.fiap.smartlocation.service.AnaliseJobService;
+import br.com.fiap.smartlocation.service.DashboardResumoService;
 import br.com.fiap.smartlocation.service.DeteccaoMotoService;
 import br.com.fiap.smartlocation.service.MotoService;
 import br.com.fiap.smartlocation.service.PythonIntegrationService;
 import br.com.fiap.smartlocation.model.Patio;
-import br.com.fiap.smartlocation.repository.PatioRepository;
+import br.com.fiap.smartlocation.service.CacheCatalogoService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -29,7 +35,15 @@ public class WebController {
     private final MotoService motoService;
     private final DeteccaoMotoService deteccaoService;
     private final PythonIntegrationService pythonService;
-    private final PatioRepository patioRepository;
+    private final CacheCatalogoService catalogo;
+    private final DashboardResumoService dashboardResumo;
+    private final AnaliseJobService jobService;
+
+    @Value("${analise.pendentes.limite-previa:200}")
+    private int limitePreviaPendentes;
+
+    @Value("${analise.pendentes.tamanho-lote:1000}")
+    private int tamanhoLoteSalvar;
 
     /**
      * Página inicial - Dashboard
@@ -38,24 +52,22 @@ public class WebController {
     public String index(Model model) {
         log.info("Acessando página inicial");
         List<DeteccaoMoto> deteccoes;
-        List<Moto> motos;
         try {
-            deteccoes = deteccaoService.listarTodas();
-            motos = motoService.listarTodas();
-            model.addAttribute("totalDeteccoes", deteccoes.size());
-            model.addAttribute("totalMotos", motos.size());
+            // Contadores e últimas detecções vêm da memória; o banco só é lido na primeira carga
+            dashboardResumo.garantirInicializado();
+            deteccoes = dashboardResumo.getUltimasDeteccoes();
+            model.addAttribute("totalDeteccoes", dashboardResumo.getTotalDeteccoes());
+            model.addAttribute("totalMotos", dashboardResumo.getTotalMotos());
         } catch (Exception e) {
             log.error("Falha ao carregar dados do banco na página inicial", e);
             model.addAttribute("erroDb", "Banco de dados indisponível no momento (ORA-02391). Tente novamente em alguns minutos.");
             deteccoes = List.of();
-            motos = List.of();
             model.addAttribute("totalDeteccoes", 0);
             model.addAttribute("totalMotos", 0);
         }
         
         model.addAttribute("deteccoes", deteccoes);
-        model.addAttribute("motos", motos);
-        model.addAttribute("analiseEmExecucao", pythonService.isAnaliseEmExecucao());
+        model.addAttribute("analiseEmExecucao", jobService.isAnaliseEmExecucao());
         
         return "index";
     }
@@ -67,17 +79,24 @@ public class WebController {
     public String analise(Model model) {
         log.info("Acessando página de análise");
         
-        model.addAttribute("analiseEmExecucao", pythonService.isAnaliseEmExecucao());
+        model.addAttribute("analiseEmExecucao", jobService.isAnaliseEmExecucao());
         
         try {
-            List<DeteccaoDTO> deteccoesPendentes = pythonService.carregarDeteccoesPendentes();
+            // Prévia limitada: o arquivo é percorrido em streaming e só os primeiros registros são mantidos
+            List<DeteccaoDTO> deteccoesPendentes = new ArrayList<>();
+            long totalPendentes = pythonService.percorrerDeteccoesPendentes(d -> {
+                if (deteccoesPendentes.size() < limitePreviaPendentes) {
+                    deteccoesPendentes.add(d);
+                }
+            });
             model.addAttribute("deteccoesPendentes", deteccoesPendentes);
-            model.addAttribute("temResultados", !deteccoesPendentes.isEmpty());
+            model.addAttribute("totalPendentes", totalPendentes);
+            model.addAttribute("temResultados", totalPendentes > 0);
             
             // Buscar caminho do vídeo gerado
-            String caminhoVideo = pythonService.obterCaminhoVideoGerado();
-            if (caminhoVideo != null) {
-                model.addAttribute("caminhoVideo", caminhoVideo);
+            String urlVideo = pythonService.obterUrlVideoGerado();
+            if (urlVideo != null) {
+                model.addAttribute("urlVideo", urlVideo);
                 model.addAttribute("temVideo", true);
             } else {
                 model.addAttribute("temVideo", false);
@@ -108,13 +127,8 @@ public class WebController {
     public String iniciarAnalise(RedirectAttributes redirectAttributes) {
         log.info("Iniciando análise via interface web");
         
-        if (pythonService.isAnaliseEmExecucao()) {
-            redirectAttributes.addFlashAttribute("erro", "Já existe uma análise em execução");
-            return "redirect:/analise";
-        }
-
         try {
-            pythonService.executarAnalise();
+            jobService.submeter(null, 0);
             redirectAttributes.addFlashAttribute("sucesso", "Análise iniciada com sucesso! Aguarde...");
         } catch (Exception e) {
             log.error("Erro ao iniciar análise", e);
@@ -132,30 +146,31 @@ public class WebController {
         log.info("Salvando detecções no banco de dados");
         
         try {
-            List<DeteccaoDTO> deteccoesPendentes = pythonService.carregarDeteccoesPendentes();
+            // Lê e grava em lotes, sem carregar o arquivo inteiro em memória
+            LocalDateTime agora = LocalDateTime.now();
+            long[] inseridas = {0};
+            long total = pythonService.lerDeteccoesPendentesEmLotes(tamanhoLoteSalvar, lote -> {
+                List<DeteccaoMoto> deteccoes = lote.stream()
+                        .map(dto -> {
+                            DeteccaoMoto d = new DeteccaoMoto();
+                            d.setIdMoto(dto.getIdMoto());
+                            d.setPosicaoX(dto.getPosicaoX());
+                            d.setPosicaoY(dto.getPosicaoY());
+                            d.setConfianca(dto.getConfianca());
+                            d.setHorarioRegistro(agora);
+                            return d;
+                        })
+                        .toList();
+                inseridas[0] += deteccaoService.ingerirEmLote(deteccoes).getTotalInseridas();
+            });
             
-            if (deteccoesPendentes.isEmpty()) {
+            if (total == 0) {
                 redirectAttributes.addFlashAttribute("aviso", "Nenhuma detecção pendente para salvar");
                 return "redirect:/analise";
             }
-
-            // Converter DTOs para entidades e salvar
-            List<DeteccaoMoto> deteccoes = deteccoesPendentes.stream()
-                    .map(dto -> {
-                        DeteccaoMoto d = new DeteccaoMoto();
-                        d.setIdMoto(dto.getIdMoto());
-                        d.setPosicaoX(dto.getPosicaoX());
-                        d.setPosicaoY(dto.getPosicaoY());
-                        d.setConfianca(dto.getConfianca());
-                        d.setHorarioRegistro(LocalDateTime.now());
-                        return d;
-                    })
-                    .toList();
-
-            deteccaoService.salvarVarias(deteccoes);
             
             redirectAttributes.addFlashAttribute("sucesso", 
-                deteccoes.size() + " detecções salvas com sucesso!");
+                inseridas[0] + " detecções salvas com sucesso!");
             
         } catch (Exception e) {
             log.error("Erro ao salvar detecções", e);
@@ -214,7 +229,7 @@ public class WebController {
                             RedirectAttributes redirectAttributes) {
         try {
             if (patioId != null) {
-                patioRepository.findById(patioId).ifPresent(moto::setPatio);
+                catalogo.buscarPatio(patioId).ifPresent(moto::setPatio);
             }
             motoService.salvar(moto);
             redirectAttributes.addFlashAttribute("sucesso", "Moto criada com sucesso!");
@@ -253,7 +268,7 @@ public class WebController {
                                 RedirectAttributes redirectAttributes) {
         try {
             if (patioId != null) {
-                Patio patio = patioRepository.findById(patioId).orElse(null);
+                Patio patio = catalogo.buscarPatio(patioId).orElse(null);
                 motoForm.setPatio(patio);
             } else {
                 motoForm.setPatio(null);
@@ -270,11 +285,16 @@ public class WebController {
      * Página de detecções
      */
     @GetMapping("/deteccoes")
-    public String listarDeteccoes(Model model) {
+    public String listarDeteccoes(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime cursorHorario,
+            @RequestParam(required = false) Long cursorId,
+            Model model) {
         log.info("Acessando página de detecções");
         try {
-            List<DeteccaoMoto> deteccoes = deteccaoService.listarTodas();
-            model.addAttribute("deteccoes", deteccoes);
+            PaginaDeteccoesDTO pagina = deteccaoService.listarPagina(cursorHorario, cursorId, null);
+            model.addAttribute("deteccoes", pagina.getItens());
+            model.addAttribute("pagina", pagina);
+            model.addAttribute("paginaInicial", cursorId == null);
         } catch (Exception e) {
             log.error("Falha ao listar detecções (BD indisponível)", e);
             model.addAttribute("deteccoes", List.of());
@@ -0,0 +1,23 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Mudança de nível de ocupação de um pátio (ex.: NORMAL -> ALERTA)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AlertaOcupacaoDTO {
+
+    private Long patioId;
+    private String nome;
+    private String nivelAnterior;
+    private String nivel;
+    private Double percentual;
+    private LocalDateTime horario;
+}
@@ -0,0 +1,26 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO com o estado de um job de análise
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AnaliseJobDTO {
+
+    private String id;
+    private String video;
+    private int prioridade;
+    private String status; // FILA, EXECUTANDO, CONCLUIDO, ERRO, CANCELADO
+    private String mensagem;
+    private LocalDateTime criadoEm;
+    private LocalDateTime iniciadoEm;
+    private LocalDateTime finalizadoEm;
+    private AnaliseResultadoDTO resultado;
+}
@@ -22,4 +22,6 @@ public class DeteccaoDTO {
     private Double confianca;
     private LocalDateTime horarioRegistro;
     private String status;
+    // Índice do quadro do vídeo (preenchido pelo worker; usado pelo rastreamento)
+    private Long quadro;
 }
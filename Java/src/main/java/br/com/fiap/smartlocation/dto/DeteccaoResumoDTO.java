@@ -0,0 +1,23 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projeção das colunas persistidas de uma detecção, para as listagens da API
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeteccaoResumoDTO {
+
+    private Long idDeteccao;
+    private Long idMoto;
+    private Double posicaoX;
+    private Double posicaoY;
+    private Double confianca;
+    private LocalDateTime horarioRegistro;
+}
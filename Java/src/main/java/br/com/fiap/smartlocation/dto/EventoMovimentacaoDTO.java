@@ -0,0 +1,19 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Movimentação publicada no stream, com a sequência usada para retomar a conexão (Last-Event-ID)
+ * e o pátio atual da moto
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoMovimentacaoDTO {
+
+    private long sequencia;
+    private Long patioId;
+    private MovimentacaoDTO movimentacao;
+}
@@ -0,0 +1,20 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Evento de entrada (trilha confirmada) ou saída (trilha encerrada) de uma moto na cena
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EventoTrackDTO {
+
+    private String tipo; // ENTRADA, SAIDA
+    private String placaVirtual;
+    private long quadro;
+    private double posicaoX;
+    private double posicaoY;
+}
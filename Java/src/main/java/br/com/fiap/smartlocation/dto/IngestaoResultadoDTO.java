@@ -0,0 +1,19 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO com o resultado de uma ingestão em lote (detecções ou posições)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestaoResultadoDTO {
+
+    private int totalRecebidas;
+    private int totalInseridas;
+    private long duracaoMs;
+    private double linhasPorSegundo;
+}
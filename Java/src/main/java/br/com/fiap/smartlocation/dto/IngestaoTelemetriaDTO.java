@@ -0,0 +1,19 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO com o resultado do envio de um lote de leituras de sensores
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestaoTelemetriaDTO {
+
+    private int totalRecebidas;
+    private int totalAceitas;
+    private int totalRejeitadas;
+    private int pendentesGravacao;
+}
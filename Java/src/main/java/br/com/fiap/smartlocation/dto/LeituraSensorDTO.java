@@ -0,0 +1,23 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO de leitura de telemetria do sensor de uma moto (tabela SENSOR).
+ * Campos nulos numa leitura mantêm o último valor conhecido.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LeituraSensorDTO {
+
+    private Long motoId;
+    private Boolean ligado;
+    private Double nivelBateria;     // 0 a 100
+    private Double nivelCombustivel; // 0 a 100
+    private LocalDateTime ultimaAtualizacao;
+}
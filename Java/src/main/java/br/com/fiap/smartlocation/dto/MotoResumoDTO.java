@@ -0,0 +1,24 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Projeção de moto para as listagens da API: o pátio vem achatado (id e nome) da mesma consulta
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MotoResumoDTO {
+
+    private Long id;
+    private String placa;
+    private String modelo;
+    private String status;
+    private Long patioId;
+    private String patioNome;
+    private LocalDateTime ultimaAtualizacao;
+}
@@ -0,0 +1,22 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO de movimentação de uma moto (ENTRADA, SAIDA ou MOVIMENTACAO)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class MovimentacaoDTO {
+
+    private Long id;
+    private Long motoId;
+    private String tipoEvento;
+    private String descricao;
+    private LocalDateTime dtEvento;
+}
@@ -0,0 +1,28 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Ocupação de um pátio: motos ativas (DISPONIVEL, EM_USO, MANUTENCAO) vinculadas ao pátio,
+ * quantas delas estão presentes (sem SAIDA pendente) e a contagem por status
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class OcupacaoPatioDTO {
+
+    private Long patioId;
+    private String nome;
+    private Integer capacidade;
+    private Integer motosAtivas;
+    private Integer motosPresentes;
+    private Double percentual;
+    private String nivel; // NORMAL, ALERTA, LOTADO
+    private Map<String, Integer> porStatus;
+    private LocalDateTime atualizadoEm;
+}
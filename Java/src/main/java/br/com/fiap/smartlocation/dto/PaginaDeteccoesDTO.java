@@ -0,0 +1,24 @@
+package br.com.fiap.smartlocation.dto;
+
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO para uma página de detecções com cursor (keyset) para a próxima página
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaDeteccoesDTO {
+
+    private List<DeteccaoMoto> itens;
+    private boolean temMais;
+    // Cursor da próxima página (último item retornado)
+    private LocalDateTime proximoHorario;
+    private Long proximoId;
+}
@@ -0,0 +1,23 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO para uma página do histórico de posições com cursor (keyset) para a próxima página
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PaginaPosicoesDTO {
+
+    private List<PosicaoDTO> itens;
+    private boolean temMais;
+    // Cursor da próxima página (último item retornado)
+    private LocalDateTime proximoHorario;
+    private Long proximoId;
+}
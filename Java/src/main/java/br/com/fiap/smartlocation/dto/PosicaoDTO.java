@@ -0,0 +1,21 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * DTO de posição (latitude/longitude) de uma moto
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PosicaoDTO {
+
+    private Long motoId;
+    private Double latitude;
+    private Double longitude;
+    private LocalDateTime dtPosicao;
+}
@@ -0,0 +1,21 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * DTO com o resultado do rastreamento de um fluxo de detecções
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RastreamentoResultadoDTO {
+
+    private long quadros;
+    private long deteccoes;
+    private List<TrackDTO> tracks;
+    private List<EventoTrackDTO> eventos;
+}
@@ -0,0 +1,22 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO com a quantidade de registros removidos na exclusão em cascata de motos
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RemocaoMotosDTO {
+
+    private int motos;
+    private int deteccoes;
+    private int movimentacoes;
+    private int posicoes;
+    private int sensores;
+    private int manutencoes;
+    private long duracaoMs;
+}
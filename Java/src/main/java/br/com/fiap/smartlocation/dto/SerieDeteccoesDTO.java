@@ -0,0 +1,21 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ponto da série agregada de detecções: um balde (minuto, hora ou dia) iniciado em {@code inicio}
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SerieDeteccoesDTO {
+
+    private LocalDateTime inicio;
+    private Long quantidade;
+    private Double confiancaMedia;
+    private Long celulasOcupadas;
+}
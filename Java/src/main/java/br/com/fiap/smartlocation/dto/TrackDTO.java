@@ -0,0 +1,23 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO de uma trilha do rastreamento: uma moto física acompanhada ao longo dos quadros
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrackDTO {
+
+    private String placaVirtual;      // TRK-0001, TRK-0002, etc.
+    private long primeiroQuadro;
+    private long ultimoQuadro;
+    private double posicaoX;          // última posição conhecida
+    private double posicaoY;
+    private double confiancaMax;
+    private int deteccoes;            // quadros em que a moto foi associada
+    private boolean ativa;
+}
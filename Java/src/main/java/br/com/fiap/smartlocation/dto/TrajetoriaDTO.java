@@ -0,0 +1,24 @@
+package br.com.fiap.smartlocation.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * DTO da trajetória de uma moto num período, simplificada (Douglas-Peucker) até o limite de pontos
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TrajetoriaDTO {
+
+    private Long motoId;
+    private LocalDateTime inicio;
+    private LocalDateTime fim;
+    private int pontosOriginais;
+    private boolean truncada; // período com mais posições que o limite de leitura
+    private List<PosicaoDTO> pontos;
+}
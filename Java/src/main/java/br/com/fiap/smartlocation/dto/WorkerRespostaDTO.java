@@ -0,0 +1,25 @@
+package br.com.fiap.smartlocation.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * DTO da resposta do worker Python de detecção (uma linha JSON por job)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class WorkerRespostaDTO {
+
+    private String id;
+    private String status; // SUCESSO, ERRO
+    private String mensagem;
+    private String video;
+    private String json;
+    private String grafico;
+    private Integer total;
+    private Integer frames;
+}
@@ -0,0 +1,30 @@
+package br.com.fiap.smartlocation.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Evento publicado quando detecções são removidas, por ID ou por moto.
+ * {@code minutos} são os horários de registro das removidas truncados ao minuto (baldes a recalcular).
+ */
+@Getter
+@AllArgsConstructor
+public class DeteccoesRemovidasEvent {
+
+    private final Set<Long> ids;
+    private final Set<Long> idsMoto;
+    private final long quantidade;
+    private final Set<LocalDateTime> minutos;
+
+    public static DeteccoesRemovidasEvent porIds(Collection<Long> ids, long quantidade, Collection<LocalDateTime> minutos) {
+        return new DeteccoesRemovidasEvent(Set.copyOf(ids), Set.of(), quantidade, Set.copyOf(minutos));
+    }
+
+    public static DeteccoesRemovidasEvent porMotos(Collection<Long> idsMoto, long quantidade, Collection<LocalDateTime> minutos) {
+        return new DeteccoesRemovidasEvent(Set.of(), Set.copyOf(idsMoto), quantidade, Set.copyOf(minutos));
+    }
+}
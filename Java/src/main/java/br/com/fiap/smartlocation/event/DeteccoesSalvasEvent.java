@@ -0,0 +1,30 @@
+package br.com.fiap.smartlocation.event;
+
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Evento publicado pelo DeteccaoMotoService após salvar uma ou mais detecções.
+ * {@code novas} indica quantas delas são inserções (o restante são atualizações).
+ * Na ingestão em lote os IDs gerados não são relidos: o evento traz só a quantidade ({@code emLote})
+ * e quem precisa das linhas as relê do banco.
+ */
+@Getter
+@AllArgsConstructor
+public class DeteccoesSalvasEvent {
+
+    private final List<DeteccaoMoto> deteccoes;
+    private final int novas;
+    private final boolean emLote;
+
+    public DeteccoesSalvasEvent(List<DeteccaoMoto> deteccoes, int novas) {
+        this(deteccoes, novas, false);
+    }
+
+    public static DeteccoesSalvasEvent emLote(int inseridas) {
+        return new DeteccoesSalvasEvent(List.of(), inseridas, true);
+    }
+}
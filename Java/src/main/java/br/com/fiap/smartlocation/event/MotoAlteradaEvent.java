@@ -0,0 +1,19 @@
+package br.com.fiap.smartlocation.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Evento publicado pelo MotoService sempre que uma moto é criada, alterada ou removida
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class MotoAlteradaEvent {
+
+    public enum Tipo { CRIADA, ATUALIZADA, REMOVIDA }
+
+    private final Long motoId;
+    private final Tipo tipo;
+}
@@ -0,0 +1,17 @@
+package br.com.fiap.smartlocation.event;
+
+import br.com.fiap.smartlocation.dto.MovimentacaoDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Evento publicado pelo MovimentacaoService após inserir uma ou mais movimentações
+ */
+@Getter
+@AllArgsConstructor
+public class MovimentacoesRegistradasEvent {
+
+    private final List<MovimentacaoDTO> movimentacoes;
+}
@@ -0,0 +1,17 @@
+package br.com.fiap.smartlocation.event;
+
+import br.com.fiap.smartlocation.dto.PosicaoDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+
+/**
+ * Evento publicado pelo PosicaoService após inserir uma ou mais posições
+ */
+@Getter
+@AllArgsConstructor
+public class PosicoesRegistradasEvent {
+
+    private final List<PosicaoDTO> posicoes;
+}
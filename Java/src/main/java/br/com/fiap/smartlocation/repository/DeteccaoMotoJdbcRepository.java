@@ -0,0 +1,48 @@
+package br.com.fiap.smartlocation.repository;
+
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Escrita em lote de detecções via JDBC puro.
+ * A tabela usa IDENTITY (GENERATED ALWAYS), o que impede o Hibernate de agrupar os INSERTs;
+ * aqui o ID é omitido e as linhas são enviadas em batches de um único PreparedStatement.
+ */
+@Repository
+@RequiredArgsConstructor
+public class DeteccaoMotoJdbcRepository {
+
+    private static final String SQL_INSERT =
+            "INSERT INTO DETECCOES_MOTO (ID_MOTO, POSICAO_X, POSICAO_Y, CONFIANCA, HORARIO_REGISTRO) " +
+            "VALUES (?, ?, ?, ?, ?)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Insere as detecções em batches de {@code tamanhoLote} linhas
+     *
+     * @return total de linhas inseridas
+     */
+    public int inserirEmLote(List<DeteccaoMoto> deteccoes, int tamanhoLote) {
+        int[][] resultado = jdbcTemplate.batchUpdate(SQL_INSERT, deteccoes, tamanhoLote, (ps, d) -> {
+            ps.setObject(1, d.getIdMoto(), Types.NUMERIC);
+            ps.setObject(2, d.getPosicaoX(), Types.NUMERIC);
+            ps.setObject(3, d.getPosicaoY(), Types.NUMERIC);
+            ps.setObject(4, d.getConfianca(), Types.NUMERIC);
+            ps.setTimestamp(5, Timestamp.valueOf(d.getHorarioRegistro()));
+        });
+
+        // O driver Oracle pode devolver SUCCESS_NO_INFO (-2) por linha em batch
+        return Arrays.stream(resultado)
+                .flatMapToInt(Arrays::stream)
+                .map(n -> n < 0 ? 1 : n)
+                .sum();
+    }
+}
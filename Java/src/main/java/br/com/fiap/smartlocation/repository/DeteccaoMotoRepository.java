@@ -1,28 +1,79 @@
 package br.com.fiap.smartlocation.repository;
 
+import br.com.fiap.smartlocation.dto.DeteccaoResumoDTO;
 import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface DeteccaoMotoRepository extends JpaRepository<DeteccaoMoto, Long> {
+
+    // Projeção das colunas persistidas, sem entidades gerenciadas no contexto de persistência
+    String SELECT_RESUMO = "SELECT new br.com.fiap.smartlocation.dto.DeteccaoResumoDTO(" +
+            "d.idDeteccao, d.idMoto, d.posicaoX, d.posicaoY, d.confianca, d.horarioRegistro) " +
+            "FROM DeteccaoMoto d ";
+
+    @Query(SELECT_RESUMO + "WHERE d.idMoto = :idMoto ORDER BY d.horarioRegistro DESC, d.idDeteccao DESC")
+    List<DeteccaoResumoDTO> listarResumoPorMoto(Long idMoto);
     
-    List<DeteccaoMoto> findByIdMoto(Long idMoto);
-    
-    void deleteByIdMoto(Long idMoto);
+    @Modifying
+    @Query("DELETE FROM DeteccaoMoto d WHERE d.idMoto IN :idsMoto")
+    int deletarPorMotos(Collection<Long> idsMoto);
     
-    List<DeteccaoMoto> findByHorarioRegistroBetween(LocalDateTime inicio, LocalDateTime fim);
+    @Query(SELECT_RESUMO + "WHERE d.horarioRegistro BETWEEN :inicio AND :fim ORDER BY d.horarioRegistro, d.idDeteccao")
+    List<DeteccaoResumoDTO> listarResumoPorPeriodo(LocalDateTime inicio, LocalDateTime fim);
     
     @Query("SELECT d FROM DeteccaoMoto d ORDER BY d.horarioRegistro DESC")
     List<DeteccaoMoto> findAllOrderByHorarioDesc();
     
-    @Query("SELECT d FROM DeteccaoMoto d WHERE d.confianca >= :minConfianca")
-    List<DeteccaoMoto> findByConfiancaMaiorQue(Double minConfianca);
+    @Query(SELECT_RESUMO + "WHERE d.confianca >= :minConfianca")
+    List<DeteccaoResumoDTO> listarResumoPorConfianca(Double minConfianca);
     
     @Query("SELECT COUNT(d) FROM DeteccaoMoto d WHERE d.horarioRegistro >= :data")
     Long contarDeteccoesAPartirDe(LocalDateTime data);
+
+    /**
+     * Remoção em massa por ID (no máximo 1000 por chamada no Oracle)
+     */
+    @Modifying
+    @Query("DELETE FROM DeteccaoMoto d WHERE d.idDeteccao IN :ids")
+    int deletarPorIds(Collection<Long> ids);
+
+    /**
+     * Primeira página da paginação por chave (keyset), do registro mais recente para o mais antigo
+     */
+    @Query("SELECT d FROM DeteccaoMoto d ORDER BY d.horarioRegistro DESC, d.idDeteccao DESC")
+    List<DeteccaoMoto> findPrimeiraPagina(Pageable pageable);
+
+    /**
+     * Página seguinte ao cursor (horário, id): usa a ordenação do índice em vez de OFFSET
+     */
+    @Query("SELECT d FROM DeteccaoMoto d " +
+           "WHERE d.horarioRegistro < :horario " +
+           "   OR (d.horarioRegistro = :horario AND d.idDeteccao < :id) " +
+           "ORDER BY d.horarioRegistro DESC, d.idDeteccao DESC")
+    List<DeteccaoMoto> findPaginaApos(LocalDateTime horario, Long id, Pageable pageable);
+
+    /**
+     * Detecções com ID maior que {@code id} (IDENTITY crescente: inseridas depois dela), da mais nova para a mais antiga
+     */
+    @Query("SELECT d FROM DeteccaoMoto d WHERE d.idDeteccao > :id ORDER BY d.idDeteccao DESC")
+    List<DeteccaoMoto> findPosterioresAoId(Long id, Pageable pageable);
+
+    /**
+     * Detecções de motos cadastradas com ID em (id, ate], na ordem de inserção (leitura incremental em páginas)
+     */
+    @Query("SELECT d FROM DeteccaoMoto d WHERE d.idDeteccao > :id AND d.idDeteccao <= :ate " +
+           "AND EXISTS (SELECT 1 FROM Moto m WHERE m.id = d.idMoto) ORDER BY d.idDeteccao")
+    List<DeteccaoMoto> findDeMotosEntreIds(Long id, Long ate, Pageable pageable);
+
+    @Query("SELECT MAX(d.idDeteccao) FROM DeteccaoMoto d")
+    Long buscarMaiorId();
 }
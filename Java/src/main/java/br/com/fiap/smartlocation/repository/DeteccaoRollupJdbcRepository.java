@@ -0,0 +1,226 @@
+package br.com.fiap.smartlocation.repository;
+
+import br.com.fiap.smartlocation.dto.SerieDeteccoesDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Leitura e escrita da tabela DETECCOES_ROLLUP (agregados por minuto, hora e dia) via JDBC puro
+ */
+@Repository
+@RequiredArgsConstructor
+public class DeteccaoRollupJdbcRepository {
+
+    // Soma o incremento de um lote; células ocupadas ficam com o maior valor visto até o recálculo
+    private static final String SQL_ACUMULAR =
+            "MERGE INTO DETECCOES_ROLLUP r " +
+            "USING (SELECT ? AS RESOLUCAO, ? AS INICIO, ? AS PATIO_ID, ? AS QUANTIDADE, ? AS SOMA_CONFIANCA, " +
+            "              ? AS CELULAS_OCUPADAS FROM DUAL) s " +
+            "ON (r.RESOLUCAO = s.RESOLUCAO AND r.INICIO = s.INICIO AND r.PATIO_ID = s.PATIO_ID) " +
+            "WHEN MATCHED THEN UPDATE SET r.QUANTIDADE = r.QUANTIDADE + s.QUANTIDADE, " +
+            "     r.SOMA_CONFIANCA = r.SOMA_CONFIANCA + s.SOMA_CONFIANCA, " +
+            "     r.CELULAS_OCUPADAS = GREATEST(r.CELULAS_OCUPADAS, s.CELULAS_OCUPADAS) " +
+            "WHEN NOT MATCHED THEN INSERT (RESOLUCAO, INICIO, PATIO_ID, QUANTIDADE, SOMA_CONFIANCA, CELULAS_OCUPADAS) " +
+            "     VALUES (s.RESOLUCAO, s.INICIO, s.PATIO_ID, s.QUANTIDADE, s.SOMA_CONFIANCA, s.CELULAS_OCUPADAS)";
+
+    private static final String SQL_APAGAR_DESDE =
+            "DELETE FROM DETECCOES_ROLLUP WHERE RESOLUCAO = ? AND INICIO >= ?";
+
+    private static final String SQL_APAGAR_FAIXA =
+            "DELETE FROM DETECCOES_ROLLUP WHERE RESOLUCAO = ? AND INICIO >= ? AND INICIO < ?";
+
+    // Formato do TRUNC e tamanho da célula vêm de constantes/configuração (não de entrada do usuário)
+    private static final String SQL_RECALCULAR =
+            "INSERT INTO DETECCOES_ROLLUP (RESOLUCAO, INICIO, PATIO_ID, QUANTIDADE, SOMA_CONFIANCA, CELULAS_OCUPADAS) " +
+            "SELECT ?, TRUNC(d.HORARIO_REGISTRO, '%1$s'), NVL(m.PATIO_ID, 0), COUNT(*), NVL(SUM(d.CONFIANCA), 0), " +
+            "       COUNT(DISTINCT FLOOR(d.POSICAO_X / %2$s) * 1000000 + FLOOR(d.POSICAO_Y / %2$s)) " +
+            "FROM DETECCOES_MOTO d LEFT JOIN MOTO m ON m.ID = d.ID_MOTO " +
+            "WHERE d.HORARIO_REGISTRO >= ? %3$s" +
+            "GROUP BY TRUNC(d.HORARIO_REGISTRO, '%1$s'), NVL(m.PATIO_ID, 0)";
+
+    private static final String SQL_MINUTOS =
+            "SELECT DISTINCT TRUNC(HORARIO_REGISTRO, 'MI') AS MINUTO FROM DETECCOES_MOTO " +
+            "WHERE %s IN (:ids) AND HORARIO_REGISTRO IS NOT NULL";
+
+    private static final String SQL_SOMAR =
+            "SELECT NVL(SUM(QUANTIDADE), 0) FROM DETECCOES_ROLLUP WHERE RESOLUCAO = ? AND INICIO >= ? AND INICIO < ?";
+
+    private static final String SQL_SERIE =
+            "SELECT INICIO, SUM(QUANTIDADE) AS QUANTIDADE, SUM(SOMA_CONFIANCA) AS SOMA_CONFIANCA, " +
+            "       SUM(CELULAS_OCUPADAS) AS CELULAS_OCUPADAS " +
+            "FROM DETECCOES_ROLLUP WHERE RESOLUCAO = :resolucao AND INICIO >= :inicio AND INICIO < :fim " +
+            "  AND (:patioId IS NULL OR PATIO_ID = :patioId) " +
+            "GROUP BY INICIO ORDER BY INICIO";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Incremento de um balde (resolução, início, pátio) calculado a partir de um lote de detecções
+     */
+    public static class Incremento {
+        private final String resolucao;
+        private final LocalDateTime inicio;
+        private final long patioId;
+        private long quantidade;
+        private double somaConfianca;
+        private int celulasOcupadas;
+
+        public Incremento(String resolucao, LocalDateTime inicio, long patioId) {
+            this.resolucao = resolucao;
+            this.inicio = inicio;
+            this.patioId = patioId;
+        }
+
+        public void somar(double confianca) {
+            quantidade++;
+            somaConfianca += confianca;
+        }
+
+        public void setCelulasOcupadas(int celulasOcupadas) {
+            this.celulasOcupadas = celulasOcupadas;
+        }
+    }
+
+    public void acumular(Collection<Incremento> incrementos, int tamanhoLote) {
+        jdbcTemplate.batchUpdate(SQL_ACUMULAR, incrementos, tamanhoLote, (ps, i) -> {
+            ps.setString(1, i.resolucao);
+            ps.setTimestamp(2, Timestamp.valueOf(i.inicio));
+            ps.setLong(3, i.patioId);
+            ps.setLong(4, i.quantidade);
+            ps.setDouble(5, i.somaConfianca);
+            ps.setInt(6, i.celulasOcupadas);
+        });
+    }
+
+    /**
+     * Refaz a partir das detecções brutas os baldes da resolução com início em {@code desde} ou depois
+     * ({@code desde} deve estar alinhado à resolução)
+     *
+     * @return quantidade de baldes gravados
+     */
+    public int recalcular(String resolucao, String formatoTrunc, double tamanhoCelula, LocalDateTime desde) {
+        Timestamp inicio = Timestamp.valueOf(desde);
+        jdbcTemplate.update(SQL_APAGAR_DESDE, resolucao, inicio);
+        String sql = String.format(SQL_RECALCULAR, formatoTrunc, Double.toString(tamanhoCelula), "");
+        return jdbcTemplate.update(sql, resolucao, inicio);
+    }
+
+    /**
+     * Refaz os baldes da resolução com início em [desde, ate) (ambos alinhados à resolução)
+     *
+     * @return quantidade de baldes gravados
+     */
+    public int recalcular(String resolucao, String formatoTrunc, double tamanhoCelula, LocalDateTime desde, LocalDateTime ate) {
+        Timestamp inicio = Timestamp.valueOf(desde);
+        Timestamp fim = Timestamp.valueOf(ate);
+        jdbcTemplate.update(SQL_APAGAR_FAIXA, resolucao, inicio, fim);
+        String sql = String.format(SQL_RECALCULAR, formatoTrunc, Double.toString(tamanhoCelula),
+                "AND d.HORARIO_REGISTRO < ? ");
+        return jdbcTemplate.update(sql, resolucao, inicio, fim);
+    }
+
+    /**
+     * Minutos (horário truncado) das detecções com os IDs informados
+     */
+    public List<LocalDateTime> minutosPorIds(Collection<Long> ids) {
+        return minutos("ID", ids);
+    }
+
+    /**
+     * Minutos (horário truncado) das detecções das motos informadas
+     */
+    public List<LocalDateTime> minutosPorMotos(Collection<Long> idsMoto) {
+        return minutos("ID_MOTO", idsMoto);
+    }
+
+    private List<LocalDateTime> minutos(String coluna, Collection<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return namedJdbcTemplate.query(String.format(SQL_MINUTOS, coluna), new MapSqlParameterSource("ids", ids),
+                (rs, n) -> rs.getTimestamp("MINUTO").toLocalDateTime());
+    }
+
+    /**
+     * Soma das quantidades dos baldes com início em [inicio, fim)
+     */
+    public long somarQuantidade(String resolucao, LocalDateTime inicio, LocalDateTime fim) {
+        Long total = jdbcTemplate.queryForObject(SQL_SOMAR, Long.class,
+                resolucao, Timestamp.valueOf(inicio), Timestamp.valueOf(fim));
+        return total != null ? total : 0L;
+    }
+
+    /**
+     * Detecções brutas em [inicio, fim); {@code fim} nulo conta até o registro mais recente
+     */
+    public long contarBrutas(LocalDateTime inicio, LocalDateTime fim) {
+        Long total = fim == null
+                ? jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM DETECCOES_MOTO WHERE HORARIO_REGISTRO >= ?", Long.class,
+                        Timestamp.valueOf(inicio))
+                : jdbcTemplate.queryForObject(
+                        "SELECT COUNT(*) FROM DETECCOES_MOTO WHERE HORARIO_REGISTRO >= ? AND HORARIO_REGISTRO < ?",
+                        Long.class, Timestamp.valueOf(inicio), Timestamp.valueOf(fim));
+        return total != null ? total : 0L;
+    }
+
+    /**
+     * Série dos baldes da resolução em [inicio, fim), somando os pátios (ou de um único pátio)
+     */
+    public List<SerieDeteccoesDTO> serie(String resolucao, LocalDateTime inicio, LocalDateTime fim, Long patioId) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("resolucao", resolucao)
+                .addValue("inicio", Timestamp.valueOf(inicio))
+                .addValue("fim", Timestamp.valueOf(fim))
+                .addValue("patioId", patioId, Types.NUMERIC);
+        return namedJdbcTemplate.query(SQL_SERIE, params, (rs, n) -> {
+            long quantidade = rs.getLong("QUANTIDADE");
+            double soma = rs.getDouble("SOMA_CONFIANCA");
+            return new SerieDeteccoesDTO(
+                    rs.getTimestamp("INICIO").toLocalDateTime(),
+                    quantidade,
+                    quantidade > 0 ? soma / quantidade : null,
+                    rs.getLong("CELULAS_OCUPADAS"));
+        });
+    }
+
+    public boolean possuiBaldes() {
+        Integer existe = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM DETECCOES_ROLLUP WHERE ROWNUM = 1", Integer.class);
+        return existe != null && existe > 0;
+    }
+
+    public LocalDateTime primeiroHorarioBruto() {
+        Timestamp primeiro = jdbcTemplate.queryForObject(
+                "SELECT MIN(HORARIO_REGISTRO) FROM DETECCOES_MOTO", Timestamp.class);
+        return primeiro != null ? primeiro.toLocalDateTime() : null;
+    }
+
+    /**
+     * Pátio atual de cada moto (motos sem pátio ficam de fora)
+     */
+    public Map<Long, Long> patiosDasMotos(Collection<Long> idsMoto) {
+        Map<Long, Long> patios = new HashMap<>();
+        if (idsMoto.isEmpty()) {
+            return patios;
+        }
+        namedJdbcTemplate.query("SELECT ID, PATIO_ID FROM MOTO WHERE ID IN (:ids) AND PATIO_ID IS NOT NULL",
+                new MapSqlParameterSource("ids", idsMoto),
+                rs -> {
+                    patios.put(rs.getLong("ID"), rs.getLong("PATIO_ID"));
+                });
+        return patios;
+    }
+}
@@ -1,27 +1,70 @@
 package br.com.fiap.smartlocation.repository;
 
+import br.com.fiap.smartlocation.dto.MotoResumoDTO;
 import br.com.fiap.smartlocation.model.Moto;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface MotoRepository extends JpaRepository<Moto, Long> {
+
+    // Projeção com o pátio em LEFT JOIN: uma única consulta, sem carregar entidades
+    String SELECT_RESUMO = "SELECT new br.com.fiap.smartlocation.dto.MotoResumoDTO(" +
+            "m.id, m.placa, m.modelo, m.status, p.id, p.nome, m.ultimaAtualizacao) " +
+            "FROM Moto m LEFT JOIN m.patio p ";
     
     Optional<Moto> findByPlaca(String placa);
-    
-    List<Moto> findByStatus(String status);
+
+    /**
+     * Todas as motos com o pátio no mesmo SELECT (evita uma consulta de pátio por moto)
+     */
+    @Query("SELECT m FROM Moto m LEFT JOIN FETCH m.patio ORDER BY m.id")
+    List<Moto> findAllComPatio();
+
+    @Query(SELECT_RESUMO + "ORDER BY m.id")
+    List<MotoResumoDTO> listarResumo();
+
+    @Query(SELECT_RESUMO + "WHERE m.status = :status ORDER BY m.id")
+    List<MotoResumoDTO> listarResumoPorStatus(String status);
     
     long countByStatus(String status);
     
     List<Moto> findByPatioId(Long patioId);
     
-    @Query("SELECT m FROM Moto m WHERE m.status = 'DISPONIVEL'")
-    List<Moto> findMotosDisponiveis();
-    
     @Query("SELECT m FROM Moto m WHERE m.placa LIKE 'DET-%'")
     List<Moto> findMotosComPlacaVirtual();
+    
+    /**
+     * Remoção em massa; as dependências devem ser removidas antes (ver MotoService.deletarVarias)
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("DELETE FROM Moto m WHERE m.id IN :ids")
+    int deletarPorIds(Collection<Long> ids);
+
+    /**
+     * IDs da lista que existem em MOTO (no máximo 1000 por chamada no Oracle)
+     */
+    @Query("SELECT m.id FROM Moto m WHERE m.id IN :ids")
+    List<Long> buscarIdsExistentes(Collection<Long> ids);
+
+    @Query("SELECT m.status, COUNT(m) FROM Moto m GROUP BY m.status")
+    List<Object[]> contarAgrupadoPorStatus();
+
+    /**
+     * Linhas (id da moto, id do pátio ou null, status) de todas as motos
+     */
+    @Query("SELECT m.id, p.id, m.status FROM Moto m LEFT JOIN m.patio p")
+    List<Object[]> listarPatioEStatus();
+
+    /**
+     * (id do pátio ou null, status) da moto; vazio se ela não existe
+     */
+    @Query("SELECT p.id, m.status FROM Moto m LEFT JOIN m.patio p WHERE m.id = :id")
+    List<Object[]> buscarPatioEStatus(Long id);
 }
@@ -0,0 +1,64 @@
+package br.com.fiap.smartlocation.repository;
+
+import br.com.fiap.smartlocation.dto.MovimentacaoDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+
+/**
+ * Consultas de movimentação via JDBC puro, lidas linha a linha sem materializar entidades
+ */
+@Repository
+@RequiredArgsConstructor
+public class MovimentacaoJdbcRepository {
+
+    // Uma linha por moto: a última ENTRADA ou SAIDA, escolhida por função de janela
+    private static final String SQL_ULTIMAS_ENTRADAS_SAIDAS =
+            "SELECT moto_id, tipo_evento, dt_evento FROM (" +
+            "  SELECT mv.moto_id, mv.tipo_evento, mv.dt_evento, " +
+            "         ROW_NUMBER() OVER (PARTITION BY mv.moto_id ORDER BY mv.dt_evento DESC, mv.id DESC) AS rn " +
+            "  FROM MOVIMENTACAO mv WHERE mv.tipo_evento IN ('ENTRADA', 'SAIDA')" +
+            ") WHERE rn = 1";
+
+    // Só insere se a moto existe: uma moto removida não derruba o batch inteiro pela FK
+    private static final String SQL_INSERIR =
+            "INSERT INTO MOVIMENTACAO (moto_id, tipo_evento, descricao, dt_evento) " +
+            "SELECT m.id, ?, ?, ? FROM MOTO m WHERE m.id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Entrega ao handler a última entrada/saída de cada moto (colunas moto_id, tipo_evento, dt_evento)
+     */
+    public void percorrerUltimasEntradasSaidas(RowCallbackHandler handler) {
+        jdbcTemplate.query(SQL_ULTIMAS_ENTRADAS_SAIDAS, handler);
+    }
+
+    /**
+     * Insere as movimentações em batches de {@code tamanhoLote} linhas; as de motos inexistentes são ignoradas
+     *
+     * @return linhas inseridas por movimentação, na ordem recebida (0 = ignorada)
+     */
+    public int[] inserirEmLote(List<MovimentacaoDTO> movimentacoes, int tamanhoLote) {
+        int[][] resultado = jdbcTemplate.batchUpdate(SQL_INSERIR, movimentacoes, tamanhoLote, (ps, m) -> {
+            ps.setString(1, m.getTipoEvento());
+            ps.setObject(2, m.getDescricao(), Types.VARCHAR);
+            ps.setTimestamp(3, Timestamp.valueOf(m.getDtEvento()));
+            ps.setLong(4, m.getMotoId());
+        });
+        int[] linhas = new int[movimentacoes.size()];
+        int i = 0;
+        for (int[] lote : resultado) {
+            for (int n : lote) {
+                // O driver Oracle pode devolver SUCCESS_NO_INFO (-2) por linha em batch
+                linhas[i++] = n < 0 ? 1 : n;
+            }
+        }
+        return linhas;
+    }
+}
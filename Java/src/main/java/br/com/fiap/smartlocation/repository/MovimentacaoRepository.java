@@ -2,9 +2,11 @@ package br.com.fiap.smartlocation.repository;
 
 import br.com.fiap.smartlocation.model.Movimentacao;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -12,7 +14,9 @@ public interface MovimentacaoRepository extends JpaRepository<Movimentacao, Long
     
     List<Movimentacao> findByMotoId(Long motoId);
     
-    void deleteByMotoId(Long motoId);
+    @Modifying
+    @Query("DELETE FROM Movimentacao m WHERE m.moto.id IN :idsMoto")
+    int deletarPorMotos(Collection<Long> idsMoto);
     
     List<Movimentacao> findByTipoEvento(String tipoEvento);
     
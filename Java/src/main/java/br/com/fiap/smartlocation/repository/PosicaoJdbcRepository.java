@@ -0,0 +1,123 @@
+package br.com.fiap.smartlocation.repository;
+
+import br.com.fiap.smartlocation.dto.PosicaoDTO;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Consultas de posição via JDBC puro, lidas linha a linha sem materializar entidades
+ */
+@Repository
+@RequiredArgsConstructor
+public class PosicaoJdbcRepository {
+
+    // Uma linha por moto: a posição mais recente, escolhida por função de janela
+    private static final String SQL_ULTIMAS_POSICOES =
+            "SELECT moto_id, latitude, longitude, dt_posicao FROM (" +
+            "  SELECT p.moto_id, p.latitude, p.longitude, p.dt_posicao, " +
+            "         ROW_NUMBER() OVER (PARTITION BY p.moto_id ORDER BY p.dt_posicao DESC, p.id DESC) AS rn " +
+            "  FROM POSICAO p WHERE p.moto_id IS NOT NULL" +
+            ") WHERE rn = 1";
+
+    // Só insere se a moto existe: uma moto desconhecida não derruba o batch inteiro pela FK
+    private static final String SQL_INSERIR =
+            "INSERT INTO POSICAO (moto_id, latitude, longitude, dt_posicao) " +
+            "SELECT m.id, ?, ?, ? FROM MOTO m WHERE m.id = ?";
+
+    // Varredura pelo índice IDX_POSICAO_MOTO_DT (moto_id, dt_posicao, id), em ordem cronológica
+    private static final String SQL_HISTORICO =
+            "SELECT id, latitude, longitude, dt_posicao FROM POSICAO " +
+            "WHERE moto_id = ? AND dt_posicao >= ? AND dt_posicao < ? ";
+
+    private static final String SQL_ORDEM = "ORDER BY dt_posicao, id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * Posição do histórico com o ID da linha, usado como desempate no cursor
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class LinhaHistorico {
+        private final long id;
+        private final PosicaoDTO posicao;
+    }
+
+    /**
+     * Entrega ao handler a última posição de cada moto (colunas moto_id, latitude, longitude, dt_posicao)
+     */
+    public void percorrerUltimasPosicoes(RowCallbackHandler handler) {
+        jdbcTemplate.query(SQL_ULTIMAS_POSICOES, handler);
+    }
+
+    /**
+     * Insere as posições em batches de {@code tamanhoLote} linhas; posições de motos inexistentes são ignoradas
+     *
+     * @return linhas inseridas por posição, na ordem recebida (0 = ignorada)
+     */
+    public int[] inserirEmLote(List<PosicaoDTO> posicoes, int tamanhoLote) {
+        int[][] resultado = jdbcTemplate.batchUpdate(SQL_INSERIR, posicoes, tamanhoLote, (ps, p) -> {
+            ps.setDouble(1, p.getLatitude());
+            ps.setDouble(2, p.getLongitude());
+            ps.setTimestamp(3, Timestamp.valueOf(p.getDtPosicao()));
+            ps.setLong(4, p.getMotoId());
+        });
+        int[] linhas = new int[posicoes.size()];
+        int i = 0;
+        for (int[] lote : resultado) {
+            for (int n : lote) {
+                // O driver Oracle pode devolver SUCCESS_NO_INFO (-2) por linha em batch
+                linhas[i++] = n < 0 ? 1 : n;
+            }
+        }
+        return linhas;
+    }
+
+    /**
+     * Percorre as posições da moto em [inicio, fim) em ordem cronológica, com fetch size limitado
+     * (colunas id, latitude, longitude, dt_posicao)
+     */
+    public void percorrerHistorico(Long motoId, LocalDateTime inicio, LocalDateTime fim, int fetchSize,
+                                   RowCallbackHandler handler) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(SQL_HISTORICO + SQL_ORDEM);
+            ps.setFetchSize(fetchSize);
+            ps.setLong(1, motoId);
+            ps.setTimestamp(2, Timestamp.valueOf(inicio));
+            ps.setTimestamp(3, Timestamp.valueOf(fim));
+            return ps;
+        }, handler);
+    }
+
+    /**
+     * Até {@code limite} posições da moto em [inicio, fim) depois do cursor (dt_posicao, id), sem OFFSET
+     *
+     * @return linhas em ordem cronológica
+     */
+    public List<LinhaHistorico> paginaHistorico(Long motoId, LocalDateTime inicio, LocalDateTime fim,
+                                          LocalDateTime cursorHorario, Long cursorId, int limite) {
+        List<LinhaHistorico> linhas = new ArrayList<>();
+        RowCallbackHandler handler = rs -> linhas.add(new LinhaHistorico(rs.getLong("id"), new PosicaoDTO(motoId,
+                rs.getDouble("latitude"), rs.getDouble("longitude"), rs.getTimestamp("dt_posicao").toLocalDateTime())));
+        if (cursorHorario == null || cursorId == null) {
+            jdbcTemplate.query(SQL_HISTORICO + SQL_ORDEM + " FETCH FIRST ? ROWS ONLY", handler,
+                    motoId, Timestamp.valueOf(inicio), Timestamp.valueOf(fim), limite);
+        } else {
+            Timestamp cursor = Timestamp.valueOf(cursorHorario);
+            jdbcTemplate.query(SQL_HISTORICO + "AND (dt_posicao > ? OR (dt_posicao = ? AND id > ?)) " + SQL_ORDEM +
+                            " FETCH FIRST ? ROWS ONLY", handler,
+                    motoId, Timestamp.valueOf(inicio), Timestamp.valueOf(fim), cursor, cursor, cursorId, limite);
+        }
+        return linhas;
+    }
+}
@@ -0,0 +1,97 @@
+package br.com.fiap.smartlocation.repository;
+
+import br.com.fiap.smartlocation.dto.LeituraSensorDTO;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Leitura e escrita da tabela SENSOR (uma linha por moto) via JDBC puro
+ */
+@Repository
+@RequiredArgsConstructor
+public class SensorJdbcRepository {
+
+    private static final String SQL_LISTAR =
+            "SELECT moto_id, ligado, nivel_bateria, nivel_combustivel, ultima_atualizacao FROM SENSOR WHERE moto_id IS NOT NULL";
+
+    // A origem só tem linha se a moto existe; uma leitura mais antiga que a gravada não a sobrescreve
+    private static final String SQL_MESCLAR =
+            "MERGE INTO SENSOR s " +
+            "USING (SELECT m.ID AS MOTO_ID, ? AS LIGADO, ? AS NIVEL_BATERIA, ? AS NIVEL_COMBUSTIVEL, " +
+            "              ? AS ULTIMA_ATUALIZACAO FROM MOTO m WHERE m.ID = ?) n " +
+            "ON (s.MOTO_ID = n.MOTO_ID) " +
+            "WHEN MATCHED THEN UPDATE SET s.LIGADO = n.LIGADO, s.NIVEL_BATERIA = n.NIVEL_BATERIA, " +
+            "     s.NIVEL_COMBUSTIVEL = n.NIVEL_COMBUSTIVEL, s.ULTIMA_ATUALIZACAO = n.ULTIMA_ATUALIZACAO " +
+            "     WHERE s.ULTIMA_ATUALIZACAO IS NULL OR s.ULTIMA_ATUALIZACAO <= n.ULTIMA_ATUALIZACAO " +
+            "WHEN NOT MATCHED THEN INSERT (MOTO_ID, LIGADO, NIVEL_BATERIA, NIVEL_COMBUSTIVEL, ULTIMA_ATUALIZACAO) " +
+            "     VALUES (n.MOTO_ID, n.LIGADO, n.NIVEL_BATERIA, n.NIVEL_COMBUSTIVEL, n.ULTIMA_ATUALIZACAO)";
+
+    // Limite de itens de uma lista IN no Oracle
+    private static final int MAX_IN = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    /**
+     * Entrega ao handler o estado gravado de cada sensor
+     * (colunas moto_id, ligado, nivel_bateria, nivel_combustivel, ultima_atualizacao)
+     */
+    public void percorrerSensores(RowCallbackHandler handler) {
+        jdbcTemplate.query(SQL_LISTAR, handler);
+    }
+
+    /**
+     * Grava o último valor de cada moto com MERGE em batches JDBC
+     */
+    public void mesclar(Collection<LeituraSensorDTO> leituras, int tamanhoLote) {
+        jdbcTemplate.batchUpdate(SQL_MESCLAR, leituras, tamanhoLote, (ps, l) -> {
+            if (l.getLigado() != null) {
+                ps.setInt(1, l.getLigado() ? 1 : 0);
+            } else {
+                ps.setNull(1, Types.NUMERIC);
+            }
+            setDouble(ps, 2, l.getNivelBateria());
+            setDouble(ps, 3, l.getNivelCombustivel());
+            ps.setTimestamp(4, Timestamp.valueOf(l.getUltimaAtualizacao()));
+            ps.setLong(5, l.getMotoId());
+        });
+    }
+
+    /**
+     * Quais dos IDs informados existem na tabela MOTO
+     */
+    public Set<Long> motosExistentes(Collection<Long> idsMoto) {
+        Set<Long> existentes = new HashSet<>();
+        List<Long> ids = new ArrayList<>(idsMoto);
+        for (int i = 0; i < ids.size(); i += MAX_IN) {
+            namedJdbcTemplate.query("SELECT ID FROM MOTO WHERE ID IN (:ids)",
+                    new MapSqlParameterSource("ids", ids.subList(i, Math.min(ids.size(), i + MAX_IN))),
+                    rs -> {
+                        existentes.add(rs.getLong("ID"));
+                    });
+        }
+        return existentes;
+    }
+
+    private static void setDouble(PreparedStatement ps, int indice, Double valor) throws SQLException {
+        if (valor != null) {
+            ps.setDouble(indice, valor);
+        } else {
+            ps.setNull(indice, Types.NUMERIC);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.AnaliseJobDTO;
+import br.com.fiap.smartlocation.dto.AnaliseResultadoDTO;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Agendador de jobs de análise: fila por prioridade (FIFO entre prioridades iguais)
+ * atendida por um pool de threads do mesmo tamanho do pool de workers de detecção
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnaliseJobService {
+
+    public enum Status { FILA, EXECUTANDO, CONCLUIDO, ERRO, CANCELADO }
+
+    private final PythonIntegrationService pythonService;
+    private final DetectorWorkerService detectorWorker;
+    private final DeteccaoStreamService deteccaoStream;
+
+    @Value("${python.worker.enabled:true}")
+    private boolean workerHabilitado;
+
+    // Quantidade de jobs finalizados mantidos para consulta
+    @Value("${analise.jobs.historico:100}")
+    private int limiteHistorico;
+
+    private final Map<String, Job> jobs = new ConcurrentHashMap<>();
+    private final AtomicLong sequencia = new AtomicLong();
+    private ThreadPoolExecutor executor;
+
+    @PostConstruct
+    void iniciar() {
+        // No modo notebook só uma execução por vez é possível (o notebook grava sempre em runs/)
+        int paralelismo = workerHabilitado ? detectorWorker.getQuantidade() : 1;
+        AtomicInteger contador = new AtomicInteger();
+        executor = new ThreadPoolExecutor(paralelismo, paralelismo, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+                    Thread t = new Thread(r, "analise-job-" + contador.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        log.info("Agendador de análises iniciado com {} execução(ões) em paralelo", paralelismo);
+    }
+
+    /**
+     * Enfileira a análise de um vídeo da pasta 'video' (sem nome, o primeiro vídeo).
+     * Maior prioridade é atendida primeiro.
+     */
+    public AnaliseJobDTO submeter(String nomeVideo, int prioridade) throws IOException {
+        Path video = pythonService.resolverVideo(nomeVideo);
+        Job job = new Job(UUID.randomUUID().toString(), video, prioridade, sequencia.incrementAndGet());
+        jobs.put(job.id, job);
+        deteccaoStream.abrir(job.id);
+        executor.execute(job);
+        log.info("Job {} enfileirado: {} (prioridade {})", job.id, video.getFileName(), prioridade);
+        removerHistoricoAntigo();
+        return job.toDTO();
+    }
+
+    public Optional<AnaliseJobDTO> buscar(String id) {
+        return Optional.ofNullable(jobs.get(id)).map(Job::toDTO);
+    }
+
+    /**
+     * Jobs do mais recente para o mais antigo
+     */
+    public List<AnaliseJobDTO> listar() {
+        return jobs.values().stream()
+                .sorted(Comparator.comparingLong((Job j) -> j.sequencia).reversed())
+                .map(Job::toDTO)
+                .toList();
+    }
+
+    /**
+     * Cancela um job na fila (é removido dela) ou em execução (o processo é interrompido)
+     *
+     * @return false se o job não existe ou já terminou
+     */
+    public boolean cancelar(String id) {
+        Job job = jobs.get(id);
+        if (job == null) {
+            return false;
+        }
+        synchronized (job) {
+            if (job.status == Status.FILA && executor.remove(job)) {
+                job.finalizar(Status.CANCELADO, "Cancelado antes de iniciar", null);
+                log.info("Job {} removido da fila", id);
+                deteccaoStream.finalizar(id, Status.CANCELADO.name());
+                return true;
+            }
+            if (job.status != Status.EXECUTANDO) {
+                return false;
+            }
+            job.cancelado = true;
+        }
+        pythonService.cancelarJob(id);
+        return true;
+    }
+
+    public void cancelarTodos() {
+        jobs.keySet().forEach(this::cancelar);
+    }
+
+    public boolean isAnaliseEmExecucao() {
+        return jobs.values().stream().anyMatch(j -> j.status == Status.FILA || j.status == Status.EXECUTANDO);
+    }
+
+    /**
+     * Indica se o job ainda está na fila ou em execução (resultado incompleto)
+     */
+    public boolean isEmAndamento(String id) {
+        Job job = jobs.get(id);
+        return job != null && (job.status == Status.FILA || job.status == Status.EXECUTANDO);
+    }
+
+    private void removerHistoricoAntigo() {
+        List<Job> finalizados = jobs.values().stream()
+                .filter(j -> j.status != Status.FILA && j.status != Status.EXECUTANDO)
+                .sorted(Comparator.comparingLong((Job j) -> j.sequencia).reversed())
+                .skip(limiteHistorico)
+                .toList();
+        finalizados.forEach(j -> jobs.remove(j.id));
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Job de análise; também é a tarefa executada pelo pool (ordenada por prioridade e chegada)
+     */
+    private class Job implements Runnable, Comparable<Job> {
+
+        private final String id;
+        private final Path video;
+        private final int prioridade;
+        private final long sequencia;
+        private final LocalDateTime criadoEm = LocalDateTime.now();
+
+        private volatile Status status = Status.FILA;
+        private volatile boolean cancelado;
+        private volatile String mensagem;
+        private volatile LocalDateTime iniciadoEm;
+        private volatile LocalDateTime finalizadoEm;
+        private volatile AnaliseResultadoDTO resultado;
+
+        Job(String id, Path video, int prioridade, long sequencia) {
+            this.id = id;
+            this.video = video;
+            this.prioridade = prioridade;
+            this.sequencia = sequencia;
+        }
+
+        @Override
+        public void run() {
+            synchronized (this) {
+                if (status != Status.FILA) {
+                    return;
+                }
+                status = Status.EXECUTANDO;
+                iniciadoEm = LocalDateTime.now();
+            }
+
+            AnaliseResultadoDTO r = pythonService.executarJob(id, video);
+
+            if (cancelado) {
+                finalizar(Status.CANCELADO, "Cancelado durante a execução", r);
+            } else if ("SUCESSO".equals(r.getStatus())) {
+                finalizar(Status.CONCLUIDO, r.getMensagem(), r);
+            } else {
+                finalizar(Status.ERRO, r.getMensagem(), r);
+            }
+        }
+
+        synchronized void finalizar(Status novoStatus, String msg, AnaliseResultadoDTO r) {
+            status = novoStatus;
+            mensagem = msg;
+            resultado = r;
+            finalizadoEm = LocalDateTime.now();
+            log.info("Job {} finalizado: {}", id, novoStatus);
+        }
+
+        @Override
+        public int compareTo(Job outro) {
+            int cmp = Integer.compare(outro.prioridade, prioridade);
+            return cmp != 0 ? cmp : Long.compare(sequencia, outro.sequencia);
+        }
+
+        AnaliseJobDTO toDTO() {
+            return new AnaliseJobDTO(id, video.getFileName().toString(), prioridade, status.name(),
+                    mensagem, criadoEm, iniciadoEm, finalizadoEm, resultado);
+        }
+    }
+}
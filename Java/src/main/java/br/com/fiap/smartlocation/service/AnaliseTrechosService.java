@@ -0,0 +1,393 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.WorkerRespostaDTO;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * Análise de vídeos longos em trechos paralelos: o vídeo é dividido em intervalos de quadros,
+ * cada um analisado por um worker do pool, e as saídas são mescladas em deteccoes.ndjson/deteccoes.json
+ * na ordem dos quadros, como se um único worker tivesse analisado o vídeo inteiro.
+ * Cada trecho começa alguns quadros antes do seu intervalo para aquecer o rastreador; nesses quadros
+ * de sobreposição as detecções dos dois trechos são pareadas por distância, o que remove as duplicatas
+ * e liga os IDs de rastreamento de um trecho aos do anterior.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnaliseTrechosService {
+
+    private final DetectorWorkerService detectorWorker;
+    private final DeteccaoStreamService deteccaoStream;
+    private final ObjectMapper objectMapper;
+
+    @Value("${analise.trechos.habilitado:true}")
+    private boolean habilitado;
+
+    // Trechos menores não compensam o custo de abrir o vídeo e aquecer o rastreador em outro worker
+    @Value("${analise.trechos.quadros-minimos:900}")
+    private int quadrosMinimos;
+
+    @Value("${analise.trechos.sobreposicao-quadros:30}")
+    private int sobreposicaoQuadros;
+
+    // Mesma distância usada pelo worker na deduplicação dentro de um quadro
+    @Value("${analise.trechos.distancia-duplicata:60}")
+    private double distanciaDuplicata;
+
+    private final Map<String, Execucao> emAndamento = new ConcurrentHashMap<>();
+    private final AtomicInteger contador = new AtomicInteger();
+    private final ExecutorService executor = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "analise-trecho-" + contador.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Analisa o vídeo gravando os resultados em {@code saidaDir} e {@code graficoDir}. Com um único worker
+     * ou um vídeo curto o job segue inteiro para um worker; caso contrário é dividido em até um trecho por worker.
+     */
+    public WorkerRespostaDTO executar(String jobId, Path video, Path saidaDir, Path graficoDir)
+            throws IOException, InterruptedException {
+        int workers = detectorWorker.getQuantidade();
+        if (!habilitado || workers < 2) {
+            return detectorWorker.executar(jobId, video, saidaDir, graficoDir);
+        }
+        Execucao execucao = new Execucao();
+        emAndamento.put(jobId, execucao);
+        Path trechosDir = saidaDir.resolveSibling("trechos");
+        try {
+            List<Trecho> trechos = planejar(detectorWorker.contarQuadros(jobId, video), workers);
+            if (trechos.size() < 2) {
+                return detectorWorker.executar(jobId, video, saidaDir, graficoDir);
+            }
+            return executarTrechos(jobId, video, saidaDir, graficoDir, trechosDir, trechos, execucao);
+        } finally {
+            emAndamento.remove(jobId);
+            removerDiretorio(trechosDir);
+        }
+    }
+
+    /**
+     * Interrompe os trechos do job, tanto os em execução quanto os que aguardam um worker livre
+     */
+    public void cancelar(String jobId) {
+        Execucao execucao = emAndamento.get(jobId);
+        if (execucao != null) {
+            synchronized (execucao) {
+                execucao.cancelada = true;
+                execucao.futuros.forEach(f -> f.cancel(true));
+            }
+        }
+        detectorWorker.cancelar(jobId);
+    }
+
+    /**
+     * Divide [0, totalQuadros) em intervalos contíguos de mesmo tamanho; o último vai até o fim do vídeo,
+     * já que a contagem de quadros do OpenCV pode ser aproximada
+     */
+    List<Trecho> planejar(int totalQuadros, int workers) {
+        int quantidade = Math.max(1, Math.min(workers, totalQuadros / Math.max(1, quadrosMinimos)));
+        int tamanho = (totalQuadros + quantidade - 1) / quantidade;
+        int sobreposicao = Math.max(0, Math.min(sobreposicaoQuadros, tamanho / 2));
+        List<Trecho> trechos = new ArrayList<>(quantidade);
+        for (int i = 0; i < quantidade; i++) {
+            int inicioProprio = i * tamanho;
+            Integer fim = i == quantidade - 1 ? null : inicioProprio + tamanho;
+            trechos.add(new Trecho(i, Math.max(0, inicioProprio - sobreposicao), inicioProprio, fim));
+        }
+        return trechos;
+    }
+
+    private WorkerRespostaDTO executarTrechos(String jobId, Path video, Path saidaDir, Path graficoDir,
+                                              Path trechosDir, List<Trecho> trechos, Execucao execucao)
+            throws IOException, InterruptedException {
+        long inicioNanos = System.nanoTime();
+        synchronized (execucao) {
+            if (execucao.cancelada) {
+                throw new CancellationException("Análise cancelada");
+            }
+            for (Trecho t : trechos) {
+                t.dir = trechosDir.resolve(Integer.toString(t.indice));
+                Files.createDirectories(t.dir);
+                execucao.futuros.add(executor.submit(() -> detectorWorker.executarTrecho(
+                        jobId + "#" + t.indice, video, t.dir, t.inicio, t.fim, t.inicioProprio)));
+            }
+        }
+        log.info("Job {} dividido em {} trechos", jobId, trechos.size());
+        // O stream SSE acompanha os arquivos dos trechos em ordem, sem esperar a mesclagem
+        deteccaoStream.seguir(jobId, trechos.get(0).dir.resolve("deteccoes.ndjson"), 0);
+
+        List<Path> videos = new ArrayList<>(trechos.size());
+        int quadros = 0;
+        for (int i = 0; i < trechos.size(); i++) {
+            WorkerRespostaDTO resposta;
+            try {
+                resposta = execucao.futuros.get(i).get();
+            } catch (ExecutionException e) {
+                cancelar(jobId);
+                throw new IOException("Falha no trecho " + i + ": " + e.getCause().getMessage(), e.getCause());
+            } catch (InterruptedException e) {
+                cancelar(jobId);
+                throw e;
+            }
+            if (!"SUCESSO".equals(resposta.getStatus())) {
+                cancelar(jobId);
+                throw new IOException("Trecho " + i + " finalizou com erro: " + resposta.getMensagem());
+            }
+            Trecho t = trechos.get(i);
+            Trecho proximo = i + 1 < trechos.size() ? trechos.get(i + 1) : null;
+            deteccaoStream.seguir(jobId, proximo != null ? proximo.dir.resolve("deteccoes.ndjson") : null,
+                    proximo != null ? proximo.inicioProprio : 0);
+            if (resposta.getVideo() != null) {
+                videos.add(Paths.get(resposta.getVideo()));
+            }
+            if (resposta.getFrames() != null) {
+                quadros += resposta.getFrames() - (t.inicioProprio - t.inicio);
+            }
+        }
+        long nanosDeteccao = System.nanoTime() - inicioNanos;
+
+        Path ndjson = saidaDir.resolve("deteccoes.ndjson");
+        Path json = saidaDir.resolve("deteccoes.json");
+        Mesclagem mesclagem = mesclar(trechos, ndjson, json);
+
+        String nomeVideo = video.getFileName().toString();
+        int ponto = nomeVideo.lastIndexOf('.');
+        Path videoAnotado = saidaDir.resolve((ponto > 0 ? nomeVideo.substring(0, ponto) : nomeVideo) + "_motos.mp4");
+        WorkerRespostaDTO mesclado = detectorWorker.mesclarTrechos(jobId, videos, videoAnotado, json, graficoDir);
+        if (!"SUCESSO".equals(mesclado.getStatus())) {
+            // As detecções já estão mescladas; só o vídeo anotado e o gráfico ficam faltando
+            log.warn("Job {}: falha ao concatenar os vídeos dos trechos: {}", jobId, mesclado.getMensagem());
+        }
+
+        log.info("Job {}: {} trechos analisados em {} ms, mesclados em {} ms; {} detecções ({} duplicatas removidas)",
+                jobId, trechos.size(), nanosDeteccao / 1_000_000, (System.nanoTime() - inicioNanos - nanosDeteccao) / 1_000_000,
+                mesclagem.total, mesclagem.duplicatas);
+        return new WorkerRespostaDTO(jobId, "SUCESSO", null, mesclado.getVideo(), json.toString(),
+                mesclado.getGrafico(), (int) mesclagem.total, quadros);
+    }
+
+    /**
+     * Junta as detecções dos trechos em ordem. As do trecho anterior que caem na sobreposição do seguinte
+     * ficam retidas até as do seguinte serem lidas; só elas (poucos quadros) ficam em memória.
+     */
+    private Mesclagem mesclar(List<Trecho> trechos, Path ndjson, Path json) throws IOException {
+        try (BufferedWriter saida = Files.newBufferedWriter(ndjson, StandardCharsets.UTF_8);
+             JsonGenerator gerador = objectMapper.getFactory().createGenerator(json.toFile(), JsonEncoding.UTF8)) {
+            Mesclagem m = new Mesclagem(saida, gerador);
+            gerador.writeStartArray();
+            List<ObjectNode> fronteira = new ArrayList<>();
+            for (int k = 0; k < trechos.size(); k++) {
+                Trecho t = trechos.get(k);
+                Integer proximoInicio = k + 1 < trechos.size() ? trechos.get(k + 1).inicio : null;
+                Map<Long, Long> ids = new HashMap<>();
+                List<ObjectNode> sobreposicao = new ArrayList<>();
+                List<ObjectNode> novaFronteira = new ArrayList<>();
+                boolean resolvida = false;
+
+                try (BufferedReader entrada = Files.newBufferedReader(t.dir.resolve("deteccoes.ndjson"), StandardCharsets.UTF_8)) {
+                    String linha;
+                    while ((linha = entrada.readLine()) != null) {
+                        if (linha.isBlank()) {
+                            continue;
+                        }
+                        ObjectNode d = (ObjectNode) objectMapper.readTree(linha);
+                        long quadro = d.path("quadro").asLong();
+                        if (quadro < t.inicioProprio) {
+                            sobreposicao.add(d);
+                            continue;
+                        }
+                        if (!resolvida) {
+                            resolverSobreposicao(fronteira, sobreposicao, ids, m);
+                            resolvida = true;
+                        }
+                        atribuirId(d, ids, m);
+                        if (proximoInicio != null && quadro >= proximoInicio) {
+                            novaFronteira.add(d);
+                        } else {
+                            m.escrever(d);
+                        }
+                    }
+                }
+                if (!resolvida) {
+                    resolverSobreposicao(fronteira, sobreposicao, ids, m);
+                }
+                fronteira = novaFronteira;
+            }
+            for (ObjectNode d : fronteira) {
+                m.escrever(d);
+            }
+            gerador.writeEndArray();
+            return m;
+        }
+    }
+
+    /**
+     * Quadros de sobreposição: cada detecção do trecho atual é pareada com a mais próxima do anterior
+     * no mesmo quadro. Pares são duplicatas (fica a posição de maior confiança, com o ID do anterior)
+     * e votam no ID global de cada ID local; as sem par são mantidas como detecções novas.
+     */
+    private void resolverSobreposicao(List<ObjectNode> anteriores, List<ObjectNode> atuais,
+                                      Map<Long, Long> ids, Mesclagem m) throws IOException {
+        Map<Long, List<ObjectNode>> porQuadro = new HashMap<>();
+        for (ObjectNode d : anteriores) {
+            porQuadro.computeIfAbsent(d.path("quadro").asLong(), q -> new ArrayList<>()).add(d);
+        }
+        Set<ObjectNode> pareadas = Collections.newSetFromMap(new IdentityHashMap<>());
+        Map<Long, Map<Long, Integer>> votos = new HashMap<>();
+        List<ObjectNode> semPar = new ArrayList<>();
+        double limite2 = distanciaDuplicata * distanciaDuplicata;
+
+        for (ObjectNode d : atuais) {
+            ObjectNode par = null;
+            double menor = limite2;
+            for (ObjectNode candidata : porQuadro.getOrDefault(d.path("quadro").asLong(), List.of())) {
+                double dx = candidata.path("posicaoX").asDouble() - d.path("posicaoX").asDouble();
+                double dy = candidata.path("posicaoY").asDouble() - d.path("posicaoY").asDouble();
+                double dist2 = dx * dx + dy * dy;
+                if (dist2 < menor && !pareadas.contains(candidata)) {
+                    menor = dist2;
+                    par = candidata;
+                }
+            }
+            if (par == null) {
+                semPar.add(d);
+                continue;
+            }
+            pareadas.add(par);
+            m.duplicatas++;
+            if (d.path("confianca").asDouble() > par.path("confianca").asDouble()) {
+                par.set("posicaoX", d.get("posicaoX"));
+                par.set("posicaoY", d.get("posicaoY"));
+                par.set("confianca", d.get("confianca"));
+            }
+            JsonNode local = d.get("idMoto");
+            JsonNode global = par.get("idMoto");
+            if (local != null && !local.isNull() && global != null && !global.isNull()) {
+                votos.computeIfAbsent(local.asLong(), l -> new HashMap<>()).merge(global.asLong(), 1, Integer::sum);
+            }
+        }
+        votos.forEach((local, contagem) -> ids.put(local,
+                Collections.max(contagem.entrySet(), Map.Entry.comparingByValue()).getKey()));
+
+        for (ObjectNode d : semPar) {
+            atribuirId(d, ids, m);
+        }
+        List<ObjectNode> juntas = new ArrayList<>(anteriores.size() + semPar.size());
+        juntas.addAll(anteriores);
+        juntas.addAll(semPar);
+        juntas.sort(Comparator.comparingLong(d -> d.path("quadro").asLong()));
+        for (ObjectNode d : juntas) {
+            m.escrever(d);
+        }
+    }
+
+    /**
+     * Troca o ID de rastreamento local do trecho pelo ID global (novo na primeira vez que aparece)
+     */
+    private static void atribuirId(ObjectNode d, Map<Long, Long> ids, Mesclagem m) {
+        JsonNode local = d.get("idMoto");
+        if (local == null || local.isNull()) {
+            return;
+        }
+        d.put("idMoto", ids.computeIfAbsent(local.asLong(), l -> ++m.ultimoId));
+    }
+
+    private void removerDiretorio(Path diretorio) {
+        if (!Files.exists(diretorio)) {
+            return;
+        }
+        try (Stream<Path> caminhos = Files.walk(diretorio)) {
+            caminhos.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            log.warn("Não foi possível remover {}: {}", diretorio, e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Intervalo de quadros de um trecho: analisa [inicio, fim) e responde por [inicioProprio, fim)
+     */
+    static final class Trecho {
+        private final int indice;
+        private final int inicio;
+        private final int inicioProprio;
+        private final Integer fim;
+        private Path dir;
+
+        Trecho(int indice, int inicio, int inicioProprio, Integer fim) {
+            this.indice = indice;
+            this.inicio = inicio;
+            this.inicioProprio = inicioProprio;
+            this.fim = fim;
+        }
+    }
+
+    /**
+     * Futuros dos trechos de um job, para o cancelamento
+     */
+    private static final class Execucao {
+        private final List<Future<WorkerRespostaDTO>> futuros = new ArrayList<>();
+        private boolean cancelada;
+    }
+
+    /**
+     * Destino da mesclagem: numera as placas virtuais na ordem final e conta duplicatas
+     */
+    private final class Mesclagem {
+        private final BufferedWriter ndjson;
+        private final JsonGenerator json;
+        private long total;
+        private long duplicatas;
+        private long ultimoId;
+
+        private Mesclagem(BufferedWriter ndjson, JsonGenerator json) {
+            this.ndjson = ndjson;
+            this.json = json;
+        }
+
+        private void escrever(ObjectNode d) throws IOException {
+            d.put("placaVirtual", String.format("DET-%04d", ++total));
+            ndjson.write(objectMapper.writeValueAsString(d));
+            ndjson.newLine();
+            json.writeTree(d);
+        }
+    }
+}
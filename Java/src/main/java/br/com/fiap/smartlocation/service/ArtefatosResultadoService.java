@@ -0,0 +1,287 @@
+package br.com.fiap.smartlocation.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Índice em memória dos artefatos (vídeo, gráfico e JSON) de cada resultado de análise.
+ * O índice de um resultado é montado com uma única varredura quando o job termina
+ * e invalidado por um WatchService sobre a pasta runs/ quando os arquivos mudam,
+ * de modo que as páginas consultam os caminhos sem percorrer o disco a cada requisição.
+ */
+@Service
+@Slf4j
+public class ArtefatosResultadoService {
+
+    /** Execução correspondente à pasta runs/ do notebook, reaproveitada a cada análise */
+    public static final String EXECUCAO_NOTEBOOK = "runs";
+    private static final Pattern ID_EXECUCAO = Pattern.compile("[A-Za-z0-9_-]{1,64}");
+
+    private static final String[] PADROES_VIDEO = {"*.mp4", "*.avi", "*.mov"};
+    private static final String[] PADROES_GRAFICO = {"*.png", "*.jpg"};
+    private static final String[] PADROES_JSON = {"deteccoes*.json", "resultado*.json"};
+
+    @Value("${python.notebook.path:../visao_computacional/SmartLocation.ipynb}")
+    private String notebookPath;
+
+    @Value("${python.output.path:../visao_computacional/output}")
+    private String outputPath;
+
+    // Diretório base do resultado (runs/ ou runs/jobs/{id}) -> artefatos
+    private final Map<Path, Artefatos> indice = new ConcurrentHashMap<>();
+    private final Map<WatchKey, Path> diretoriosObservados = new ConcurrentHashMap<>();
+
+    private Path runsDir;
+    private Path jobsDir;
+    private WatchService watcher;
+    private Thread observador;
+
+    @PostConstruct
+    void iniciar() {
+        runsDir = Paths.get(notebookPath).getParent().toAbsolutePath().resolve("runs");
+        jobsDir = runsDir.resolve("jobs");
+        try {
+            Files.createDirectories(jobsDir);
+            watcher = FileSystems.getDefault().newWatchService();
+            registrarArvore(runsDir);
+        } catch (IOException e) {
+            log.warn("Não foi possível observar {}; o índice de artefatos será invalidado apenas pelos jobs: {}",
+                    runsDir, e.getMessage());
+            return;
+        }
+        observador = new Thread(this::observar, "artefatos-watcher");
+        observador.setDaemon(true);
+        observador.start();
+    }
+
+    @PreDestroy
+    void encerrar() {
+        if (watcher != null) {
+            try {
+                watcher.close();
+            } catch (IOException e) {
+                log.debug("Erro ao fechar WatchService", e);
+            }
+        }
+    }
+
+    /**
+     * Artefatos do resultado em {@code baseDir}, montando o índice se ainda não existir
+     */
+    public Artefatos obter(Path baseDir) {
+        return indice.computeIfAbsent(baseDir.toAbsolutePath().normalize(), this::indexar);
+    }
+
+    /**
+     * Artefatos de uma execução pelo identificador exposto nas URLs: o id do job (runs/jobs/{id})
+     * ou "runs" para a saída do notebook
+     */
+    public Optional<Artefatos> obterPorExecucao(String execucao) {
+        if (execucao == null || !ID_EXECUCAO.matcher(execucao).matches()) {
+            return Optional.empty();
+        }
+        Path base = EXECUCAO_NOTEBOOK.equals(execucao) ? runsDir : jobsDir.resolve(execucao);
+        return Files.isDirectory(base) ? Optional.of(obter(base)) : Optional.empty();
+    }
+
+    /**
+     * Remonta o índice do resultado (chamado quando o job termina)
+     */
+    public Artefatos reindexar(Path baseDir) {
+        Path base = baseDir.toAbsolutePath().normalize();
+        Artefatos artefatos = indexar(base);
+        indice.put(base, artefatos);
+        return artefatos;
+    }
+
+    /**
+     * Descarta o índice do resultado (diretório removido ou limpo)
+     */
+    public void invalidar(Path baseDir) {
+        indice.remove(baseDir.toAbsolutePath().normalize());
+    }
+
+    /**
+     * Varre uma única vez track/ (ou o diretório alternativo de saída) e analise_detalhada/,
+     * lendo os atributos de cada arquivo apenas uma vez
+     */
+    private Artefatos indexar(Path baseDir) {
+        Path outputDir = baseDir.resolve("track");
+        if (!Files.exists(outputDir)) {
+            outputDir = Paths.get(outputPath).toAbsolutePath();
+            if (!Files.exists(outputDir)) {
+                outputDir = Paths.get(notebookPath).getParent().toAbsolutePath();
+            }
+        }
+
+        List<Artefato> saida = listar(outputDir);
+        Path analiseDir = baseDir.resolve("analise_detalhada");
+        Artefato grafico = Files.exists(analiseDir) ? maisRecente(listar(analiseDir), PADROES_GRAFICO) : null;
+        if (grafico == null) {
+            grafico = maisRecente(saida, PADROES_GRAFICO);
+        }
+
+        Artefatos artefatos = new Artefatos(baseDir,
+                maisRecente(saida, PADROES_VIDEO), grafico, maisRecente(saida, PADROES_JSON));
+        log.debug("Artefatos indexados em {}: vídeo={}, gráfico={}, json={}", baseDir,
+                artefatos.getVideo(), artefatos.getGrafico(), artefatos.getJson());
+        return artefatos;
+    }
+
+    private List<Artefato> listar(Path diretorio) {
+        List<Artefato> arquivos = new ArrayList<>();
+        if (!Files.isDirectory(diretorio)) {
+            return arquivos;
+        }
+        try (Stream<Path> caminhos = Files.walk(diretorio, 2)) {
+            caminhos.forEach(p -> {
+                try {
+                    BasicFileAttributes atributos = Files.readAttributes(p, BasicFileAttributes.class);
+                    if (atributos.isRegularFile()) {
+                        arquivos.add(new Artefato(p, atributos.size(), atributos.lastModifiedTime()));
+                    }
+                } catch (IOException e) {
+                    // Arquivo removido durante a varredura
+                }
+            });
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("Não foi possível varrer {}: {}", diretorio, e.getMessage());
+        }
+        return arquivos;
+    }
+
+    /**
+     * Mais recente que corresponda ao primeiro padrão com resultado (padrões em ordem de prioridade)
+     */
+    private Artefato maisRecente(List<Artefato> arquivos, String... padroes) {
+        for (String padrao : padroes) {
+            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + padrao);
+            Artefato encontrado = arquivos.stream()
+                    .filter(a -> matcher.matches(a.getCaminho().getFileName()))
+                    .max(Comparator.comparing(Artefato::getModificado))
+                    .orElse(null);
+            if (encontrado != null) {
+                return encontrado;
+            }
+        }
+        return null;
+    }
+
+    // ---------------------------------------------------------------- WatchService
+
+    private void observar() {
+        while (true) {
+            WatchKey chave;
+            try {
+                chave = watcher.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            Path diretorio = diretoriosObservados.get(chave);
+            if (diretorio != null) {
+                for (WatchEvent<?> evento : chave.pollEvents()) {
+                    tratar(diretorio, evento);
+                }
+            }
+            if (!chave.reset()) {
+                diretoriosObservados.remove(chave);
+            }
+        }
+    }
+
+    private void tratar(Path diretorio, WatchEvent<?> evento) {
+        if (evento.kind() == OVERFLOW) {
+            log.debug("Eventos perdidos em {}, descartando todo o índice de artefatos", diretorio);
+            indice.clear();
+            return;
+        }
+        Path alterado = diretorio.resolve((Path) evento.context());
+        if (evento.kind() == ENTRY_CREATE && Files.isDirectory(alterado, LinkOption.NOFOLLOW_LINKS)) {
+            registrarArvore(alterado);
+        }
+        indice.remove(baseDe(alterado));
+        if (evento.kind() == ENTRY_DELETE) {
+            indice.remove(alterado);
+        }
+    }
+
+    /**
+     * runs/jobs/{id}/... pertence ao resultado runs/jobs/{id}; o resto de runs/ ao resultado do notebook
+     */
+    private Path baseDe(Path caminho) {
+        if (caminho.startsWith(jobsDir) && !caminho.equals(jobsDir)) {
+            return jobsDir.resolve(jobsDir.relativize(caminho).getName(0));
+        }
+        return runsDir;
+    }
+
+    private void registrarArvore(Path raiz) {
+        try (Stream<Path> dirs = Files.walk(raiz, 3)) {
+            dirs.filter(Files::isDirectory).forEach(this::registrar);
+        } catch (IOException | UncheckedIOException e) {
+            log.debug("Não foi possível registrar {} no WatchService: {}", raiz, e.getMessage());
+        }
+    }
+
+    private void registrar(Path diretorio) {
+        try {
+            WatchKey chave = diretorio.register(watcher, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            diretoriosObservados.put(chave, diretorio);
+        } catch (IOException e) {
+            log.debug("Não foi possível observar {}: {}", diretorio, e.getMessage());
+        }
+    }
+
+    // ---------------------------------------------------------------- tipos
+
+    /**
+     * Arquivo indexado com os atributos lidos na varredura
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Artefato {
+        private final Path caminho;
+        private final long tamanho;
+        private final FileTime modificado;
+    }
+
+    /**
+     * Artefatos de um resultado; cada item é nulo quando o arquivo não foi gerado
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class Artefatos {
+        private final Path base;
+        private final Artefato video;
+        private final Artefato grafico;
+        private final Artefato json;
+
+        /**
+         * Identificador da execução (nome da pasta do resultado)
+         */
+        public String getExecucao() {
+            return base.getFileName().toString();
+        }
+    }
+}
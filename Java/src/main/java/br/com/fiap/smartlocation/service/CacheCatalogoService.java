@@ -0,0 +1,213 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.event.MotoAlteradaEvent;
+import br.com.fiap.smartlocation.model.Moto;
+import br.com.fiap.smartlocation.model.Patio;
+import br.com.fiap.smartlocation.repository.MotoRepository;
+import br.com.fiap.smartlocation.repository.PatioRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache de leitura (read-through) do catálogo de motos e pátios, que muda pouco:
+ * motos por ID, a busca por placa (placa -> ID, como um cache de natural-id) e pátios por ID.
+ * As motos são invalidadas após o commit de cada alteração (MotoAlteradaEvent); todas as entradas
+ * também expiram por TTL, para refletir alterações feitas direto no banco.
+ * IDs de moto inexistentes (ex.: IDs do rastreador nas detecções) também ficam em cache, como ausência,
+ * até o TTL ou até a criação da moto.
+ * Devolve cópias desanexadas, de modo que quem altera o objeto recebido não altera o cache.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class CacheCatalogoService {
+
+    private final MotoRepository motoRepository;
+    private final PatioRepository patioRepository;
+
+    @Value("${cache.catalogo.ttl-minutos:10}")
+    private long ttlMinutos;
+
+    @Value("${cache.catalogo.max-entradas:10000}")
+    private int maxEntradas;
+
+    private final Regiao<Long, Moto> motos = new Regiao<>(true);
+    private final Regiao<String, Long> placas = new Regiao<>(false);
+    private final Regiao<Long, Patio> patios = new Regiao<>(false);
+
+    /**
+     * Sem @Transactional de propósito: um acerto no cache não deve ocupar a única conexão do pool
+     */
+    public Optional<Moto> buscarMoto(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(motos.obter(id, () -> motoRepository.findById(id).orElse(null)))
+                .map(CacheCatalogoService::copiar);
+    }
+
+    public Optional<Moto> buscarMotoPorPlaca(String placa) {
+        if (placa == null) {
+            return Optional.empty();
+        }
+        long geracaoMotos = motos.geracao.get();
+        Long id = placas.obter(placa, () -> motoRepository.findByPlaca(placa)
+                .map(moto -> {
+                    // Aproveita a leitura para aquecer o cache por ID
+                    motos.colocarSe(geracaoMotos, moto.getId(), moto);
+                    return moto.getId();
+                })
+                .orElse(null));
+        if (id == null) {
+            return Optional.empty();
+        }
+        Optional<Moto> moto = buscarMoto(id);
+        if (moto.isEmpty() || !placa.equals(moto.get().getPlaca())) {
+            // Moto removida ou placa trocada depois do mapeamento: descarta e consulta o banco
+            placas.remover(placa);
+            return motoRepository.findByPlaca(placa);
+        }
+        return moto;
+    }
+
+    public Optional<Patio> buscarPatio(Long id) {
+        if (id == null) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(patios.obter(id, () -> patioRepository.findById(id).orElse(null)))
+                .map(CacheCatalogoService::copiar);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMotoAlterada(MotoAlteradaEvent event) {
+        // Também descarta a ausência guardada para o ID, quando a moto acaba de ser criada
+        Moto anterior = motos.remover(event.getMotoId());
+        if (anterior != null) {
+            placas.remover(anterior.getPlaca());
+        }
+        // Mapeamentos placa -> ID restantes são conferidos contra a moto em buscarMotoPorPlaca
+    }
+
+    /**
+     * Descarta todo o cache (ex.: após alterar pátios ou motos direto no banco)
+     */
+    public void invalidarTudo() {
+        motos.limpar();
+        placas.limpar();
+        patios.limpar();
+        log.info("Cache do catálogo de motos e pátios invalidado");
+    }
+
+    /**
+     * Acertos, faltas, invalidações e tamanho de cada região do cache
+     */
+    public Map<String, Map<String, Number>> getEstatisticas() {
+        Map<String, Map<String, Number>> estatisticas = new LinkedHashMap<>();
+        estatisticas.put("motos", motos.estatisticas());
+        estatisticas.put("placas", placas.estatisticas());
+        estatisticas.put("patios", patios.estatisticas());
+        return estatisticas;
+    }
+
+    private static Moto copiar(Moto m) {
+        return new Moto(m.getId(), m.getPlaca(), m.getModelo(), m.getStatus(),
+                m.getPatio() != null ? copiar(m.getPatio()) : null, m.getUltimaAtualizacao());
+    }
+
+    private static Patio copiar(Patio p) {
+        return new Patio(p.getId(), p.getNome(), p.getEndereco(), p.getCapacidade(), p.getClasse());
+    }
+
+    /**
+     * Mapa com TTL e estatísticas. Uma carga só é guardada se nenhuma invalidação ocorreu durante ela
+     * (contador de geração), para não gravar no cache um valor lido antes do commit de uma alteração.
+     * Com {@code guardarAusentes}, uma carga sem resultado é guardada como entrada de valor nulo,
+     * sujeita às mesmas regras.
+     */
+    private final class Regiao<K, V> {
+        private final boolean guardarAusentes;
+        private final Map<K, Entrada<V>> entradas = new ConcurrentHashMap<>();
+        private final AtomicLong geracao = new AtomicLong();
+        private final AtomicLong acertos = new AtomicLong();
+        private final AtomicLong faltas = new AtomicLong();
+        private final AtomicLong invalidacoes = new AtomicLong();
+
+        private Regiao(boolean guardarAusentes) {
+            this.guardarAusentes = guardarAusentes;
+        }
+
+        private V obter(K chave, Supplier<V> carregar) {
+            Entrada<V> entrada = entradas.get(chave);
+            if (entrada != null && System.currentTimeMillis() < entrada.expiraEm) {
+                acertos.incrementAndGet();
+                return entrada.valor;
+            }
+            faltas.incrementAndGet();
+            long geracaoInicial = geracao.get();
+            V valor = carregar.get();
+            if (valor != null || guardarAusentes) {
+                colocarSe(geracaoInicial, chave, valor);
+            }
+            return valor;
+        }
+
+        private synchronized void colocarSe(long geracaoInicial, K chave, V valor) {
+            if (geracao.get() == geracaoInicial) {
+                colocar(chave, valor);
+            }
+        }
+
+        private void colocar(K chave, V valor) {
+            if (entradas.size() >= maxEntradas && !entradas.containsKey(chave)) {
+                // Catálogo maior que o previsto: descarta tudo em vez de manter uma política de despejo
+                entradas.clear();
+            }
+            entradas.put(chave, new Entrada<>(valor, System.currentTimeMillis() + ttlMinutos * 60_000));
+        }
+
+        private synchronized V remover(K chave) {
+            geracao.incrementAndGet();
+            invalidacoes.incrementAndGet();
+            Entrada<V> anterior = entradas.remove(chave);
+            return anterior != null ? anterior.valor : null;
+        }
+
+        private synchronized void limpar() {
+            geracao.incrementAndGet();
+            invalidacoes.incrementAndGet();
+            entradas.clear();
+        }
+
+        private Map<String, Number> estatisticas() {
+            long a = acertos.get();
+            long f = faltas.get();
+            Map<String, Number> mapa = new LinkedHashMap<>();
+            mapa.put("tamanho", entradas.size());
+            mapa.put("acertos", a);
+            mapa.put("faltas", f);
+            mapa.put("taxaAcerto", a + f > 0 ? (double) a / (a + f) : 0d);
+            mapa.put("invalidacoes", invalidacoes.get());
+            return mapa;
+        }
+    }
+
+    private static final class Entrada<V> {
+        private final V valor;
+        private final long expiraEm;
+
+        private Entrada(V valor, long expiraEm) {
+            this.valor = valor;
+            this.expiraEm = expiraEm;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package br.com.fiap.smartlocation.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cliente SSE com envio assíncrono: os eventos entram numa fila limitada e são enviados por um executor,
+ * um de cada vez e na ordem, de modo que quem publica nunca espera a rede. Um cliente lento que deixa
+ * a fila encher é desconectado em vez de atrasar os demais.
+ * Cada chamada a {@link #enviar} deve receber um SseEventBuilder novo: o builder acumula texto a cada build().
+ */
+@Slf4j
+class ClienteSse {
+
+    private final SseEmitter emitter;
+    private final Executor executor;
+    private final int capacidade;
+    private final Runnable aoDesconectar;
+
+    private final Queue<SseEmitter.SseEventBuilder> fila = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger tamanho = new AtomicInteger();
+    private final AtomicBoolean drenando = new AtomicBoolean();
+    private volatile boolean completarAoEsvaziar;
+    private final AtomicBoolean encerrado = new AtomicBoolean();
+
+    ClienteSse(SseEmitter emitter, Executor executor, int capacidade, Runnable aoDesconectar) {
+        this.emitter = emitter;
+        this.executor = executor;
+        this.capacidade = capacidade;
+        this.aoDesconectar = aoDesconectar;
+        emitter.onCompletion(this::marcarEncerrado);
+        emitter.onTimeout(this::marcarEncerrado);
+        emitter.onError(e -> marcarEncerrado());
+    }
+
+    SseEmitter getEmitter() {
+        return emitter;
+    }
+
+    boolean isEncerrado() {
+        return encerrado.get();
+    }
+
+    /**
+     * Enfileira o evento
+     *
+     * @return false se o cliente já foi desconectado ou acabou de ser, por estar com a fila cheia
+     */
+    boolean enviar(SseEmitter.SseEventBuilder evento) {
+        if (encerrado.get() || completarAoEsvaziar) {
+            return false;
+        }
+        if (tamanho.incrementAndGet() > capacidade) {
+            tamanho.decrementAndGet();
+            log.warn("Cliente SSE com {} eventos pendentes; desconectando", capacidade);
+            desconectar(new IOException("Fila de envio cheia"));
+            return false;
+        }
+        fila.add(evento);
+        agendar();
+        return true;
+    }
+
+    /**
+     * Completa o emitter depois de enviar o que já está na fila
+     */
+    void completar() {
+        completarAoEsvaziar = true;
+        agendar();
+    }
+
+    private void agendar() {
+        if (drenando.compareAndSet(false, true)) {
+            executor.execute(this::drenar);
+        }
+    }
+
+    private void drenar() {
+        try {
+            SseEmitter.SseEventBuilder evento;
+            while (!encerrado.get() && (evento = fila.poll()) != null) {
+                tamanho.decrementAndGet();
+                emitter.send(evento);
+            }
+            if (completarAoEsvaziar && fila.isEmpty() && marcarEncerrado()) {
+                emitter.complete();
+            }
+        } catch (IOException | IllegalStateException e) {
+            desconectar(e);
+        } finally {
+            drenando.set(false);
+            // Evento enfileirado entre o último poll e a liberação do flag
+            if (!encerrado.get() && (!fila.isEmpty() || completarAoEsvaziar)) {
+                agendar();
+            }
+        }
+    }
+
+    private void desconectar(Exception e) {
+        if (marcarEncerrado()) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * @return true para quem efetivamente encerrou o cliente (uma única vez)
+     */
+    private boolean marcarEncerrado() {
+        if (!encerrado.compareAndSet(false, true)) {
+            return false;
+        }
+        fila.clear();
+        aoDesconectar.run();
+        return true;
+    }
+}
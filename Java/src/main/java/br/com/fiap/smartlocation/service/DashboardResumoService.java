@@ -0,0 +1,149 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.event.DeteccoesRemovidasEvent;
+import br.com.fiap.smartlocation.event.DeteccoesSalvasEvent;
+import br.com.fiap.smartlocation.event.MotoAlteradaEvent;
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import br.com.fiap.smartlocation.repository.DeteccaoMotoRepository;
+import br.com.fiap.smartlocation.repository.MotoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Contadores do dashboard mantidos em memória.
+ * São carregados uma única vez com COUNT e depois atualizados de forma incremental
+ * pelos eventos de moto e detecção, junto com um buffer circular das últimas N detecções.
+ * A ingestão em lote não informa as linhas gravadas: o buffer é relido do banco no próximo acesso.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DashboardResumoService {
+
+    private final MotoRepository motoRepository;
+    private final DeteccaoMotoRepository deteccaoRepository;
+
+    @Value("${dashboard.ultimas-deteccoes:10}")
+    private int capacidadeUltimas;
+
+    private final Deque<DeteccaoMoto> ultimasDeteccoes = new ArrayDeque<>();
+    private long totalMotos;
+    private long totalDeteccoes;
+    private volatile boolean inicializado = false;
+    private volatile boolean ultimasDesatualizadas = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aoIniciar() {
+        try {
+            garantirInicializado();
+        } catch (Exception e) {
+            // Banco indisponível na subida: a carga é refeita no primeiro acesso ao dashboard
+            log.warn("Não foi possível carregar os contadores do dashboard: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Carrega os contadores a partir do banco caso ainda não tenham sido carregados
+     */
+    public void garantirInicializado() {
+        if (inicializado) {
+            return;
+        }
+        // Consultas fora do monitor: os eventos e as leituras do dashboard não esperam o banco
+        long motos = motoRepository.count();
+        long deteccoes = deteccaoRepository.count();
+        List<DeteccaoMoto> ultimas = deteccaoRepository.findPrimeiraPagina(PageRequest.of(0, capacidadeUltimas));
+        synchronized (this) {
+            if (inicializado) {
+                return;
+            }
+            totalMotos = motos;
+            totalDeteccoes = deteccoes;
+            ultimasDeteccoes.clear();
+            ultimasDeteccoes.addAll(ultimas);
+            inicializado = true;
+            log.info("Contadores do dashboard carregados: {} motos, {} detecções", totalMotos, totalDeteccoes);
+        }
+    }
+
+    public synchronized long getTotalMotos() {
+        return totalMotos;
+    }
+
+    public synchronized long getTotalDeteccoes() {
+        return totalDeteccoes;
+    }
+
+    /**
+     * Últimas detecções, da mais recente para a mais antiga
+     */
+    public List<DeteccaoMoto> getUltimasDeteccoes() {
+        if (ultimasDesatualizadas) {
+            ultimasDesatualizadas = false;
+            List<DeteccaoMoto> ultimas = deteccaoRepository.findPrimeiraPagina(PageRequest.of(0, capacidadeUltimas));
+            synchronized (this) {
+                ultimasDeteccoes.clear();
+                ultimasDeteccoes.addAll(ultimas);
+            }
+        }
+        synchronized (this) {
+            return new ArrayList<>(ultimasDeteccoes);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onMotoAlterada(MotoAlteradaEvent event) {
+        if (!inicializado) {
+            return;
+        }
+        switch (event.getTipo()) {
+            case CRIADA -> totalMotos++;
+            case REMOVIDA -> totalMotos = Math.max(0, totalMotos - 1);
+            default -> { }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDeteccoesSalvas(DeteccoesSalvasEvent event) {
+        if (!inicializado) {
+            return;
+        }
+        totalDeteccoes += event.getNovas();
+        if (event.isEmLote()) {
+            ultimasDesatualizadas = true;
+            return;
+        }
+        for (DeteccaoMoto d : event.getDeteccoes()) {
+            if (d.getIdDeteccao() != null) {
+                // Atualização de uma detecção já presente no buffer: substitui a entrada antiga
+                ultimasDeteccoes.removeIf(u -> Objects.equals(u.getIdDeteccao(), d.getIdDeteccao()));
+            }
+            ultimasDeteccoes.addFirst(d);
+            while (ultimasDeteccoes.size() > capacidadeUltimas) {
+                ultimasDeteccoes.removeLast();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public synchronized void onDeteccoesRemovidas(DeteccoesRemovidasEvent event) {
+        if (!inicializado) {
+            return;
+        }
+        totalDeteccoes = Math.max(0, totalDeteccoes - event.getQuantidade());
+        ultimasDeteccoes.removeIf(d -> (d.getIdDeteccao() != null && event.getIds().contains(d.getIdDeteccao()))
+                || (d.getIdMoto() != null && event.getIdsMoto().contains(d.getIdMoto())));
+    }
+}
@@ -0,0 +1,218 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deduplicação espacial das detecções recebidas em lote, equivalente a filtrar_motos_proximas_indices
+ * do notebook: por quadro (mesmo horário de registro), mantém a detecção de maior confiança e descarta
+ * as que estão a menos de {@code distancia} pixels de uma já mantida.
+ * A busca de vizinhos usa uma grade com células do tamanho da distância (só as 3x3 células vizinhas
+ * são verificadas), com arrays primitivos, em vez da comparação de todos contra todos.
+ */
+@Service
+@Slf4j
+public class DeduplicacaoDeteccoesService {
+
+    @Value("${deteccoes.dedup.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${deteccoes.dedup.distancia-px:60}")
+    private double distancia;
+
+    private final AtomicLong quadros = new AtomicLong();
+    private final AtomicLong recebidas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    /**
+     * Remove as duplicatas de cada quadro. Detecções já persistidas (com ID) e sem coordenadas
+     * não participam e são mantidas; a ordem original das mantidas é preservada.
+     */
+    public List<DeteccaoMoto> filtrar(List<DeteccaoMoto> deteccoes) {
+        if (!habilitado || deteccoes.size() < 2) {
+            return deteccoes;
+        }
+
+        // Agrupa por quadro; detecções sem horário são tratadas como do mesmo quadro
+        Map<LocalDateTime, List<Integer>> porQuadro = new LinkedHashMap<>();
+        boolean[] manter = new boolean[deteccoes.size()];
+        for (int i = 0; i < deteccoes.size(); i++) {
+            DeteccaoMoto d = deteccoes.get(i);
+            if (d.getIdDeteccao() != null || d.getPosicaoX() == null || d.getPosicaoY() == null) {
+                manter[i] = true;
+            } else {
+                porQuadro.computeIfAbsent(d.getHorarioRegistro(), k -> new ArrayList<>()).add(i);
+            }
+        }
+
+        for (List<Integer> indices : porQuadro.values()) {
+            int n = indices.size();
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            double[] confs = new double[n];
+            for (int k = 0; k < n; k++) {
+                DeteccaoMoto d = deteccoes.get(indices.get(k));
+                xs[k] = d.getPosicaoX();
+                ys[k] = d.getPosicaoY();
+                confs[k] = d.getConfianca() != null ? d.getConfianca() : 0d;
+            }
+            int[] mantidos = deduplicar(xs, ys, confs, distancia);
+            for (int k : mantidos) {
+                manter[indices.get(k)] = true;
+            }
+        }
+
+        List<DeteccaoMoto> resultado = new ArrayList<>(deteccoes.size());
+        for (int i = 0; i < deteccoes.size(); i++) {
+            if (manter[i]) {
+                resultado.add(deteccoes.get(i));
+            }
+        }
+        if (resultado.size() < deteccoes.size()) {
+            log.info("Deduplicação: {} de {} detecções descartadas (distância {} px)",
+                    deteccoes.size() - resultado.size(), deteccoes.size(), distancia);
+        }
+        return resultado;
+    }
+
+    /**
+     * Supressão gulosa por distância entre centros, em ordem decrescente de confiança
+     * (empate: a que aparece primeiro vence).
+     *
+     * @return índices mantidos, em ordem crescente
+     */
+    int[] deduplicar(double[] xs, double[] ys, double[] confs, double distanciaMinima) {
+        long inicio = System.nanoTime();
+        int n = xs.length;
+
+        // Ordenação por confiança sem boxing: chave = confiança (bits ordenáveis) e índice invertido
+        long[] ordem = new long[n];
+        for (int i = 0; i < n; i++) {
+            long bits = Double.doubleToLongBits(Math.max(0d, Math.min(1d, confs[i])));
+            // Para doubles não negativos a ordem dos bits é a ordem numérica; 1.0 ocupa 62 bits
+            ordem[i] = ((bits >>> 31) << 31) | (Integer.MAX_VALUE - i);
+        }
+        Arrays.sort(ordem);
+
+        double r2 = distanciaMinima * distanciaMinima;
+        double celula = distanciaMinima > 0 ? distanciaMinima : 1d;
+        Grade grade = new Grade(n);
+        int[] proximo = new int[n];
+        boolean[] mantido = new boolean[n];
+        int totalMantidos = 0;
+
+        for (int p = n - 1; p >= 0; p--) {
+            int i = Integer.MAX_VALUE - (int) (ordem[p] & 0x7fffffffL);
+            long cx = (long) Math.floor(xs[i] / celula);
+            long cy = (long) Math.floor(ys[i] / celula);
+
+            boolean suprimido = false;
+            for (long vx = cx - 1; vx <= cx + 1 && !suprimido; vx++) {
+                for (long vy = cy - 1; vy <= cy + 1 && !suprimido; vy++) {
+                    for (int j = grade.primeiro(chave(vx, vy)); j >= 0; j = proximo[j]) {
+                        double dx = xs[j] - xs[i];
+                        double dy = ys[j] - ys[i];
+                        if (dx * dx + dy * dy < r2) {
+                            suprimido = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            if (!suprimido) {
+                proximo[i] = grade.inserir(chave(cx, cy), i);
+                mantido[i] = true;
+                totalMantidos++;
+            }
+        }
+
+        int[] resultado = new int[totalMantidos];
+        for (int i = 0, k = 0; i < n; i++) {
+            if (mantido[i]) {
+                resultado[k++] = i;
+            }
+        }
+
+        long duracao = System.nanoTime() - inicio;
+        quadros.incrementAndGet();
+        recebidas.addAndGet(n);
+        descartadas.addAndGet(n - totalMantidos);
+        nanos.addAndGet(duracao);
+        log.debug("Quadro deduplicado: {} -> {} detecções em {} µs", n, totalMantidos, duracao / 1_000);
+        return resultado;
+    }
+
+    /**
+     * Estatísticas acumuladas: quadros, detecções recebidas, descartadas e tempo médio por quadro (µs)
+     */
+    public Map<String, Number> getEstatisticas() {
+        long q = quadros.get();
+        return Map.of(
+                "quadros", q,
+                "recebidas", recebidas.get(),
+                "descartadas", descartadas.get(),
+                "tempoMedioQuadroMicros", q > 0 ? nanos.get() / 1_000d / q : 0d);
+    }
+
+    private static long chave(long cx, long cy) {
+        return (cx << 32) ^ (cy & 0xffffffffL);
+    }
+
+    /**
+     * Tabela hash de endereçamento aberto célula -> último índice inserido (lista encadeada em {@code proximo})
+     */
+    private static final class Grade {
+        private final long[] chaves;
+        private final int[] cabecas;
+        private final boolean[] ocupadas;
+        private final int mascara;
+
+        private Grade(int elementos) {
+            int capacidade = Integer.highestOneBit(Math.max(4, elementos * 2 - 1)) << 1;
+            chaves = new long[capacidade];
+            cabecas = new int[capacidade];
+            ocupadas = new boolean[capacidade];
+            mascara = capacidade - 1;
+        }
+
+        private int posicao(long chave) {
+            long h = chave * 0x9E3779B97F4A7C15L;
+            int pos = (int) (h ^ (h >>> 32)) & mascara;
+            while (ocupadas[pos] && chaves[pos] != chave) {
+                pos = (pos + 1) & mascara;
+            }
+            return pos;
+        }
+
+        /**
+         * Primeiro índice da célula ou -1
+         */
+        private int primeiro(long chave) {
+            int pos = posicao(chave);
+            return ocupadas[pos] ? cabecas[pos] : -1;
+        }
+
+        /**
+         * Insere o índice na célula e devolve o anterior (próximo da lista) ou -1
+         */
+        private int inserir(long chave, int indice) {
+            int pos = posicao(chave);
+            int anterior = ocupadas[pos] ? cabecas[pos] : -1;
+            chaves[pos] = chave;
+            ocupadas[pos] = true;
+            cabecas[pos] = indice;
+            return anterior;
+        }
+    }
+}
@@ -1,26 +1,126 @@
 package br.com.fiap.smartlocation.service;
 
+import br.com.fiap.smartlocation.dto.DeteccaoResumoDTO;
+import br.com.fiap.smartlocation.dto.IngestaoResultadoDTO;
+import br.com.fiap.smartlocation.dto.PaginaDeteccoesDTO;
+import br.com.fiap.smartlocation.event.DeteccoesRemovidasEvent;
+import br.com.fiap.smartlocation.event.DeteccoesSalvasEvent;
 import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import br.com.fiap.smartlocation.repository.DeteccaoMotoJdbcRepository;
 import br.com.fiap.smartlocation.repository.DeteccaoMotoRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class DeteccaoMotoService {
 
+    // Oracle limita listas IN a 1000 elementos
+    private static final int LIMITE_LISTA_IN = 1000;
+
     private final DeteccaoMotoRepository deteccaoRepository;
+    private final DeteccaoMotoJdbcRepository deteccaoJdbcRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final DeduplicacaoDeteccoesService deduplicacao;
+    private final DeteccaoRollupService rollup;
+
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${deteccoes.pagina.tamanho-padrao:50}")
+    private int tamanhoPaginaPadrao;
+
+    @Value("${deteccoes.pagina.tamanho-maximo:500}")
+    private int tamanhoPaginaMaximo;
 
+    @Value("${deteccoes.ingestao.tamanho-lote:1000}")
+    private int tamanhoLoteIngestao;
+
+    @Value("${deteccoes.exportacao.tamanho-pagina:1000}")
+    private int tamanhoPaginaExportacao;
+
+    /**
+     * Lista uma página de detecções usando paginação por chave (horário, id).
+     * Sem cursor retorna a primeira página; o custo independe da profundidade da página.
+     */
     @Transactional(readOnly = true)
-    public List<DeteccaoMoto> listarTodas() {
-        return deteccaoRepository.findAllOrderByHorarioDesc();
+    public PaginaDeteccoesDTO listarPagina(LocalDateTime cursorHorario, Long cursorId, Integer tamanho) {
+        int limite = tamanho == null || tamanho <= 0 ? tamanhoPaginaPadrao : Math.min(tamanho, tamanhoPaginaMaximo);
+        // Busca um registro a mais para saber se existe próxima página
+        Pageable pageable = PageRequest.of(0, limite + 1);
+
+        List<DeteccaoMoto> resultado = (cursorHorario != null && cursorId != null)
+                ? deteccaoRepository.findPaginaApos(cursorHorario, cursorId, pageable)
+                : deteccaoRepository.findPrimeiraPagina(pageable);
+
+        boolean temMais = resultado.size() > limite;
+        List<DeteccaoMoto> itens = temMais ? resultado.subList(0, limite) : resultado;
+
+        PaginaDeteccoesDTO pagina = new PaginaDeteccoesDTO();
+        pagina.setItens(List.copyOf(itens));
+        pagina.setTemMais(temMais);
+        if (temMais) {
+            DeteccaoMoto ultima = itens.get(itens.size() - 1);
+            pagina.setProximoHorario(ultima.getHorarioRegistro());
+            pagina.setProximoId(ultima.getIdDeteccao());
+        }
+        return pagina;
+    }
+
+    /**
+     * Exporta todas as detecções como NDJSON (um objeto JSON por linha).
+     * Lê página a página pelo cursor (horário, id), cada página numa transação curta, e escreve a página
+     * já fora dela: um cliente lento não segura a conexão do pool enquanto baixa. A memória fica limitada
+     * a uma página, independentemente do tamanho da tabela.
+     *
+     * @return quantidade de registros exportados
+     */
+    public long exportarNdjson(OutputStream out) throws IOException {
+        TransactionTemplate leitura = new TransactionTemplate(transactionManager);
+        leitura.setReadOnly(true);
+        PageRequest pagina = PageRequest.of(0, tamanhoPaginaExportacao);
+        long total = 0;
+        DeteccaoMoto ultima = null;
+        while (true) {
+            DeteccaoMoto cursor = ultima;
+            List<DeteccaoMoto> itens = leitura.execute(status -> cursor == null
+                    ? deteccaoRepository.findPrimeiraPagina(pagina)
+                    : deteccaoRepository.findPaginaApos(cursor.getHorarioRegistro(), cursor.getIdDeteccao(), pagina));
+            if (itens == null || itens.isEmpty()) {
+                break;
+            }
+            for (DeteccaoMoto d : itens) {
+                out.write(objectMapper.writeValueAsBytes(d));
+                out.write('\n');
+            }
+            out.flush();
+            total += itens.size();
+            if (itens.size() < tamanhoPaginaExportacao) {
+                break;
+            }
+            ultima = itens.get(itens.size() - 1);
+        }
+        log.info("Exportação NDJSON concluída: {} detecções", total);
+        return total;
     }
 
     @Transactional(readOnly = true)
@@ -29,18 +129,18 @@ public class DeteccaoMotoService {
     }
 
     @Transactional(readOnly = true)
-    public List<DeteccaoMoto> buscarPorMoto(Long idMoto) {
-        return deteccaoRepository.findByIdMoto(idMoto);
+    public List<DeteccaoResumoDTO> buscarPorMoto(Long idMoto) {
+        return deteccaoRepository.listarResumoPorMoto(idMoto);
     }
 
     @Transactional(readOnly = true)
-    public List<DeteccaoMoto> buscarPorPeriodo(LocalDateTime inicio, LocalDateTime fim) {
-        return deteccaoRepository.findByHorarioRegistroBetween(inicio, fim);
+    public List<DeteccaoResumoDTO> buscarPorPeriodo(LocalDateTime inicio, LocalDateTime fim) {
+        return deteccaoRepository.listarResumoPorPeriodo(inicio, fim);
     }
 
     @Transactional(readOnly = true)
-    public List<DeteccaoMoto> buscarPorConfianca(Double minConfianca) {
-        return deteccaoRepository.findByConfiancaMaiorQue(minConfianca);
+    public List<DeteccaoResumoDTO> buscarPorConfianca(Double minConfianca) {
+        return deteccaoRepository.listarResumoPorConfianca(minConfianca);
     }
 
     @Transactional
@@ -49,30 +149,91 @@ public class DeteccaoMotoService {
         if (deteccao.getHorarioRegistro() == null) {
             deteccao.setHorarioRegistro(LocalDateTime.now());
         }
-        return deteccaoRepository.save(deteccao);
+        boolean nova = deteccao.getIdDeteccao() == null;
+        // Minuto anterior da detecção alterada, lido antes do UPDATE: só os baldes afetados são recalculados
+        List<LocalDateTime> minutosAntigos = nova ? List.of() : rollup.minutosDasDeteccoes(List.of(deteccao.getIdDeteccao()));
+        DeteccaoMoto salva = deteccaoRepository.save(deteccao);
+        if (nova) {
+            rollup.registrar(List.of(salva));
+        } else {
+            rollup.registrarAlteracao(minutosAntigos, List.of(salva));
+        }
+        eventPublisher.publishEvent(new DeteccoesSalvasEvent(List.of(salva), nova ? 1 : 0));
+        return salva;
     }
 
     @Transactional
     public List<DeteccaoMoto> salvarVarias(List<DeteccaoMoto> deteccoes) {
         log.info("Salvando {} detecções", deteccoes.size());
+        // Mesmo horário para todo o lote sem horário: forma um único quadro na deduplicação
+        LocalDateTime agora = LocalDateTime.now();
         deteccoes.forEach(d -> {
             if (d.getHorarioRegistro() == null) {
-                d.setHorarioRegistro(LocalDateTime.now());
+                d.setHorarioRegistro(agora);
             }
         });
-        return deteccaoRepository.saveAll(deteccoes);
+        deteccoes = deduplicacao.filtrar(deteccoes);
+        // Entidades novas são persistidas na própria instância, que recebe o ID
+        List<DeteccaoMoto> novas = deteccoes.stream().filter(d -> d.getIdDeteccao() == null).toList();
+        Set<Long> idsAlteradas = deteccoes.stream().map(DeteccaoMoto::getIdDeteccao).filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        List<LocalDateTime> minutosAntigos = idsAlteradas.isEmpty() ? List.of() : rollup.minutosDasDeteccoes(idsAlteradas);
+        List<DeteccaoMoto> salvas = deteccaoRepository.saveAll(deteccoes);
+        rollup.registrar(novas);
+        if (novas.size() < salvas.size()) {
+            rollup.registrarAlteracao(minutosAntigos, salvas.stream().filter(d -> idsAlteradas.contains(d.getIdDeteccao())).toList());
+        }
+        eventPublisher.publishEvent(new DeteccoesSalvasEvent(salvas, novas.size()));
+        return salvas;
+    }
+
+    /**
+     * Caminho de ingestão em massa: grava as detecções em batches JDBC numa única transação,
+     * sem devolver as entidades (os IDs são gerados pelo banco e não são relidos).
+     * O evento publicado leva só a quantidade inserida, sem as entidades sem ID.
+     */
+    @Transactional
+    public IngestaoResultadoDTO ingerirEmLote(List<DeteccaoMoto> deteccoes) {
+        long inicio = System.nanoTime();
+        LocalDateTime agora = LocalDateTime.now();
+        deteccoes.forEach(d -> {
+            if (d.getHorarioRegistro() == null) {
+                d.setHorarioRegistro(agora);
+            }
+        });
+
+        int inseridas = deteccoes.isEmpty() ? 0 : deteccaoJdbcRepository.inserirEmLote(deteccoes, tamanhoLoteIngestao);
+        rollup.registrar(deteccoes);
+        eventPublisher.publishEvent(DeteccoesSalvasEvent.emLote(inseridas));
+
+        long duracaoNanos = System.nanoTime() - inicio;
+        double linhasPorSegundo = duracaoNanos > 0 ? inseridas * 1_000_000_000d / duracaoNanos : 0;
+        log.info("Ingestão em lote: {} detecções em {} ms ({} linhas/s)",
+                inseridas, duracaoNanos / 1_000_000, String.format("%.0f", linhasPorSegundo));
+
+        return new IngestaoResultadoDTO(deteccoes.size(), inseridas, duracaoNanos / 1_000_000, linhasPorSegundo);
     }
 
     @Transactional
     public void deletar(Long id) {
         log.info("Deletando detecção ID: {}", id);
-        deteccaoRepository.deleteById(id);
+        deletarVarias(List.of(id));
     }
 
     @Transactional
     public void deletarVarias(List<Long> ids) {
         log.info("Deletando {} detecções", ids.size());
-        deteccaoRepository.deleteAllById(ids);
+        if (ids.isEmpty()) {
+            return;
+        }
+        // Horários lidos antes da remoção: só os baldes deles são recalculados
+        List<LocalDateTime> minutos = rollup.minutosDasDeteccoes(ids);
+        List<Long> distintos = ids.stream().distinct().toList();
+        int removidas = 0;
+        for (int i = 0; i < distintos.size(); i += LIMITE_LISTA_IN) {
+            removidas += deteccaoRepository.deletarPorIds(distintos.subList(i, Math.min(i + LIMITE_LISTA_IN, distintos.size())));
+        }
+        eventPublisher.publishEvent(DeteccoesRemovidasEvent.porIds(ids, removidas, minutos));
     }
 
     @Transactional(readOnly = true)
@@ -80,8 +241,11 @@ public class DeteccaoMotoService {
         return deteccaoRepository.count();
     }
 
+    /**
+     * Contagem desde {@code data} pelos agregados por dia/hora/minuto, com as detecções brutas só nas bordas
+     */
     @Transactional(readOnly = true)
     public Long contarDeteccoesAPartirDe(LocalDateTime data) {
-        return deteccaoRepository.contarDeteccoesAPartirDe(data);
+        return rollup.contar(data, null);
     }
 }
@@ -0,0 +1,433 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.SerieDeteccoesDTO;
+import br.com.fiap.smartlocation.event.DeteccoesRemovidasEvent;
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import br.com.fiap.smartlocation.repository.DeteccaoRollupJdbcRepository;
+import br.com.fiap.smartlocation.repository.DeteccaoRollupJdbcRepository.Incremento;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Agregados das detecções por minuto, hora e dia (quantidade, confiança média e células ocupadas por pátio)
+ * na tabela DETECCOES_ROLLUP.
+ * Os baldes são incrementados na mesma transação da ingestão e recalculados periodicamente a partir das
+ * detecções brutas numa janela recente curta, o que também corrige as células ocupadas, que na ingestão
+ * só podem ser estimadas por lote. Remoções e alterações recalculam apenas os baldes dos horários afetados.
+ * Contagens e séries por período usam o balde mais grosso que cabe no intervalo e só vão às
+ * detecções brutas nas bordas.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeteccaoRollupService {
+
+    private static final LocalDateTime INICIO_HISTORICO = LocalDateTime.of(1970, 1, 1, 0, 0);
+    private static final int LIMITE_IN = 1000;
+    // Acima disso os baldes pendentes de uma resolução são recalculados numa única faixa, do primeiro ao último
+    private static final int MAX_FAIXAS = 50;
+
+    /**
+     * Resoluções dos baldes, da mais fina para a mais grossa
+     */
+    public enum Resolucao {
+        MINUTO("M", "MI", ChronoUnit.MINUTES),
+        HORA("H", "HH24", ChronoUnit.HOURS),
+        DIA("D", "DD", ChronoUnit.DAYS);
+
+        private final String codigo;
+        private final String formatoTrunc;
+        private final ChronoUnit unidade;
+
+        Resolucao(String codigo, String formatoTrunc, ChronoUnit unidade) {
+            this.codigo = codigo;
+            this.formatoTrunc = formatoTrunc;
+            this.unidade = unidade;
+        }
+
+        LocalDateTime truncar(LocalDateTime horario) {
+            return horario.truncatedTo(unidade);
+        }
+
+        LocalDateTime teto(LocalDateTime horario) {
+            LocalDateTime truncado = truncar(horario);
+            return truncado.equals(horario) ? horario : truncado.plus(1, unidade);
+        }
+    }
+
+    private final DeteccaoRollupJdbcRepository rollupRepository;
+    private final PlatformTransactionManager transactionManager;
+
+    @Value("${deteccoes.rollup.habilitado:true}")
+    private boolean habilitado;
+
+    @Value("${deteccoes.rollup.intervalo-recalculo-minutos:5}")
+    private long intervaloRecalculoMinutos;
+
+    @Value("${deteccoes.rollup.janela-recalculo-minutos:60}")
+    private long janelaRecalculoMinutos;
+
+    @Value("${deteccoes.rollup.bruto-max-minutos:60}")
+    private long brutoMaxMinutos;
+
+    @Value("${deteccoes.rollup.max-pontos:1500}")
+    private long maxPontos;
+
+    @Value("${deteccoes.rollup.tamanho-lote:500}")
+    private int tamanhoLote;
+
+    // Mesma grade do índice espacial
+    @Value("${deteccoes.espacial.celula:64}")
+    private double tamanhoCelula;
+
+    // Só depois do primeiro recálculo os baldes cobrem todo o histórico
+    private volatile boolean pronto = false;
+    private final AtomicBoolean recalculoCompleto = new AtomicBoolean(false);
+    // Minutos com detecções removidas cujos baldes ainda não foram recalculados
+    private final Set<LocalDateTime> minutosPendentes = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rollup-deteccoes");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aoIniciar() {
+        if (!habilitado) {
+            return;
+        }
+        agendador.scheduleWithFixedDelay(this::recalcularAgendado, 0, intervaloRecalculoMinutos, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        agendador.shutdownNow();
+    }
+
+    private void recalcularAgendado() {
+        try {
+            recalcular();
+        } catch (Exception e) {
+            // Banco indisponível ou tabela ausente: tenta de novo no próximo ciclo, consultas usam as brutas
+            log.warn("Não foi possível recalcular os agregados de detecções: {}", e.getMessage());
+        }
+    }
+
+    private void recalcularPendentesAgendado() {
+        try {
+            recalcularPendentes();
+        } catch (Exception e) {
+            log.warn("Não foi possível recalcular os agregados das detecções removidas: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recalcula os baldes a partir das detecções brutas: todo o histórico na primeira execução sem agregados
+     * ou após uma falha no incremento; senão só a janela recente e os baldes com remoções pendentes
+     */
+    public synchronized void recalcular() {
+        recalcularPendentes();
+        boolean completo = recalculoCompleto.getAndSet(false) || (!pronto && !rollupRepository.possuiBaldes());
+        LocalDateTime desde = completo ? INICIO_HISTORICO : LocalDateTime.now().minusMinutes(janelaRecalculoMinutos);
+        long inicio = System.nanoTime();
+        try {
+            TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+            int baldes = 0;
+            for (Resolucao r : Resolucao.values()) {
+                // Apagar e regravar na mesma transação: leitores nunca veem a resolução vazia
+                Integer gravados = transacao.execute(status ->
+                        rollupRepository.recalcular(r.codigo, r.formatoTrunc, tamanhoCelula, r.truncar(desde)));
+                baldes += gravados != null ? gravados : 0;
+            }
+            pronto = true;
+            log.info("Agregados de detecções recalculados desde {}: {} baldes em {} ms",
+                    completo ? "o início" : desde, baldes, (System.nanoTime() - inicio) / 1_000_000);
+        } catch (RuntimeException e) {
+            if (completo) {
+                recalculoCompleto.set(true);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Recalcula, em cada resolução, só os baldes que contêm minutos com detecções removidas.
+     * Baldes vizinhos formam uma faixa; com faixas demais, vai do primeiro ao último balde.
+     */
+    public synchronized void recalcularPendentes() {
+        if (minutosPendentes.isEmpty()) {
+            return;
+        }
+        List<LocalDateTime> minutos = new ArrayList<>(minutosPendentes);
+        minutosPendentes.removeAll(minutos);
+        long inicio = System.nanoTime();
+        try {
+            TransactionTemplate transacao = new TransactionTemplate(transactionManager);
+            int baldes = 0;
+            for (Resolucao r : Resolucao.values()) {
+                TreeSet<LocalDateTime> inicios = new TreeSet<>();
+                minutos.forEach(m -> inicios.add(r.truncar(m)));
+                for (LocalDateTime[] faixa : faixas(r, inicios)) {
+                    Integer gravados = transacao.execute(status ->
+                            rollupRepository.recalcular(r.codigo, r.formatoTrunc, tamanhoCelula, faixa[0], faixa[1]));
+                    baldes += gravados != null ? gravados : 0;
+                }
+            }
+            log.info("Agregados de {} minutos com remoções recalculados: {} baldes em {} ms",
+                    minutos.size(), baldes, (System.nanoTime() - inicio) / 1_000_000);
+        } catch (RuntimeException e) {
+            minutosPendentes.addAll(minutos);
+            throw e;
+        }
+    }
+
+    /**
+     * Agrupa os inícios de balde consecutivos em faixas [inicio, fim)
+     */
+    static List<LocalDateTime[]> faixas(Resolucao r, TreeSet<LocalDateTime> inicios) {
+        List<LocalDateTime[]> faixas = new ArrayList<>();
+        for (LocalDateTime balde : inicios) {
+            LocalDateTime[] ultima = faixas.isEmpty() ? null : faixas.get(faixas.size() - 1);
+            if (ultima != null && ultima[1].equals(balde)) {
+                ultima[1] = balde.plus(1, r.unidade);
+            } else {
+                faixas.add(new LocalDateTime[]{balde, balde.plus(1, r.unidade)});
+            }
+        }
+        if (faixas.size() > MAX_FAIXAS) {
+            return List.<LocalDateTime[]>of(new LocalDateTime[]{inicios.first(), inicios.last().plus(1, r.unidade)});
+        }
+        return faixas;
+    }
+
+    /**
+     * Minutos das detecções com os IDs informados, a consultar antes de removê-las
+     */
+    public List<LocalDateTime> minutosDasDeteccoes(Collection<Long> ids) {
+        return habilitado ? emBlocos(ids, false) : List.of();
+    }
+
+    /**
+     * Minutos das detecções das motos informadas, a consultar antes de removê-las
+     */
+    public List<LocalDateTime> minutosDasMotos(Collection<Long> idsMoto) {
+        return habilitado ? emBlocos(idsMoto, true) : List.of();
+    }
+
+    private List<LocalDateTime> emBlocos(Collection<Long> ids, boolean porMoto) {
+        List<Long> lista = new ArrayList<>(ids);
+        Set<LocalDateTime> minutos = new HashSet<>();
+        for (int i = 0; i < lista.size(); i += LIMITE_IN) {
+            List<Long> bloco = lista.subList(i, Math.min(lista.size(), i + LIMITE_IN));
+            minutos.addAll(porMoto ? rollupRepository.minutosPorMotos(bloco) : rollupRepository.minutosPorIds(bloco));
+        }
+        return new ArrayList<>(minutos);
+    }
+
+    /**
+     * Incrementa os baldes com detecções recém-inseridas. Deve ser chamado dentro da transação da ingestão;
+     * uma falha aqui não desfaz a ingestão, apenas agenda o recálculo completo.
+     */
+    public void registrar(List<DeteccaoMoto> novas) {
+        if (!habilitado || novas.isEmpty()) {
+            return;
+        }
+        try {
+            Map<Long, Long> patios = patiosDasMotos(novas);
+            Map<List<Object>, Incremento> incrementos = new HashMap<>();
+            Map<List<Object>, Set<Long>> celulas = new HashMap<>();
+            for (DeteccaoMoto d : novas) {
+                if (d.getHorarioRegistro() == null) {
+                    continue;
+                }
+                long patioId = d.getIdMoto() != null ? patios.getOrDefault(d.getIdMoto(), 0L) : 0L;
+                double confianca = d.getConfianca() != null ? d.getConfianca() : 0d;
+                for (Resolucao r : Resolucao.values()) {
+                    LocalDateTime balde = r.truncar(d.getHorarioRegistro());
+                    List<Object> chave = List.of(r.codigo, balde, patioId);
+                    incrementos.computeIfAbsent(chave, k -> new Incremento(r.codigo, balde, patioId)).somar(confianca);
+                    if (d.getPosicaoX() != null && d.getPosicaoY() != null) {
+                        celulas.computeIfAbsent(chave, k -> new HashSet<>())
+                                .add(chaveCelula(d.getPosicaoX(), d.getPosicaoY()));
+                    }
+                }
+            }
+            celulas.forEach((chave, ocupadas) -> incrementos.get(chave).setCelulasOcupadas(ocupadas.size()));
+            rollupRepository.acumular(incrementos.values(), tamanhoLote);
+        } catch (RuntimeException e) {
+            recalculoCompleto.set(true);
+            log.warn("Falha ao atualizar os agregados de detecções, recálculo completo agendado: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Baldes em estado desconhecido (minutos afetados não informados): agenda o recálculo completo
+     */
+    public void marcarDesatualizado() {
+        recalculoCompleto.set(true);
+    }
+
+    /**
+     * Detecções alteradas (horário, posição ou confiança podem ter mudado): os baldes dos minutos antigos,
+     * lidos antes do UPDATE, e dos novos são recalculados depois do commit. Até lá os agregados seguem
+     * valendo para o estado confirmado.
+     */
+    public void registrarAlteracao(Collection<LocalDateTime> minutosAntigos, Collection<DeteccaoMoto> alteradas) {
+        if (!habilitado || alteradas.isEmpty()) {
+            return;
+        }
+        Set<LocalDateTime> minutos = new HashSet<>(minutosAntigos);
+        for (DeteccaoMoto d : alteradas) {
+            if (d.getHorarioRegistro() != null) {
+                minutos.add(Resolucao.MINUTO.truncar(d.getHorarioRegistro()));
+            }
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            agendarPendentes(minutos);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                agendarPendentes(minutos);
+            }
+        });
+    }
+
+    private void agendarPendentes(Collection<LocalDateTime> minutos) {
+        if (minutos.isEmpty()) {
+            return;
+        }
+        minutosPendentes.addAll(minutos);
+        agendador.execute(this::recalcularPendentesAgendado);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeteccoesRemovidas(DeteccoesRemovidasEvent event) {
+        if (!habilitado || event.getQuantidade() == 0) {
+            return;
+        }
+        if (event.getMinutos().isEmpty()) {
+            marcarDesatualizado();
+            return;
+        }
+        agendarPendentes(event.getMinutos());
+    }
+
+    /**
+     * Quantidade de detecções em [inicio, fim); {@code fim} nulo conta até o registro mais recente
+     */
+    public long contar(LocalDateTime inicio, LocalDateTime fim) {
+        if (!agregadosValidos()) {
+            return rollupRepository.contarBrutas(inicio, fim);
+        }
+        try {
+            return contar(inicio, fim, Resolucao.values().length - 1);
+        } catch (RuntimeException e) {
+            log.warn("Agregados indisponíveis, contando detecções brutas: {}", e.getMessage());
+            return rollupRepository.contarBrutas(inicio, fim);
+        }
+    }
+
+    /**
+     * Baldes inteiros da resolução {@code nivel} no meio do intervalo; as sobras nas bordas
+     * descem para a resolução seguinte e, abaixo do minuto, para as detecções brutas
+     */
+    long contar(LocalDateTime inicio, LocalDateTime fim, int nivel) {
+        if (fim != null && !inicio.isBefore(fim)) {
+            return 0;
+        }
+        if (nivel < 0) {
+            return rollupRepository.contarBrutas(inicio, fim);
+        }
+        Resolucao r = Resolucao.values()[nivel];
+        LocalDateTime a = r.teto(inicio);
+        LocalDateTime b = r.truncar(fim != null ? fim : LocalDateTime.now());
+        if (!a.isBefore(b)) {
+            return contar(inicio, fim, nivel - 1);
+        }
+        return contar(inicio, a, nivel - 1) + rollupRepository.somarQuantidade(r.codigo, a, b) + contar(b, fim, nivel - 1);
+    }
+
+    /**
+     * Indica se o período deve ser servido pelos agregados em vez das detecções brutas
+     */
+    public boolean usarAgregados(LocalDateTime inicio, LocalDateTime fim) {
+        return agregadosValidos() && Duration.between(inicio, fim).toMinutes() > brutoMaxMinutos;
+    }
+
+    /**
+     * Resolução mais fina cuja série no período não passa de {@code max-pontos} baldes
+     */
+    public Resolucao resolucaoPara(LocalDateTime inicio, LocalDateTime fim) {
+        for (Resolucao r : Resolucao.values()) {
+            if (r.unidade.between(r.truncar(inicio), r.teto(fim)) <= maxPontos) {
+                return r;
+            }
+        }
+        return Resolucao.DIA;
+    }
+
+    /**
+     * Série agregada do período (todos os pátios somados ou só {@code patioId}) na resolução de {@link #resolucaoPara}
+     */
+    public List<SerieDeteccoesDTO> serie(LocalDateTime inicio, LocalDateTime fim, Long patioId) {
+        Resolucao r = resolucaoPara(inicio, fim);
+        return rollupRepository.serie(r.codigo, r.truncar(inicio), fim, patioId);
+    }
+
+    /**
+     * Com recálculo pendente (remoções, alterações ou falha no incremento) os baldes podem estar desatualizados
+     */
+    private boolean agregadosValidos() {
+        return habilitado && pronto && !recalculoCompleto.get() && minutosPendentes.isEmpty();
+    }
+
+    private Map<Long, Long> patiosDasMotos(List<DeteccaoMoto> deteccoes) {
+        List<Long> ids = deteccoes.stream()
+                .map(DeteccaoMoto::getIdMoto)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Long, Long> patios = new HashMap<>();
+        for (int i = 0; i < ids.size(); i += LIMITE_IN) {
+            patios.putAll(rollupRepository.patiosDasMotos(new ArrayList<>(ids.subList(i, Math.min(ids.size(), i + LIMITE_IN)))));
+        }
+        return patios;
+    }
+
+    private long chaveCelula(double x, double y) {
+        long cx = (long) Math.floor(x / tamanhoCelula);
+        long cy = (long) Math.floor(y / tamanhoCelula);
+        return (cx << 32) ^ (cy & 0xffffffffL);
+    }
+}
@@ -0,0 +1,261 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.DeteccaoDTO;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Acompanha o arquivo deteccoes.ndjson de um job enquanto o worker o escreve
+ * e repassa as detecções aos clientes inscritos via Server-Sent Events.
+ * O arquivo é lido de forma incremental com o parser não bloqueante do Jackson,
+ * que aceita linhas parcialmente gravadas.
+ * O canal de um job existe da submissão até a finalização; o envio a cada cliente passa por uma fila
+ * própria (ClienteSse), de modo que um cliente lento não atrasa a leitura nem os outros jobs.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DeteccaoStreamService {
+
+    private final ObjectMapper objectMapper;
+
+    @Value("${analise.stream.intervalo-ms:250}")
+    private long intervaloMs;
+
+    @Value("${analise.stream.timeout-minutos:30}")
+    private long timeoutMinutos;
+
+    // Lotes de detecções pendentes de envio por cliente antes de ele ser desconectado
+    @Value("${analise.stream.fila-cliente:256}")
+    private int filaCliente;
+
+    private final Map<String, Canal> canais = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService leitor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "deteccao-stream");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicInteger contadorEnvio = new AtomicInteger();
+    private final ExecutorService envio = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "deteccao-stream-envio-" + contadorEnvio.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * Abre o canal do job ao ser enfileirado, para que clientes possam se inscrever antes de ele começar
+     */
+    public void abrir(String jobId) {
+        canais.computeIfAbsent(jobId, Canal::new);
+    }
+
+    /**
+     * Começa a acompanhar o arquivo NDJSON de um job (chamado antes de enviar o job ao worker)
+     */
+    public void iniciar(String jobId, Path arquivo) {
+        Canal canal = canais.computeIfAbsent(jobId, Canal::new);
+        canal.arquivo = arquivo;
+        canal.tarefa = leitor.scheduleWithFixedDelay(() -> canal.ler(false), intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Lê o arquivo atual até o fim e passa a acompanhar {@code proximo} (ou nenhum, se null).
+     * Usado na análise em trechos, em que cada trecho tem o seu arquivo: detecções de quadros anteriores
+     * a {@code quadroMinimo} são a sobreposição com o trecho anterior e não são repassadas.
+     * Os IDs de moto desses arquivos são os locais de cada trecho; os definitivos saem da mesclagem.
+     * Bloqueia até a troca, para que o arquivo lido possa ser removido em seguida.
+     */
+    public void seguir(String jobId, Path proximo, long quadroMinimo) throws InterruptedException {
+        Canal canal = canais.get(jobId);
+        if (canal == null) {
+            return;
+        }
+        try {
+            leitor.submit(() -> {
+                canal.ler(true);
+                canal.trocar(proximo, quadroMinimo);
+            }).get();
+        } catch (ExecutionException | RejectedExecutionException e) {
+            log.warn("Falha ao trocar o arquivo de detecções do job {}: {}", jobId, e.getMessage());
+        }
+    }
+
+    /**
+     * Lê o restante do arquivo, envia o evento "fim" aos inscritos e libera o canal
+     */
+    public void finalizar(String jobId, String status) {
+        Canal canal = canais.remove(jobId);
+        if (canal == null) {
+            return;
+        }
+        if (canal.tarefa != null) {
+            canal.tarefa.cancel(false);
+        }
+        // Executa no mesmo thread do leitor para não concorrer com uma leitura em andamento
+        leitor.execute(() -> {
+            canal.ler(true);
+            Map<String, Object> fim = Map.of("status", status, "total", canal.total);
+            synchronized (canal) {
+                canal.encerrado = true;
+            }
+            canal.enviar(() -> SseEmitter.event().name("fim").data(fim));
+            canal.clientes.forEach(ClienteSse::completar);
+            log.info("Stream de detecções do job {} encerrado ({} detecções)", jobId, canal.total);
+        });
+    }
+
+    /**
+     * Inscreve um cliente SSE nas detecções de um job em andamento ou na fila.
+     * Para um job já finalizado (ou cujo canal acabou de ser encerrado) o emissor recebe apenas o evento "fim".
+     * Canais só são criados pelo ciclo de vida do job, nunca por uma inscrição.
+     */
+    public SseEmitter inscrever(String jobId, boolean finalizado, String status) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutos));
+        Canal canal = finalizado ? null : canais.get(jobId);
+        if (canal != null) {
+            synchronized (canal) {
+                if (!canal.encerrado) {
+                    ClienteSse[] cliente = new ClienteSse[1];
+                    cliente[0] = new ClienteSse(emitter, envio, filaCliente, () -> canal.clientes.remove(cliente[0]));
+                    canal.clientes.add(cliente[0]);
+                    return emitter;
+                }
+            }
+        }
+        ClienteSse cliente = new ClienteSse(emitter, envio, 1, () -> { });
+        cliente.enviar(SseEmitter.event().name("fim").data(Map.of("status", status)));
+        cliente.completar();
+        return emitter;
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        leitor.shutdownNow();
+        canais.values().forEach(c -> c.clientes.forEach(ClienteSse::completar));
+        envio.shutdown();
+    }
+
+    /**
+     * Estado de leitura de um job: posição no arquivo, parser incremental e inscritos
+     */
+    private class Canal {
+
+        private final String jobId;
+        private final List<ClienteSse> clientes = new CopyOnWriteArrayList<>();
+        // Alterado sob o monitor do canal: depois dele nenhum cliente é adicionado
+        private boolean encerrado;
+        private volatile Path arquivo;
+        private volatile ScheduledFuture<?> tarefa;
+        private long quadroMinimo;
+
+        private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        private long posicao;
+        private long total;
+        private JsonParser parser;
+        private TokenBuffer objetoAtual;
+        private int profundidade;
+
+        Canal(String jobId) {
+            this.jobId = jobId;
+        }
+
+        void ler(boolean ultimaLeitura) {
+            if (arquivo == null || !Files.exists(arquivo)) {
+                return;
+            }
+            List<DeteccaoDTO> novas = new ArrayList<>();
+            try (FileChannel channel = FileChannel.open(arquivo, StandardOpenOption.READ)) {
+                if (parser == null) {
+                    parser = objectMapper.getFactory().createNonBlockingByteArrayParser();
+                }
+                ByteArrayFeeder feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+                int lidos;
+                while ((lidos = channel.read(buffer.clear(), posicao)) > 0) {
+                    posicao += lidos;
+                    feeder.feedInput(buffer.array(), 0, lidos);
+                    consumirTokens(novas);
+                }
+                if (ultimaLeitura) {
+                    feeder.endOfInput();
+                    consumirTokens(novas);
+                }
+            } catch (IOException e) {
+                log.warn("Falha ao ler detecções do job {}: {}", jobId, e.getMessage());
+            }
+
+            if (!novas.isEmpty()) {
+                total += novas.size();
+                enviar(() -> SseEmitter.event().name("deteccoes").data(novas));
+            }
+        }
+
+        /**
+         * Consome os tokens disponíveis, montando um DeteccaoDTO a cada objeto de nível raiz completo
+         */
+        private void consumirTokens(List<DeteccaoDTO> destino) throws IOException {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (objetoAtual == null) {
+                    if (token != JsonToken.START_OBJECT) {
+                        continue;
+                    }
+                    objetoAtual = new TokenBuffer(parser);
+                    profundidade = 0;
+                }
+                objetoAtual.copyCurrentEvent(parser);
+                if (token.isStructStart()) {
+                    profundidade++;
+                } else if (token.isStructEnd()) {
+                    profundidade--;
+                }
+                if (profundidade == 0) {
+                    DeteccaoDTO d = objectMapper.readValue(objetoAtual.asParser(), DeteccaoDTO.class);
+                    if (d.getQuadro() == null || d.getQuadro() >= quadroMinimo) {
+                        destino.add(d);
+                    }
+                    objetoAtual = null;
+                }
+            }
+        }
+
+        /**
+         * Recomeça a leitura do início de outro arquivo (executado no thread do leitor)
+         */
+        void trocar(Path proximo, long quadroMinimo) {
+            arquivo = proximo;
+            this.quadroMinimo = quadroMinimo;
+            posicao = 0;
+            parser = null;
+            objetoAtual = null;
+        }
+
+        // Um builder por cliente: o SseEventBuilder não pode ser reaproveitado entre emissores
+        void enviar(Supplier<SseEmitter.SseEventBuilder> evento) {
+            for (ClienteSse cliente : clientes) {
+                cliente.enviar(evento.get());
+            }
+        }
+    }
+}
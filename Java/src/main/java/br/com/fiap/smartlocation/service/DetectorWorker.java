@@ -0,0 +1,143 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.WorkerRespostaDTO;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Um processo detector_worker.py e seus canais stdin/stdout.
+ * Atende um job por vez; quem o usa deve tê-lo retirado do pool do DetectorWorkerService.
+ */
+@Slf4j
+class DetectorWorker {
+
+    private final String nome;
+    private final String pythonExecutable;
+    private final Path script;
+    private final String modelo;
+    private final ObjectMapper objectMapper;
+
+    private volatile Process processo;
+    private BufferedWriter entrada;
+    private BufferedReader saida;
+    private volatile String jobAtual;
+
+    DetectorWorker(String nome, String pythonExecutable, Path script, String modelo, ObjectMapper objectMapper) {
+        this.nome = nome;
+        this.pythonExecutable = pythonExecutable;
+        this.script = script;
+        this.modelo = modelo;
+        this.objectMapper = objectMapper;
+    }
+
+    String getJobAtual() {
+        return jobAtual;
+    }
+
+    /**
+     * Envia o job (ou comando) ao processo e bloqueia até a resposta correspondente
+     */
+    WorkerRespostaDTO executar(String id, Map<String, Object> job) throws IOException {
+        jobAtual = id;
+        try {
+            garantirProcesso();
+
+            Map<String, Object> mensagem = new LinkedHashMap<>();
+            mensagem.put("id", id);
+            mensagem.putAll(job);
+            entrada.write(objectMapper.writeValueAsString(mensagem));
+            entrada.newLine();
+            entrada.flush();
+
+            String linha;
+            while ((linha = saida.readLine()) != null) {
+                WorkerRespostaDTO resposta = objectMapper.readValue(linha, WorkerRespostaDTO.class);
+                if (id.equals(resposta.getId())) {
+                    return resposta;
+                }
+                log.debug("{}: ignorando resposta para outro job: {}", nome, linha);
+            }
+            throw new IOException(nome + " encerrado durante o job " + id);
+        } catch (IOException e) {
+            destruir();
+            throw e;
+        } finally {
+            jobAtual = null;
+        }
+    }
+
+    /**
+     * Encerra o processo (interrompe o job em andamento); o próximo job o reinicia
+     */
+    void destruir() {
+        Process p = processo;
+        if (p != null && p.isAlive()) {
+            p.destroy();
+        }
+    }
+
+    void encerrar() {
+        Process p = processo;
+        if (p == null || !p.isAlive()) {
+            return;
+        }
+        try {
+            entrada.write("{\"comando\":\"ENCERRAR\"}");
+            entrada.newLine();
+            entrada.flush();
+            if (!p.waitFor(5, TimeUnit.SECONDS)) {
+                p.destroy();
+            }
+        } catch (IOException | InterruptedException e) {
+            p.destroy();
+        }
+    }
+
+    /**
+     * Inicia o processo caso não esteja rodando e aguarda o modelo ser carregado
+     */
+    private void garantirProcesso() throws IOException {
+        if (processo != null && processo.isAlive()) {
+            return;
+        }
+        log.info("Iniciando {}: {} {} {}", nome, pythonExecutable, script, modelo);
+        ProcessBuilder pb = new ProcessBuilder(pythonExecutable, "-u", script.toString(), modelo);
+        pb.directory(script.getParent().toFile());
+        Process novo = pb.start();
+        entrada = new BufferedWriter(new OutputStreamWriter(novo.getOutputStream(), StandardCharsets.UTF_8));
+        saida = new BufferedReader(new InputStreamReader(novo.getInputStream(), StandardCharsets.UTF_8));
+        processo = novo;
+
+        // Logs do Python (stderr) repassados ao log da aplicação
+        Thread logs = new Thread(() -> {
+            try (BufferedReader err = new BufferedReader(new InputStreamReader(novo.getErrorStream(), StandardCharsets.UTF_8))) {
+                String l;
+                while ((l = err.readLine()) != null) {
+                    log.info("{}: {}", nome, l);
+                }
+            } catch (IOException ignored) {
+                // processo encerrado
+            }
+        }, nome + "-log");
+        logs.setDaemon(true);
+        logs.start();
+
+        String linha = saida.readLine();
+        if (linha == null) {
+            throw new IOException(nome + " encerrou antes de carregar o modelo");
+        }
+        JsonNode pronto = objectMapper.readTree(linha);
+        if (!"PRONTO".equals(pronto.path("evento").asText())) {
+            throw new IOException("Resposta inesperada de " + nome + " na inicialização: " + linha);
+        }
+        log.info("{} pronto (modelo {})", nome, pronto.path("modelo").asText());
+    }
+}
@@ -0,0 +1,174 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.WorkerRespostaDTO;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Pool de processos Python residentes (detector_worker.py), cada um com o modelo YOLO
+ * já carregado. Os processos são iniciados sob demanda e reutilizados entre jobs.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class DetectorWorkerService {
+
+    @Value("${python.executable:python}")
+    private String pythonExecutable;
+
+    @Value("${python.worker.script:../visao_computacional/detector_worker.py}")
+    private String scriptPath;
+
+    @Value("${python.worker.model:yolov8m.pt}")
+    private String modelo;
+
+    @Value("${python.worker.timeout-minutos:15}")
+    private long timeoutMinutos;
+
+    // 0 = automático (metade dos núcleos disponíveis, no mínimo 1)
+    @Value("${python.worker.quantidade:0}")
+    private int quantidadeConfigurada;
+
+    private final ObjectMapper objectMapper;
+
+    private final List<DetectorWorker> workers = new ArrayList<>();
+    private final BlockingQueue<DetectorWorker> livres = new LinkedBlockingQueue<>();
+    private final ScheduledExecutorService vigia = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "detector-worker-timeout");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @PostConstruct
+    void criarPool() {
+        Path script = Paths.get(scriptPath).toAbsolutePath();
+        for (int i = 1; i <= getQuantidade(); i++) {
+            DetectorWorker w = new DetectorWorker("detector-worker-" + i, pythonExecutable, script, modelo, objectMapper);
+            workers.add(w);
+            livres.add(w);
+        }
+        log.info("Pool de workers de detecção: {} processo(s)", workers.size());
+    }
+
+    public int getQuantidade() {
+        return quantidadeConfigurada > 0
+                ? quantidadeConfigurada
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+    }
+
+    /**
+     * Executa um job num worker livre, bloqueando até um ficar disponível e até a resposta
+     */
+    public WorkerRespostaDTO executar(String jobId, Path video, Path saidaDir, Path graficoDir)
+            throws IOException, InterruptedException {
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("video", video.toAbsolutePath().toString());
+        job.put("saida", saidaDir.toAbsolutePath().toString());
+        job.put("grafico", graficoDir.toAbsolutePath().toString());
+        log.info("Job {} atribuído a um worker de detecção: {}", jobId, video);
+        return enviar(jobId, job);
+    }
+
+    /**
+     * Analisa apenas os quadros [inicio, fim) do vídeo (fim nulo = até o final). Os quadros anteriores
+     * a {@code gravarDesde} aquecem o rastreador e não entram no vídeo anotado; não gera gráfico.
+     */
+    public WorkerRespostaDTO executarTrecho(String trechoId, Path video, Path saidaDir,
+                                            int inicio, Integer fim, int gravarDesde)
+            throws IOException, InterruptedException {
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("video", video.toAbsolutePath().toString());
+        job.put("saida", saidaDir.toAbsolutePath().toString());
+        job.put("inicio", inicio);
+        job.put("fim", fim);
+        job.put("gravar_desde", gravarDesde);
+        log.info("Trecho {} atribuído a um worker de detecção: quadros {}-{}", trechoId, inicio, fim != null ? fim : "fim");
+        return enviar(trechoId, job);
+    }
+
+    /**
+     * Quantidade de quadros do vídeo, informada pelo OpenCV (aproximada para alguns codecs)
+     */
+    public int contarQuadros(String jobId, Path video) throws IOException, InterruptedException {
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("comando", "INFO");
+        job.put("video", video.toAbsolutePath().toString());
+        WorkerRespostaDTO resposta = enviar(jobId, job);
+        if (!"SUCESSO".equals(resposta.getStatus()) || resposta.getFrames() == null) {
+            throw new IOException("Não foi possível ler a quantidade de quadros de " + video + ": " + resposta.getMensagem());
+        }
+        return resposta.getFrames();
+    }
+
+    /**
+     * Concatena os vídeos anotados dos trechos em {@code destino} e gera o gráfico a partir do JSON mesclado
+     */
+    public WorkerRespostaDTO mesclarTrechos(String jobId, List<Path> videos, Path destino, Path json, Path graficoDir)
+            throws IOException, InterruptedException {
+        Map<String, Object> job = new LinkedHashMap<>();
+        job.put("comando", "MESCLAR");
+        job.put("videos", videos.stream().map(v -> v.toAbsolutePath().toString()).toList());
+        job.put("destino", destino.toAbsolutePath().toString());
+        job.put("json", json.toAbsolutePath().toString());
+        job.put("grafico", graficoDir.toAbsolutePath().toString());
+        return enviar(jobId, job);
+    }
+
+    private WorkerRespostaDTO enviar(String jobId, Map<String, Object> job) throws IOException, InterruptedException {
+        if (!Files.exists(Paths.get(scriptPath))) {
+            throw new FileNotFoundException("Script do worker não encontrado: " + Paths.get(scriptPath).toAbsolutePath());
+        }
+        DetectorWorker worker = livres.take();
+        ScheduledFuture<?> timeout = vigia.schedule(() -> {
+            log.warn("Job {} excedeu {} minutos; encerrando o worker", jobId, timeoutMinutos);
+            worker.destruir();
+        }, timeoutMinutos, TimeUnit.MINUTES);
+        try {
+            return worker.executar(jobId, job);
+        } finally {
+            timeout.cancel(false);
+            livres.add(worker);
+        }
+    }
+
+    /**
+     * Interrompe o job informado, caso esteja em execução em algum worker,
+     * incluindo os trechos dele ({@code jobId}#n) na análise em trechos
+     *
+     * @return true se o job estava em execução
+     */
+    public boolean cancelar(String jobId) {
+        boolean emExecucao = false;
+        for (DetectorWorker w : workers) {
+            String atual = w.getJobAtual();
+            if (atual != null && (atual.equals(jobId) || atual.startsWith(jobId + "#"))) {
+                log.warn("Cancelando job {} em execução", atual);
+                w.destruir();
+                emExecucao = true;
+            }
+        }
+        return emExecucao;
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        vigia.shutdownNow();
+        workers.forEach(DetectorWorker::encerrar);
+    }
+}
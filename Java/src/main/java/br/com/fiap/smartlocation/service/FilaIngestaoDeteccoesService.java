@@ -0,0 +1,282 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Ingestão assíncrona (write-behind) das detecções enviadas uma a uma em POST /api/deteccoes.
+ * As detecções entram numa fila limitada e são confirmadas na hora; um thread de gravação
+ * esvazia a fila em batches JDBC, disparados pelo tamanho do lote ou pelo tempo máximo de espera.
+ * Com a fila cheia ou o banco falhando, novas detecções são recusadas para o cliente reenviar depois.
+ * Um lote recusado pelos dados (e não pela indisponibilidade do banco) é dividido ao meio até isolar
+ * as detecções inválidas; só elas são descartadas.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FilaIngestaoDeteccoesService {
+
+    /**
+     * Resultado de uma tentativa de enfileirar
+     */
+    public enum Resultado {
+        ACEITA,
+        FILA_CHEIA,
+        INDISPONIVEL
+    }
+
+    private final DeteccaoMotoService deteccaoService;
+
+    @Value("${deteccoes.fila.capacidade:10000}")
+    private int capacidade;
+
+    @Value("${deteccoes.fila.tamanho-lote:500}")
+    private int tamanhoLote;
+
+    @Value("${deteccoes.fila.espera-max-ms:200}")
+    private long esperaMaxMs;
+
+    @Value("${deteccoes.fila.tentativas:3}")
+    private int tentativas;
+
+    private volatile BlockingQueue<DeteccaoMoto> fila;
+    private volatile Thread gravador;
+    private volatile boolean ativo = false;
+    private volatile boolean bancoFalhando = false;
+    // Lote que o gravador tinha em mãos quando foi interrompido; publicado pelo próprio gravador ao terminar
+    // e gravado em encerrar()
+    private final AtomicReference<List<DeteccaoMoto>> loteInterrompido = new AtomicReference<>(List.of());
+
+    private final AtomicLong aceitas = new AtomicLong();
+    private final AtomicLong recusadas = new AtomicLong();
+    private final AtomicLong gravadas = new AtomicLong();
+    private final AtomicLong descartadas = new AtomicLong();
+    private final AtomicLong lotes = new AtomicLong();
+    private final AtomicLong nanosGravacao = new AtomicLong();
+    private final AtomicLong maxNanosGravacao = new AtomicLong();
+    private final AtomicLong ultimaGravacaoNanos = new AtomicLong();
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void aoIniciar() {
+        if (ativo) {
+            return;
+        }
+        fila = new ArrayBlockingQueue<>(capacidade);
+        ativo = true;
+        gravador = new Thread(this::executar, "deteccoes-write-behind");
+        gravador.setDaemon(true);
+        gravador.start();
+        log.info("Fila de ingestão de detecções iniciada (capacidade {}, lote {}, espera máx. {} ms)",
+                capacidade, tamanhoLote, esperaMaxMs);
+    }
+
+    /**
+     * Enfileira uma detecção nova para gravação; o horário de registro é o do recebimento
+     */
+    public Resultado enfileirar(DeteccaoMoto deteccao) {
+        BlockingQueue<DeteccaoMoto> atual = fila;
+        if (!ativo || atual == null || bancoFalhando) {
+            recusadas.incrementAndGet();
+            return Resultado.INDISPONIVEL;
+        }
+        if (deteccao.getHorarioRegistro() == null) {
+            deteccao.setHorarioRegistro(LocalDateTime.now());
+        }
+        if (!atual.offer(deteccao)) {
+            recusadas.incrementAndGet();
+            return Resultado.FILA_CHEIA;
+        }
+        aceitas.incrementAndGet();
+        return Resultado.ACEITA;
+    }
+
+    /**
+     * Tempo sugerido ao cliente para reenviar (Retry-After), em segundos
+     */
+    public long getSegundosParaReenvio() {
+        return Math.max(1, TimeUnit.MILLISECONDS.toSeconds(esperaMaxMs * 2));
+    }
+
+    private void executar() {
+        List<DeteccaoMoto> lote = new ArrayList<>(tamanhoLote);
+        while (ativo) {
+            try {
+                DeteccaoMoto primeira = fila.poll(esperaMaxMs, TimeUnit.MILLISECONDS);
+                if (primeira == null) {
+                    continue;
+                }
+                lote.add(primeira);
+                // Completa o lote até o tamanho máximo ou até vencer o tempo de espera da primeira detecção
+                long prazo = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(esperaMaxMs);
+                while (lote.size() < tamanhoLote) {
+                    fila.drainTo(lote, tamanhoLote - lote.size());
+                    long restante = prazo - System.nanoTime();
+                    if (lote.size() >= tamanhoLote || restante <= 0) {
+                        break;
+                    }
+                    DeteccaoMoto proxima = fila.poll(restante, TimeUnit.NANOSECONDS);
+                    if (proxima == null) {
+                        break;
+                    }
+                    lote.add(proxima);
+                }
+                gravarComRetentativas(lote);
+                lote.clear();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        loteInterrompido.set(List.copyOf(lote));
+    }
+
+    private void gravarComRetentativas(List<DeteccaoMoto> lote) throws InterruptedException {
+        for (int tentativa = 1; ; tentativa++) {
+            try {
+                gravar(lote);
+                bancoFalhando = false;
+                return;
+            } catch (RuntimeException e) {
+                if (!bancoIndisponivel(e)) {
+                    // Repetir o mesmo lote não resolve uma detecção inválida
+                    gravarIsolandoInvalidas(lote, e);
+                    return;
+                }
+                bancoFalhando = true;
+                if (tentativa >= tentativas) {
+                    descartadas.addAndGet(lote.size());
+                    log.error("Lote de {} detecções descartado após {} tentativas: {}",
+                            lote.size(), tentativa, e.getMessage());
+                    bancoFalhando = false;
+                    return;
+                }
+                log.warn("Falha ao gravar lote de {} detecções (tentativa {}/{}): {}",
+                        lote.size(), tentativa, tentativas, e.getMessage());
+                Thread.sleep(1000L * tentativa);
+            }
+        }
+    }
+
+    /**
+     * Divide o lote recusado ao meio e grava cada metade, descartando apenas as detecções
+     * que falham sozinhas. Se o banco ficar indisponível no meio, o restante é descartado de uma vez.
+     */
+    private void gravarIsolandoInvalidas(List<DeteccaoMoto> lote, RuntimeException erro) {
+        if (lote.size() == 1) {
+            DeteccaoMoto d = lote.get(0);
+            descartadas.incrementAndGet();
+            log.error("Detecção descartada (moto {}, registro {}, posição {},{}): {}", d.getIdMoto(),
+                    d.getHorarioRegistro(), d.getPosicaoX(), d.getPosicaoY(), erro.getMessage());
+            return;
+        }
+        int meio = lote.size() / 2;
+        for (List<DeteccaoMoto> metade : List.of(lote.subList(0, meio), lote.subList(meio, lote.size()))) {
+            try {
+                gravar(metade);
+            } catch (RuntimeException e) {
+                if (bancoIndisponivel(e)) {
+                    descartadas.addAndGet(metade.size());
+                    log.error("{} detecções descartadas: banco indisponível ao isolar detecções inválidas: {}",
+                            metade.size(), e.getMessage());
+                    continue;
+                }
+                gravarIsolandoInvalidas(metade, e);
+            }
+        }
+    }
+
+    private static boolean bancoIndisponivel(RuntimeException e) {
+        return e instanceof TransientDataAccessException || e instanceof DataAccessResourceFailureException
+                || e instanceof CannotCreateTransactionException;
+    }
+
+    private void gravar(List<DeteccaoMoto> lote) {
+        long inicio = System.nanoTime();
+        deteccaoService.ingerirEmLote(new ArrayList<>(lote));
+        long duracao = System.nanoTime() - inicio;
+        gravadas.addAndGet(lote.size());
+        lotes.incrementAndGet();
+        nanosGravacao.addAndGet(duracao);
+        maxNanosGravacao.accumulateAndGet(duracao, Math::max);
+        ultimaGravacaoNanos.set(duracao);
+    }
+
+    /**
+     * Para o thread de gravação e grava o que restou na fila antes de a aplicação sair
+     */
+    @PreDestroy
+    public synchronized void encerrar() throws InterruptedException {
+        if (!ativo) {
+            return;
+        }
+        ativo = false;
+        gravador.interrupt();
+        gravador.join(TimeUnit.SECONDS.toMillis(30));
+        if (gravador.isAlive()) {
+            // Ainda preso numa gravação: o lote em mãos continua com ele, e a fila não é disputada
+            int naFila = fila.size();
+            descartadas.addAndGet(naFila);
+            log.error("Gravador de detecções não terminou em 30 s; {} detecções da fila não foram gravadas no encerramento",
+                    naFila);
+            return;
+        }
+        List<DeteccaoMoto> restantes = new ArrayList<>(loteInterrompido.getAndSet(List.of()));
+        fila.drainTo(restantes);
+        for (int i = 0; i < restantes.size(); i += tamanhoLote) {
+            List<DeteccaoMoto> lote = restantes.subList(i, Math.min(restantes.size(), i + tamanhoLote));
+            try {
+                gravar(lote);
+            } catch (RuntimeException e) {
+                if (!bancoIndisponivel(e)) {
+                    gravarIsolandoInvalidas(lote, e);
+                    continue;
+                }
+                descartadas.addAndGet(restantes.size() - i);
+                log.error("{} detecções da fila não foram gravadas no encerramento: {}", restantes.size() - i, e.getMessage());
+                return;
+            }
+        }
+        log.info("Fila de ingestão encerrada: {} detecções gravadas no encerramento", restantes.size());
+    }
+
+    /**
+     * Métricas da fila: profundidade, totais e latência de gravação por lote (ms)
+     */
+    public Map<String, Number> getMetricas() {
+        BlockingQueue<DeteccaoMoto> atual = fila;
+        long n = lotes.get();
+        Map<String, Number> metricas = new LinkedHashMap<>();
+        metricas.put("profundidade", atual != null ? atual.size() : 0);
+        metricas.put("capacidade", capacidade);
+        metricas.put("aceitas", aceitas.get());
+        metricas.put("recusadas", recusadas.get());
+        metricas.put("gravadas", gravadas.get());
+        metricas.put("descartadas", descartadas.get());
+        metricas.put("lotes", n);
+        metricas.put("tamanhoMedioLote", n > 0 ? (double) gravadas.get() / n : 0d);
+        metricas.put("latenciaMediaLoteMs", n > 0 ? nanosGravacao.get() / 1_000_000d / n : 0d);
+        metricas.put("latenciaMaxLoteMs", maxNanosGravacao.get() / 1_000_000d);
+        metricas.put("latenciaUltimoLoteMs", ultimaGravacaoNanos.get() / 1_000_000d);
+        return metricas;
+    }
+}
@@ -0,0 +1,263 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.PaginaPosicoesDTO;
+import br.com.fiap.smartlocation.dto.PosicaoDTO;
+import br.com.fiap.smartlocation.dto.TrajetoriaDTO;
+import br.com.fiap.smartlocation.repository.PosicaoJdbcRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consultas ao histórico de posições de uma moto por período: trajetória simplificada,
+ * páginas por cursor (dt_posicao, id) e exportação NDJSON em streaming, também por páginas.
+ * Todas percorrem o índice (moto_id, dt_posicao, id) em ordem cronológica, sem carregar entidades.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class HistoricoPosicaoService {
+
+    // Metros por grau de latitude (aproximação equiretangular, suficiente para a escala de um trajeto)
+    private static final double METROS_POR_GRAU = 111_320d;
+
+    private final PosicaoJdbcRepository posicaoJdbcRepository;
+    private final ObjectMapper objectMapper;
+
+    @Value("${posicoes.historico.fetch-size:1000}")
+    private int fetchSize;
+
+    @Value("${posicoes.historico.pagina-padrao:200}")
+    private int tamanhoPaginaPadrao;
+
+    @Value("${posicoes.historico.pagina-maxima:2000}")
+    private int tamanhoPaginaMaximo;
+
+    @Value("${posicoes.historico.pagina-exportacao:1000}")
+    private int tamanhoPaginaExportacao;
+
+    @Value("${posicoes.trajetoria.max-pontos-padrao:500}")
+    private int maxPontosPadrao;
+
+    @Value("${posicoes.trajetoria.max-pontos-lidos:1000000}")
+    private int maxPontosLidos;
+
+    /**
+     * Trajetória da moto em [inicio, fim) reduzida a no máximo {@code maxPontos} pontos por Douglas-Peucker,
+     * mantendo os pontos que mais alteram o traçado; {@code toleranciaMetros} descarta desvios menores que ela
+     */
+    public TrajetoriaDTO trajetoria(Long motoId, LocalDateTime inicio, LocalDateTime fim,
+                                    Integer maxPontos, Double toleranciaMetros) {
+        long inicioNanos = System.nanoTime();
+        int limite = maxPontos == null || maxPontos < 2 ? maxPontosPadrao : maxPontos;
+
+        // Coordenadas em arrays primitivos: sem um objeto por posição lida
+        Pontos pontos = new Pontos();
+        boolean[] truncada = {false};
+        posicaoJdbcRepository.percorrerHistorico(motoId, inicio, fim, fetchSize, rs -> {
+            if (pontos.n >= maxPontosLidos) {
+                truncada[0] = true;
+                return;
+            }
+            Timestamp dt = rs.getTimestamp("dt_posicao");
+            pontos.adicionar(rs.getDouble("latitude"), rs.getDouble("longitude"), dt.getTime());
+        });
+
+        boolean[] manter = simplificar(pontos, limite, toleranciaMetros != null ? toleranciaMetros : 0d);
+        List<PosicaoDTO> resultado = new ArrayList<>();
+        for (int i = 0; i < pontos.n; i++) {
+            if (manter[i]) {
+                resultado.add(new PosicaoDTO(motoId, pontos.lat[i], pontos.lon[i],
+                        new Timestamp(pontos.epochMillis[i]).toLocalDateTime()));
+            }
+        }
+        if (truncada[0]) {
+            log.warn("Trajetória da moto {} truncada em {} posições", motoId, maxPontosLidos);
+        }
+        log.info("Trajetória da moto {}: {} posições reduzidas a {} em {} ms",
+                motoId, pontos.n, resultado.size(), (System.nanoTime() - inicioNanos) / 1_000_000);
+        return new TrajetoriaDTO(motoId, inicio, fim, pontos.n, truncada[0], resultado);
+    }
+
+    /**
+     * Página do histórico da moto em ordem cronológica. Sem cursor retorna a primeira página;
+     * para a próxima, repassar proximoHorario/proximoId da resposta anterior.
+     */
+    public PaginaPosicoesDTO listarPagina(Long motoId, LocalDateTime inicio, LocalDateTime fim,
+                                          LocalDateTime cursorHorario, Long cursorId, Integer tamanho) {
+        int limite = tamanho == null || tamanho <= 0 ? tamanhoPaginaPadrao : Math.min(tamanho, tamanhoPaginaMaximo);
+        // Busca um registro a mais para saber se existe próxima página
+        List<PosicaoJdbcRepository.LinhaHistorico> linhas =
+                posicaoJdbcRepository.paginaHistorico(motoId, inicio, fim, cursorHorario, cursorId, limite + 1);
+
+        boolean temMais = linhas.size() > limite;
+        List<PosicaoJdbcRepository.LinhaHistorico> itens = temMais ? linhas.subList(0, limite) : linhas;
+
+        PaginaPosicoesDTO pagina = new PaginaPosicoesDTO();
+        pagina.setItens(itens.stream().map(PosicaoJdbcRepository.LinhaHistorico::getPosicao).toList());
+        pagina.setTemMais(temMais);
+        if (temMais) {
+            PosicaoJdbcRepository.LinhaHistorico ultima = itens.get(itens.size() - 1);
+            pagina.setProximoHorario(ultima.getPosicao().getDtPosicao());
+            pagina.setProximoId(ultima.getId());
+        }
+        return pagina;
+    }
+
+    /**
+     * Exporta o histórico da moto no período como NDJSON. Lê página a página pelo cursor (dt_posicao, id),
+     * cada página numa consulta curta, e só então escreve: a conexão do pool não fica presa enquanto
+     * o cliente baixa.
+     *
+     * @return quantidade de posições exportadas
+     */
+    public long exportarNdjson(Long motoId, LocalDateTime inicio, LocalDateTime fim, OutputStream out) throws IOException {
+        long total = 0;
+        LocalDateTime cursorHorario = null;
+        Long cursorId = null;
+        while (true) {
+            List<PosicaoJdbcRepository.LinhaHistorico> linhas = posicaoJdbcRepository.paginaHistorico(
+                    motoId, inicio, fim, cursorHorario, cursorId, tamanhoPaginaExportacao);
+            for (PosicaoJdbcRepository.LinhaHistorico linha : linhas) {
+                out.write(objectMapper.writeValueAsBytes(linha.getPosicao()));
+                out.write('\n');
+            }
+            out.flush();
+            total += linhas.size();
+            if (linhas.size() < tamanhoPaginaExportacao) {
+                break;
+            }
+            PosicaoJdbcRepository.LinhaHistorico ultima = linhas.get(linhas.size() - 1);
+            cursorHorario = ultima.getPosicao().getDtPosicao();
+            cursorId = ultima.getId();
+        }
+        log.info("Exportação NDJSON do histórico da moto {}: {} posições", motoId, total);
+        return total;
+    }
+
+    /**
+     * Douglas-Peucker iterativo que atribui a cada ponto a "importância" com que foi escolhido
+     * (distância ao segmento, limitada pela do segmento pai). Manter os {@code limite} pontos mais importantes
+     * equivale a rodar o algoritmo com a menor tolerância que cabe no limite, numa única passada.
+     */
+    static boolean[] simplificar(Pontos p, int limite, double toleranciaMetros) {
+        int n = p.n;
+        boolean[] manter = new boolean[n];
+        if (n <= 2) {
+            Arrays.fill(manter, true);
+            return manter;
+        }
+        double[] importancia = new double[n];
+        importancia[0] = Double.POSITIVE_INFINITY;
+        importancia[n - 1] = Double.POSITIVE_INFINITY;
+
+        // Projeção local em metros em torno da latitude do primeiro ponto
+        double escalaLon = METROS_POR_GRAU * Math.cos(Math.toRadians(p.lat[0]));
+        double[] x = new double[n];
+        double[] y = new double[n];
+        for (int i = 0; i < n; i++) {
+            x[i] = p.lon[i] * escalaLon;
+            y[i] = p.lat[i] * METROS_POR_GRAU;
+        }
+
+        int[] pilhaA = new int[n];
+        int[] pilhaB = new int[n];
+        double[] pilhaImp = new double[n];
+        int topo = 0;
+        pilhaA[topo] = 0;
+        pilhaB[topo] = n - 1;
+        pilhaImp[topo++] = Double.POSITIVE_INFINITY;
+        while (topo > 0) {
+            topo--;
+            int a = pilhaA[topo];
+            int b = pilhaB[topo];
+            double impPai = pilhaImp[topo];
+            if (b - a < 2) {
+                continue;
+            }
+            int maisDistante = a + 1;
+            double maior = -1;
+            for (int i = a + 1; i < b; i++) {
+                double d = distanciaAoSegmento(x[i], y[i], x[a], y[a], x[b], y[b]);
+                if (d > maior) {
+                    maior = d;
+                    maisDistante = i;
+                }
+            }
+            double imp = Math.min(maior, impPai);
+            importancia[maisDistante] = imp;
+            pilhaA[topo] = a;
+            pilhaB[topo] = maisDistante;
+            pilhaImp[topo++] = imp;
+            pilhaA[topo] = maisDistante;
+            pilhaB[topo] = b;
+            pilhaImp[topo++] = imp;
+        }
+
+        // Corte: a importância do limite-ésimo ponto mais importante (e a tolerância, se maior)
+        double corte = toleranciaMetros;
+        if (n > limite) {
+            double[] ordenada = importancia.clone();
+            Arrays.sort(ordenada);
+            corte = Math.max(corte, ordenada[n - limite]);
+        }
+        int mantidos = 0;
+        for (int i = 0; i < n; i++) {
+            if (importancia[i] > corte) {
+                manter[i] = true;
+                mantidos++;
+            }
+        }
+        // Empates no corte completam o limite na ordem do trajeto
+        for (int i = 0; i < n && mantidos < limite; i++) {
+            if (!manter[i] && importancia[i] == corte) {
+                manter[i] = true;
+                mantidos++;
+            }
+        }
+        return manter;
+    }
+
+    private static double distanciaAoSegmento(double px, double py, double ax, double ay, double bx, double by) {
+        double dx = bx - ax;
+        double dy = by - ay;
+        double comprimento2 = dx * dx + dy * dy;
+        double t = comprimento2 > 0 ? ((px - ax) * dx + (py - ay) * dy) / comprimento2 : 0;
+        t = Math.max(0, Math.min(1, t));
+        double cx = ax + t * dx - px;
+        double cy = ay + t * dy - py;
+        return Math.sqrt(cx * cx + cy * cy);
+    }
+
+    /**
+     * Posições lidas em arrays que crescem conforme a leitura
+     */
+    static final class Pontos {
+        private double[] lat = new double[1024];
+        private double[] lon = new double[1024];
+        private long[] epochMillis = new long[1024];
+        private int n;
+
+        private void adicionar(double latitude, double longitude, long epoch) {
+            if (n == lat.length) {
+                int capacidade = n * 2;
+                lat = Arrays.copyOf(lat, capacidade);
+                lon = Arrays.copyOf(lon, capacidade);
+                epochMillis = Arrays.copyOf(epochMillis, capacidade);
+            }
+            lat[n] = latitude;
+            lon[n] = longitude;
+            epochMillis[n++] = epoch;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.IndicadoresDTO;
+import br.com.fiap.smartlocation.event.MotoAlteradaEvent;
+import br.com.fiap.smartlocation.repository.MotoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Indicadores da frota calculados com uma única consulta agregada (GROUP BY status)
+ * e mantidos em cache em memória por um TTL curto
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IndicadoresService {
+
+    private final MotoRepository motoRepository;
+
+    @Value("${indicadores.cache.ttl-ms:5000}")
+    private long ttlMs;
+
+    private volatile IndicadoresDTO cache;
+    private volatile long expiraEm;
+    // Incrementada a cada invalidação; evita guardar um resultado calculado antes dela
+    private final AtomicLong geracao = new AtomicLong();
+
+    /**
+     * Sem @Transactional de propósito: um acerto no cache não deve ocupar a única conexão do pool
+     */
+    public IndicadoresDTO obterIndicadores() {
+        IndicadoresDTO atual = cache;
+        if (atual != null && System.currentTimeMillis() < expiraEm) {
+            return atual;
+        }
+
+        long geracaoInicial = geracao.get();
+        IndicadoresDTO calculado = calcular();
+        synchronized (this) {
+            if (geracao.get() == geracaoInicial) {
+                cache = calculado;
+                expiraEm = System.currentTimeMillis() + ttlMs;
+            }
+        }
+        return calculado;
+    }
+
+    /**
+     * Descarta o cache após o commit de qualquer alteração em motos
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMotoAlterada(MotoAlteradaEvent event) {
+        invalidar();
+    }
+
+    public void invalidar() {
+        synchronized (this) {
+            geracao.incrementAndGet();
+            cache = null;
+        }
+        log.debug("Cache de indicadores invalidado");
+    }
+
+    private IndicadoresDTO calcular() {
+        List<Object[]> linhas = motoRepository.contarAgrupadoPorStatus();
+
+        IndicadoresDTO dto = new IndicadoresDTO();
+        long total = 0;
+        for (Object[] linha : linhas) {
+            String status = (String) linha[0];
+            long quantidade = ((Number) linha[1]).longValue();
+            total += quantidade;
+            if (status == null) {
+                continue;
+            }
+            switch (status) {
+                case "DISPONIVEL" -> dto.setDisponivel(quantidade);
+                case "EM_USO" -> dto.setEmUso(quantidade);
+                case "MANUTENCAO" -> dto.setManutencao(quantidade);
+                case "INATIVA" -> dto.setInativa(quantidade);
+                default -> { }
+            }
+        }
+        dto.setTotalMotos(total);
+        dto.setAtualizadoEm(LocalDateTime.now());
+        return dto;
+    }
+}
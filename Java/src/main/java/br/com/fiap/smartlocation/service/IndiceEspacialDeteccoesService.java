@@ -0,0 +1,338 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.DeteccaoDTO;
+import br.com.fiap.smartlocation.event.DeteccoesRemovidasEvent;
+import br.com.fiap.smartlocation.event.DeteccoesSalvasEvent;
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import br.com.fiap.smartlocation.repository.DeteccaoMotoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Índice espacial em grade uniforme sobre as detecções recentes (coordenadas em pixels do vídeo).
+ * Cada célula de {@code celula} x {@code celula} pixels guarda as detecções que caem nela,
+ * de modo que consultas por área só visitam as células que a cobrem.
+ * O índice guarda apenas a janela recente (por tempo e quantidade) e é atualizado pelos eventos de detecção.
+ * Um mapa por ID localiza a entrada de uma detecção atualizada ou removida sem percorrer a janela; a entrada
+ * sai da célula na hora e da fila de ordem quando chega à cabeça dela.
+ * A ingestão em lote não informa as linhas gravadas: as detecções com ID acima do maior já lido do banco
+ * são relidas na próxima consulta.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IndiceEspacialDeteccoesService {
+
+    private final DeteccaoMotoRepository deteccaoRepository;
+
+    @Value("${deteccoes.espacial.celula:64}")
+    private double tamanhoCelula;
+
+    @Value("${deteccoes.espacial.janela-minutos:60}")
+    private long janelaMinutos;
+
+    @Value("${deteccoes.espacial.max-deteccoes:100000}")
+    private int maxDeteccoes;
+
+    private final Map<Long, List<Entrada>> celulas = new HashMap<>();
+    private final Map<Long, Entrada> porId = new HashMap<>();
+    // Ordem de inserção, usada para descartar as entradas mais antigas (inclui entradas já removidas)
+    private final Deque<Entrada> ordem = new ArrayDeque<>();
+    private int ativas;
+    // Maior ID lido do banco (carga inicial e releituras após ingestão em lote)
+    private long maiorIdLido;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean inicializado = false;
+    private volatile boolean ingestaoPendente = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aoIniciar() {
+        try {
+            garantirInicializado();
+        } catch (Exception e) {
+            // Banco indisponível na subida: a carga é refeita na primeira consulta
+            log.warn("Não foi possível carregar o índice espacial de detecções: {}", e.getMessage());
+        }
+    }
+
+    public void garantirInicializado() {
+        if (inicializado) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (inicializado) {
+                return;
+            }
+            List<DeteccaoMoto> recentes = deteccaoRepository.findPrimeiraPagina(PageRequest.of(0, maxDeteccoes));
+            // A página vem da mais recente para a mais antiga; insere na ordem cronológica
+            for (int i = recentes.size() - 1; i >= 0; i--) {
+                inserir(recentes.get(i));
+                maiorIdLido = Math.max(maiorIdLido, recentes.get(i).getIdDeteccao());
+            }
+            descartarAntigas();
+            inicializado = true;
+            log.info("Índice espacial de detecções carregado: {} detecções em {} células", ativas, celulas.size());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Detecções dentro do retângulo [xMin, xMax] x [yMin, yMax], das mais recentes para as mais antigas
+     */
+    public List<DeteccaoDTO> buscarNaArea(double xMin, double yMin, double xMax, double yMax, int limite) {
+        return buscar(xMin, yMin, xMax, yMax, limite,
+                e -> e.x >= xMin && e.x <= xMax && e.y >= yMin && e.y <= yMax);
+    }
+
+    /**
+     * Detecções a até {@code raio} pixels de (x, y), das mais recentes para as mais antigas
+     */
+    public List<DeteccaoDTO> buscarNoRaio(double x, double y, double raio, int limite) {
+        double r2 = raio * raio;
+        return buscar(x - raio, y - raio, x + raio, y + raio, limite, e -> {
+            double dx = e.x - x;
+            double dy = e.y - y;
+            return dx * dx + dy * dy <= r2;
+        });
+    }
+
+    private List<DeteccaoDTO> buscar(double xMin, double yMin, double xMax, double yMax, int limite,
+                                     Predicate<Entrada> filtro) {
+        garantirInicializado();
+        lerIngeridas();
+        List<Entrada> encontradas = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            long cxMin = indice(xMin);
+            long cxMax = indice(xMax);
+            long cyMin = indice(yMin);
+            long cyMax = indice(yMax);
+            double celulasNaArea = (double) (cxMax - cxMin + 1) * (cyMax - cyMin + 1);
+            if (celulasNaArea > celulas.size()) {
+                // Área maior que a parte ocupada da grade: mais barato percorrer só as células existentes
+                celulas.values().forEach(celula -> filtrar(celula, filtro, encontradas));
+            } else {
+                for (long cx = cxMin; cx <= cxMax; cx++) {
+                    for (long cy = cyMin; cy <= cyMax; cy++) {
+                        List<Entrada> celula = celulas.get(chave(cx, cy));
+                        if (celula != null) {
+                            filtrar(celula, filtro, encontradas);
+                        }
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        encontradas.sort(Comparator.comparing((Entrada e) -> e.deteccao.getHorarioRegistro(),
+                Comparator.nullsLast(Comparator.reverseOrder())));
+        return encontradas.stream()
+                .limit(limite)
+                .map(e -> paraDTO(e.deteccao))
+                .toList();
+    }
+
+    private static void filtrar(List<Entrada> celula, Predicate<Entrada> filtro, List<Entrada> destino) {
+        for (Entrada e : celula) {
+            if (filtro.test(e)) {
+                destino.add(e);
+            }
+        }
+    }
+
+    /**
+     * Lê as detecções gravadas pela ingestão em lote desde a última leitura (consulta fora do lock)
+     */
+    private void lerIngeridas() {
+        if (!ingestaoPendente) {
+            return;
+        }
+        ingestaoPendente = false;
+        long aPartirDe;
+        lock.readLock().lock();
+        try {
+            aPartirDe = maiorIdLido;
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<DeteccaoMoto> novas = deteccaoRepository.findPosterioresAoId(aPartirDe, PageRequest.of(0, maxDeteccoes));
+        if (novas.isEmpty()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // Da mais antiga para a mais nova; as já recebidas por evento são substituídas pelo mapa por ID
+            for (int i = novas.size() - 1; i >= 0; i--) {
+                inserir(novas.get(i));
+            }
+            maiorIdLido = Math.max(maiorIdLido, novas.get(0).getIdDeteccao());
+            descartarAntigas();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeteccoesSalvas(DeteccoesSalvasEvent event) {
+        if (!inicializado) {
+            return;
+        }
+        if (event.isEmLote()) {
+            ingestaoPendente = event.getNovas() > 0 || ingestaoPendente;
+            return;
+        }
+        // Lote só de inserções: nenhuma entrada antiga a procurar
+        boolean somenteNovas = event.getNovas() >= event.getDeteccoes().size();
+        lock.writeLock().lock();
+        try {
+            for (DeteccaoMoto d : event.getDeteccoes()) {
+                if (d.getIdDeteccao() == null) {
+                    // Sem ID a entrada nunca poderia ser atualizada nem removida
+                    continue;
+                }
+                if (!somenteNovas) {
+                    // Atualização: a posição pode ter mudado, remove a entrada antiga
+                    retirar(porId.get(d.getIdDeteccao()));
+                }
+                inserir(d);
+            }
+            descartarAntigas();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeteccoesRemovidas(DeteccoesRemovidasEvent event) {
+        if (!inicializado) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            event.getIds().forEach(id -> retirar(porId.get(id)));
+            if (!event.getIdsMoto().isEmpty()) {
+                // Remoção por moto (exclusão da moto): rara, percorre a janela
+                List<Entrada> daMoto = new ArrayList<>();
+                for (Entrada e : porId.values()) {
+                    if (e.deteccao.getIdMoto() != null && event.getIdsMoto().contains(e.deteccao.getIdMoto())) {
+                        daMoto.add(e);
+                    }
+                }
+                daMoto.forEach(this::retirar);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int getTamanho() {
+        lock.readLock().lock();
+        try {
+            return ativas;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ---------------------------------------------------------------- manutenção (sob writeLock)
+
+    private void inserir(DeteccaoMoto d) {
+        if (d.getPosicaoX() == null || d.getPosicaoY() == null) {
+            return;
+        }
+        Entrada e = new Entrada(d, d.getPosicaoX(), d.getPosicaoY());
+        retirar(porId.put(d.getIdDeteccao(), e));
+        celulas.computeIfAbsent(e.celula, k -> new ArrayList<>()).add(e);
+        ordem.addLast(e);
+        ativas++;
+    }
+
+    /**
+     * Descarta pela cabeça da fila as entradas fora da janela de tempo ou acima do limite de quantidade
+     */
+    private void descartarAntigas() {
+        LocalDateTime limite = LocalDateTime.now().minusMinutes(janelaMinutos);
+        while (!ordem.isEmpty()) {
+            Entrada primeira = ordem.peekFirst();
+            LocalDateTime horario = primeira.deteccao.getHorarioRegistro();
+            boolean expirada = horario != null && horario.isBefore(limite);
+            if (!primeira.removida && !expirada && ativas <= maxDeteccoes) {
+                break;
+            }
+            ordem.removeFirst();
+            retirar(primeira);
+        }
+        if (ordem.size() > 2 * Math.max(ativas, maxDeteccoes)) {
+            // Muitas entradas removidas no meio da fila (atualizações em sequência): compacta
+            ordem.removeIf(e -> e.removida);
+        }
+    }
+
+    /**
+     * Tira a entrada da célula e do mapa por ID; na fila de ordem ela fica marcada até chegar à cabeça
+     */
+    private void retirar(Entrada e) {
+        if (e == null || e.removida) {
+            return;
+        }
+        e.removida = true;
+        ativas--;
+        if (e.deteccao.getIdDeteccao() != null) {
+            porId.remove(e.deteccao.getIdDeteccao(), e);
+        }
+        List<Entrada> celula = celulas.get(e.celula);
+        if (celula != null) {
+            celula.remove(e);
+            if (celula.isEmpty()) {
+                celulas.remove(e.celula);
+            }
+        }
+    }
+
+    private long indice(double coordenada) {
+        return (long) Math.floor(coordenada / tamanhoCelula);
+    }
+
+    private static long chave(long cx, long cy) {
+        return (cx << 32) ^ (cy & 0xffffffffL);
+    }
+
+    private DeteccaoDTO paraDTO(DeteccaoMoto d) {
+        return new DeteccaoDTO(d.getIdDeteccao(), d.getIdMoto(), d.getPlacaVirtual(), d.getPosicaoX(),
+                d.getPosicaoY(), d.getConfianca(), d.getHorarioRegistro(), d.getStatus(), null);
+    }
+
+    private final class Entrada {
+        private final DeteccaoMoto deteccao;
+        private final double x;
+        private final double y;
+        private final long celula;
+        private boolean removida;
+
+        private Entrada(DeteccaoMoto deteccao, double x, double y) {
+            this.deteccao = deteccao;
+            this.x = x;
+            this.y = y;
+            this.celula = chave(indice(x), indice(y));
+        }
+    }
+}
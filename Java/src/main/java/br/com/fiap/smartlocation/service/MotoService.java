@@ -1,5 +1,9 @@
 package br.com.fiap.smartlocation.service;
 
+import br.com.fiap.smartlocation.dto.MotoResumoDTO;
+import br.com.fiap.smartlocation.dto.RemocaoMotosDTO;
+import br.com.fiap.smartlocation.event.DeteccoesRemovidasEvent;
+import br.com.fiap.smartlocation.event.MotoAlteradaEvent;
 import br.com.fiap.smartlocation.model.Moto;
 import br.com.fiap.smartlocation.repository.DeteccaoMotoRepository;
 import br.com.fiap.smartlocation.repository.MovimentacaoRepository;
@@ -7,12 +11,18 @@ import br.com.fiap.smartlocation.repository.MotoRepository;
 import br.com.fiap.smartlocation.repository.PosicaoRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import jakarta.persistence.EntityManager;
 import jakarta.persistence.PersistenceContext;
 
@@ -25,40 +35,58 @@ public class MotoService {
     private final DeteccaoMotoRepository deteccaoMotoRepository;
     private final MovimentacaoRepository movimentacaoRepository;
     private final PosicaoRepository posicaoRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CacheCatalogoService catalogo;
+    private final DeteccaoRollupService rollup;
+
+    private static final int LIMITE_LISTA_IN = 1000;
 
     @PersistenceContext
     private EntityManager entityManager;
 
     @Transactional(readOnly = true)
     public List<Moto> listarTodas() {
-        return motoRepository.findAll();
+        return motoRepository.findAllComPatio();
     }
 
+    /**
+     * Listagem da API como projeção (uma consulta com o pátio em JOIN, sem entidades)
+     */
     @Transactional(readOnly = true)
+    public List<MotoResumoDTO> listarResumo() {
+        return motoRepository.listarResumo();
+    }
+
+    /**
+     * Servido pelo cache do catálogo; em caso de falta, lê do banco fora de uma transação própria
+     */
     public Optional<Moto> buscarPorId(Long id) {
-        return motoRepository.findById(id);
+        return catalogo.buscarMoto(id);
     }
 
-    @Transactional(readOnly = true)
     public Optional<Moto> buscarPorPlaca(String placa) {
-        return motoRepository.findByPlaca(placa);
+        return catalogo.buscarMotoPorPlaca(placa);
     }
 
     @Transactional(readOnly = true)
-    public List<Moto> buscarPorStatus(String status) {
-        return motoRepository.findByStatus(status);
+    public List<MotoResumoDTO> buscarPorStatus(String status) {
+        return motoRepository.listarResumoPorStatus(status);
     }
 
     @Transactional(readOnly = true)
-    public List<Moto> listarDisponiveis() {
-        return motoRepository.findMotosDisponiveis();
+    public List<MotoResumoDTO> listarDisponiveis() {
+        return motoRepository.listarResumoPorStatus("DISPONIVEL");
     }
 
     @Transactional
     public Moto salvar(Moto moto) {
         log.info("Salvando moto: {}", moto.getPlaca());
+        boolean nova = moto.getId() == null;
         moto.setUltimaAtualizacao(LocalDateTime.now());
-        return motoRepository.save(moto);
+        Moto salva = motoRepository.save(moto);
+        eventPublisher.publishEvent(new MotoAlteradaEvent(salva.getId(),
+                nova ? MotoAlteradaEvent.Tipo.CRIADA : MotoAlteradaEvent.Tipo.ATUALIZADA));
+        return salva;
     }
 
     @Transactional
@@ -71,7 +99,9 @@ public class MotoService {
                     moto.setPatio(motoAtualizada.getPatio());
                     moto.setUltimaAtualizacao(LocalDateTime.now());
                     log.info("Atualizando moto ID: {}", id);
-                    return motoRepository.save(moto);
+                    Moto salva = motoRepository.save(moto);
+                    eventPublisher.publishEvent(new MotoAlteradaEvent(id, MotoAlteradaEvent.Tipo.ATUALIZADA));
+                    return salva;
                 })
                 .orElseThrow(() -> new RuntimeException("Moto não encontrada com ID: " + id));
     }
@@ -79,47 +109,74 @@ public class MotoService {
     @Transactional
     public void deletar(Long id) {
         log.info("Deletando moto ID: {}", id);
-        // Remover registros dependentes para evitar ORA-02292
-        try {
-        // 0. Tabelas não mapeadas como entidades (FKs no script SQL): SENSOR e MANUTENCAO
-        int delSensor = entityManager.createNativeQuery("DELETE FROM SENSOR WHERE moto_id = :id")
-            .setParameter("id", id)
-            .executeUpdate();
-        if (delSensor > 0) log.info("Removidos {} sensores vinculados à moto {}", delSensor, id);
-        entityManager.flush();
-
-        int delManut = entityManager.createNativeQuery("DELETE FROM MANUTENCAO WHERE moto_id = :id")
-            .setParameter("id", id)
-            .executeUpdate();
-        if (delManut > 0) log.info("Removidas {} manutenções vinculadas à moto {}", delManut, id);
-        entityManager.flush();
-
-            int qtdDeteccoes = deteccaoMotoRepository.findByIdMoto(id).size();
-            int qtdMovs = movimentacaoRepository.findByMotoId(id).size();
-            int qtdPos = posicaoRepository.findByMotoId(id).size();
-
-            if (qtdDeteccoes > 0) {
-                log.info("Removendo {} detecções relacionadas à moto {}", qtdDeteccoes, id);
-                deteccaoMotoRepository.deleteByIdMoto(id);
-                entityManager.flush();
-            }
-            if (qtdMovs > 0) {
-                log.info("Removendo {} movimentações relacionadas à moto {}", qtdMovs, id);
-                movimentacaoRepository.deleteByMotoId(id);
-                entityManager.flush();
-            }
-            if (qtdPos > 0) {
-                log.info("Removendo {} posições relacionadas à moto {}", qtdPos, id);
-                posicaoRepository.deleteByMotoId(id);
-                entityManager.flush();
+        RemocaoMotosDTO resultado = deletarVarias(List.of(id));
+        if (resultado.getMotos() == 0) {
+            throw new RuntimeException("Moto não encontrada com ID: " + id);
+        }
+    }
+
+    /**
+     * Remove as motos e todos os registros dependentes com DELETEs em massa (um por tabela e bloco de IDs),
+     * sem carregar entidades, em uma única transação
+     */
+    @Transactional
+    public RemocaoMotosDTO deletarVarias(Collection<Long> ids) {
+        long inicio = System.nanoTime();
+        List<Long> distintos = ids.stream().filter(Objects::nonNull).distinct().toList();
+        RemocaoMotosDTO resultado = new RemocaoMotosDTO();
+        // Só as motos que existem (travadas até o commit) geram eventos de remoção
+        List<Long> removidas = new ArrayList<>();
+        // Horários das detecções removidas, para recalcular só os baldes deles
+        Set<LocalDateTime> minutos = new HashSet<>();
+
+        // Oracle limita listas IN a 1000 elementos
+        for (int i = 0; i < distintos.size(); i += LIMITE_LISTA_IN) {
+            List<Long> bloco = existentesTravadas(distintos.subList(i, Math.min(i + LIMITE_LISTA_IN, distintos.size())));
+            if (bloco.isEmpty()) {
+                continue;
             }
+            removidas.addAll(bloco);
+
+            // Tabelas não mapeadas como entidades (FKs no script SQL): SENSOR e MANUTENCAO
+            resultado.setSensores(resultado.getSensores() + entityManager
+                    .createNativeQuery("DELETE FROM SENSOR WHERE moto_id IN (:ids)")
+                    .setParameter("ids", bloco)
+                    .executeUpdate());
+            resultado.setManutencoes(resultado.getManutencoes() + entityManager
+                    .createNativeQuery("DELETE FROM MANUTENCAO WHERE moto_id IN (:ids)")
+                    .setParameter("ids", bloco)
+                    .executeUpdate());
+
+            minutos.addAll(rollup.minutosDasMotos(bloco));
+            resultado.setDeteccoes(resultado.getDeteccoes() + deteccaoMotoRepository.deletarPorMotos(bloco));
+            resultado.setMovimentacoes(resultado.getMovimentacoes() + movimentacaoRepository.deletarPorMotos(bloco));
+            resultado.setPosicoes(resultado.getPosicoes() + posicaoRepository.deletarPorMotos(bloco));
+            resultado.setMotos(resultado.getMotos() + motoRepository.deletarPorIds(bloco));
+        }
+        resultado.setDuracaoMs((System.nanoTime() - inicio) / 1_000_000);
 
-            motoRepository.deleteById(id);
-            entityManager.flush();
-        } catch (Exception e) {
-            log.error("Falha ao deletar moto {} com limpeza de dependências", id, e);
-            throw e;
+        log.info("Removidas {} motos ({} detecções, {} movimentações, {} posições, {} sensores, {} manutenções) em {} ms",
+                resultado.getMotos(), resultado.getDeteccoes(), resultado.getMovimentacoes(), resultado.getPosicoes(),
+                resultado.getSensores(), resultado.getManutencoes(), resultado.getDuracaoMs());
+
+        if (resultado.getDeteccoes() > 0) {
+            eventPublisher.publishEvent(DeteccoesRemovidasEvent.porMotos(removidas, resultado.getDeteccoes(), minutos));
         }
+        removidas.forEach(id -> eventPublisher.publishEvent(new MotoAlteradaEvent(id, MotoAlteradaEvent.Tipo.REMOVIDA)));
+        return resultado;
+    }
+
+    /**
+     * IDs do bloco que existem em MOTO, com as linhas travadas (FOR UPDATE) para que uma remoção
+     * concorrente não publique o mesmo evento duas vezes
+     */
+    @SuppressWarnings("unchecked")
+    private List<Long> existentesTravadas(List<Long> bloco) {
+        List<Number> encontrados = entityManager
+                .createNativeQuery("SELECT id FROM MOTO WHERE id IN (:ids) FOR UPDATE")
+                .setParameter("ids", bloco)
+                .getResultList();
+        return encontrados.stream().map(Number::longValue).toList();
     }
 
     @Transactional
@@ -129,7 +186,9 @@ public class MotoService {
                     moto.setStatus(novoStatus);
                     moto.setUltimaAtualizacao(LocalDateTime.now());
                     log.info("Atualizando status da moto ID {} para: {}", id, novoStatus);
-                    return motoRepository.save(moto);
+                    Moto salva = motoRepository.save(moto);
+                    eventPublisher.publishEvent(new MotoAlteradaEvent(id, MotoAlteradaEvent.Tipo.ATUALIZADA));
+                    return salva;
                 })
                 .orElseThrow(() -> new RuntimeException("Moto não encontrada com ID: " + id));
     }
@@ -0,0 +1,101 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.MovimentacaoDTO;
+import br.com.fiap.smartlocation.event.MovimentacoesRegistradasEvent;
+import br.com.fiap.smartlocation.model.Movimentacao;
+import br.com.fiap.smartlocation.repository.MotoRepository;
+import br.com.fiap.smartlocation.repository.MovimentacaoJdbcRepository;
+import br.com.fiap.smartlocation.repository.MovimentacaoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Registro de movimentações (entrada, saída e movimentação interna) das motos
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MovimentacaoService {
+
+    public static final String ENTRADA = "ENTRADA";
+    public static final String SAIDA = "SAIDA";
+    private static final Set<String> TIPOS = Set.of(ENTRADA, SAIDA, "MOVIMENTACAO");
+
+    private final MovimentacaoRepository movimentacaoRepository;
+    private final MovimentacaoJdbcRepository movimentacaoJdbcRepository;
+    private final MotoRepository motoRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Transactional
+    public MovimentacaoDTO registrar(MovimentacaoDTO movimentacao) {
+        return registrarVarias(List.of(movimentacao)).get(0);
+    }
+
+    @Transactional
+    public List<MovimentacaoDTO> registrarVarias(List<MovimentacaoDTO> movimentacoes) {
+        log.info("Registrando {} movimentações", movimentacoes.size());
+        List<Movimentacao> entidades = movimentacoes.stream()
+                .map(dto -> {
+                    validar(dto);
+                    Movimentacao m = new Movimentacao();
+                    m.setMoto(motoRepository.getReferenceById(dto.getMotoId()));
+                    m.setTipoEvento(dto.getTipoEvento());
+                    m.setDescricao(dto.getDescricao());
+                    m.setDtEvento(dto.getDtEvento() != null ? dto.getDtEvento() : LocalDateTime.now());
+                    return m;
+                })
+                .toList();
+
+        List<MovimentacaoDTO> salvas = movimentacaoRepository.saveAll(entidades).stream()
+                .map(m -> new MovimentacaoDTO(m.getId(), m.getMoto().getId(), m.getTipoEvento(),
+                        m.getDescricao(), m.getDtEvento()))
+                .toList();
+        eventPublisher.publishEvent(new MovimentacoesRegistradasEvent(salvas));
+        return salvas;
+    }
+
+    /**
+     * Grava movimentações geradas pela aplicação em batches JDBC, sem carregar entidades.
+     * As de motos já removidas são ignoradas; as gravadas são publicadas sem ID.
+     *
+     * @return quantidade gravada
+     */
+    @Transactional
+    public int registrarEmLote(List<MovimentacaoDTO> movimentacoes, int tamanhoLote) {
+        if (movimentacoes.isEmpty()) {
+            return 0;
+        }
+        LocalDateTime agora = LocalDateTime.now();
+        for (MovimentacaoDTO dto : movimentacoes) {
+            validar(dto);
+            if (dto.getDtEvento() == null) {
+                dto.setDtEvento(agora);
+            }
+        }
+        int[] linhas = movimentacaoJdbcRepository.inserirEmLote(movimentacoes, tamanhoLote);
+        List<MovimentacaoDTO> gravadas = new ArrayList<>(movimentacoes.size());
+        for (int i = 0; i < linhas.length; i++) {
+            if (linhas[i] > 0) {
+                gravadas.add(movimentacoes.get(i));
+            }
+        }
+        if (!gravadas.isEmpty()) {
+            eventPublisher.publishEvent(new MovimentacoesRegistradasEvent(gravadas));
+        }
+        return gravadas.size();
+    }
+
+    private static void validar(MovimentacaoDTO dto) {
+        if (dto.getMotoId() == null || dto.getTipoEvento() == null || !TIPOS.contains(dto.getTipoEvento())) {
+            throw new IllegalArgumentException("Movimentação exige motoId e tipoEvento (ENTRADA, SAIDA ou MOVIMENTACAO)");
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.EventoMovimentacaoDTO;
+import br.com.fiap.smartlocation.dto.MovimentacaoDTO;
+import br.com.fiap.smartlocation.event.MovimentacoesRegistradasEvent;
+import br.com.fiap.smartlocation.model.Moto;
+import br.com.fiap.smartlocation.model.Patio;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Barramento de movimentações: cada movimentação gravada (após o commit) recebe uma sequência
+ * e é repassada via Server-Sent Events aos clientes inscritos, com filtro opcional por pátio ou por moto.
+ * As últimas movimentações ficam num buffer limitado: um cliente que reconecta informando o
+ * Last-Event-ID recebe o que perdeu, sem reler a tabela.
+ * Publicação, inscrição e replay rodam num único thread, o que mantém a ordem sem lacunas nem duplicatas;
+ * o envio a cada cliente passa por uma fila própria (ClienteSse), e um cliente lento que a enche é
+ * desconectado (e reconecta com o Last-Event-ID) sem atrasar o barramento.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MovimentacaoStreamService {
+
+    private final CacheCatalogoService catalogo;
+
+    @Value("${movimentacoes.stream.replay-max:1000}")
+    private int replayMax;
+
+    @Value("${movimentacoes.stream.timeout-minutos:30}")
+    private long timeoutMinutos;
+
+    @Value("${movimentacoes.stream.heartbeat-segundos:25}")
+    private long heartbeatSegundos;
+
+    // Nunca menor que replay-max + 1: o replay inteiro (e o evento "lacuna") cabe na fila de quem reconecta
+    @Value("${movimentacoes.stream.fila-cliente:2000}")
+    private int filaCliente;
+
+    // Alterados apenas pelo thread do barramento
+    private final Deque<EventoMovimentacaoDTO> buffer = new ArrayDeque<>();
+    private final List<Inscricao> inscricoes = new CopyOnWriteArrayList<>();
+    private final AtomicLong sequencia = new AtomicLong();
+
+    private final AtomicLong publicadas = new AtomicLong();
+    private final AtomicLong entregas = new AtomicLong();
+    private final AtomicLong reenviadas = new AtomicLong();
+    private final AtomicLong desconectados = new AtomicLong();
+
+    private final ScheduledExecutorService barramento = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "movimentacoes-stream");
+        t.setDaemon(true);
+        return t;
+    });
+    private final AtomicInteger contadorEnvio = new AtomicInteger();
+    private final ExecutorService envio = Executors.newCachedThreadPool(r -> {
+        Thread t = new Thread(r, "movimentacoes-stream-envio-" + contadorEnvio.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aoIniciar() {
+        // Comentário SSE periódico: mantém proxies com a conexão aberta e detecta clientes desconectados
+        barramento.scheduleWithFixedDelay(() -> inscricoes.forEach(i -> i.enviar(SseEmitter.event().comment("ping"))),
+                heartbeatSegundos, heartbeatSegundos, TimeUnit.SECONDS);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovimentacoesRegistradas(MovimentacoesRegistradasEvent event) {
+        // Pátio lido agora (cache), no thread de quem gravou; o envio não segura a requisição
+        List<EventoMovimentacaoDTO> eventos = new ArrayList<>(event.getMovimentacoes().size());
+        for (MovimentacaoDTO mov : event.getMovimentacoes()) {
+            Long patioId = catalogo.buscarMoto(mov.getMotoId())
+                    .map(Moto::getPatio)
+                    .map(Patio::getId)
+                    .orElse(null);
+            eventos.add(new EventoMovimentacaoDTO(0, patioId, mov));
+        }
+        barramento.execute(() -> publicar(eventos));
+    }
+
+    /**
+     * Inscreve um cliente SSE. Com {@code ultimoId} (Last-Event-ID) recebe antes as movimentações
+     * do buffer posteriores a ele; se o buffer já não as tiver, recebe o evento "lacuna".
+     */
+    public SseEmitter inscrever(Long patioId, Long motoId, Long ultimoId) {
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutos));
+        Inscricao inscricao = new Inscricao(patioId, motoId);
+        inscricao.cliente = new ClienteSse(emitter, envio, Math.max(filaCliente, replayMax + 1), () -> {
+            inscricoes.remove(inscricao);
+            desconectados.incrementAndGet();
+        });
+        barramento.execute(() -> {
+            if (ultimoId != null && !reenviar(inscricao, ultimoId)) {
+                return;
+            }
+            inscricoes.add(inscricao);
+        });
+        return emitter;
+    }
+
+    private void publicar(List<EventoMovimentacaoDTO> eventos) {
+        for (EventoMovimentacaoDTO evento : eventos) {
+            evento.setSequencia(sequencia.incrementAndGet());
+            if (buffer.size() >= replayMax) {
+                buffer.removeFirst();
+            }
+            buffer.addLast(evento);
+            publicadas.incrementAndGet();
+            for (Inscricao inscricao : inscricoes) {
+                if (!inscricao.aceita(evento)) {
+                    continue;
+                }
+                // Um builder por cliente: o SseEventBuilder não pode ser reaproveitado entre emissores
+                if (inscricao.enviar(paraSse(evento))) {
+                    entregas.incrementAndGet();
+                } else {
+                    inscricoes.remove(inscricao);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reenvia as movimentações do buffer posteriores a {@code ultimoId}
+     *
+     * @return false se o cliente já se desconectou
+     */
+    private boolean reenviar(Inscricao inscricao, long ultimoId) {
+        EventoMovimentacaoDTO maisAntigo = buffer.peekFirst();
+        long atual = sequencia.get();
+        if (ultimoId > atual || (ultimoId < atual && (maisAntigo == null || maisAntigo.getSequencia() > ultimoId + 1))) {
+            // Parte do que o cliente perdeu já saiu do buffer ou o servidor reiniciou: ele deve recarregar
+            Map<String, Number> lacuna = new LinkedHashMap<>();
+            lacuna.put("ultimoId", ultimoId);
+            lacuna.put("maisAntigoDisponivel", maisAntigo != null ? maisAntigo.getSequencia() : atual + 1);
+            if (!inscricao.enviar(SseEmitter.event().name("lacuna").data(lacuna))) {
+                return false;
+            }
+        }
+        for (EventoMovimentacaoDTO evento : buffer) {
+            if (evento.getSequencia() > ultimoId && inscricao.aceita(evento)) {
+                if (!inscricao.enviar(paraSse(evento))) {
+                    return false;
+                }
+                reenviadas.incrementAndGet();
+            }
+        }
+        return true;
+    }
+
+    private static SseEmitter.SseEventBuilder paraSse(EventoMovimentacaoDTO evento) {
+        return SseEmitter.event()
+                .id(Long.toString(evento.getSequencia()))
+                .name("movimentacao")
+                .data(evento);
+    }
+
+    /**
+     * Métricas do barramento: inscritos, sequência atual, capacidade do buffer, entregas (eventos enfileirados
+     * para os clientes) e clientes desconectados
+     */
+    public Map<String, Number> getMetricas() {
+        Map<String, Number> metricas = new LinkedHashMap<>();
+        metricas.put("inscritos", inscricoes.size());
+        metricas.put("sequencia", sequencia.get());
+        metricas.put("replayMax", replayMax);
+        metricas.put("publicadas", publicadas.get());
+        metricas.put("entregas", entregas.get());
+        metricas.put("reenviadas", reenviadas.get());
+        metricas.put("desconectados", desconectados.get());
+        return metricas;
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        barramento.shutdownNow();
+        inscricoes.forEach(i -> i.cliente.completar());
+        envio.shutdown();
+    }
+
+    /**
+     * Cliente inscrito com seus filtros (nulos = sem filtro)
+     */
+    private static final class Inscricao {
+        private final Long patioId;
+        private final Long motoId;
+        private ClienteSse cliente;
+
+        private Inscricao(Long patioId, Long motoId) {
+            this.patioId = patioId;
+            this.motoId = motoId;
+        }
+
+        private boolean aceita(EventoMovimentacaoDTO evento) {
+            return (patioId == null || patioId.equals(evento.getPatioId()))
+                    && (motoId == null || motoId.equals(evento.getMovimentacao().getMotoId()));
+        }
+
+        private boolean enviar(SseEmitter.SseEventBuilder evento) {
+            return cliente.enviar(evento);
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.AlertaOcupacaoDTO;
+import br.com.fiap.smartlocation.dto.MovimentacaoDTO;
+import br.com.fiap.smartlocation.dto.OcupacaoPatioDTO;
+import br.com.fiap.smartlocation.event.MotoAlteradaEvent;
+import br.com.fiap.smartlocation.event.MovimentacoesRegistradasEvent;
+import br.com.fiap.smartlocation.model.Patio;
+import br.com.fiap.smartlocation.repository.MotoRepository;
+import br.com.fiap.smartlocation.repository.MovimentacaoJdbcRepository;
+import br.com.fiap.smartlocation.repository.PatioRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ocupação dos pátios em tempo real, mantida em memória de forma incremental.
+ * A carga inicial lê o pátio e o status de cada moto e a última entrada/saída registrada;
+ * depois, cada alteração de moto (MotoAlteradaEvent) e cada movimentação (MovimentacoesRegistradasEvent)
+ * ajusta só os contadores do pátio afetado, sem recontar o banco.
+ * As consultas leem um retrato imutável por pátio, sem bloqueio; ao cruzar os limites de alerta
+ * ou de lotação, um alerta é registrado.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class OcupacaoPatioService {
+
+    public static final String NORMAL = "NORMAL";
+    public static final String ALERTA = "ALERTA";
+    public static final String LOTADO = "LOTADO";
+
+    // Mesmo critério de fn_calcular_percentual_ocupacao_patio
+    private static final Set<String> STATUS_ATIVOS = Set.of("DISPONIVEL", "EM_USO", "MANUTENCAO");
+
+    private final MotoRepository motoRepository;
+    private final PatioRepository patioRepository;
+    private final MovimentacaoJdbcRepository movimentacaoJdbcRepository;
+    private final CacheCatalogoService catalogo;
+
+    @Value("${patios.ocupacao.alerta-percentual:80}")
+    private double alertaPercentual;
+
+    @Value("${patios.ocupacao.lotado-percentual:100}")
+    private double lotadoPercentual;
+
+    @Value("${patios.ocupacao.max-alertas:200}")
+    private int maxAlertas;
+
+    // Estado mutável, protegido pelo monitor do serviço
+    private final Map<Long, Patio> patios = new HashMap<>();
+    private final Map<Long, EstadoMoto> motos = new HashMap<>();
+    private final Map<Long, Contagem> contagens = new HashMap<>();
+    // Motos cuja última movimentação foi SAIDA (podem ainda não ter sido carregadas)
+    private final Set<Long> motosFora = new HashSet<>();
+    // Horário da última ENTRADA/SAIDA aplicada por moto; movimentações mais antigas não mudam o lado
+    private final Map<Long, LocalDateTime> ultimasEntradasSaidas = new HashMap<>();
+    private final Deque<AlertaOcupacaoDTO> alertas = new ArrayDeque<>();
+
+    // Retratos publicados para leitura
+    private final Map<Long, OcupacaoPatioDTO> retratos = new ConcurrentHashMap<>();
+    private volatile boolean inicializado = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aoIniciar() {
+        try {
+            garantirInicializado();
+        } catch (RuntimeException e) {
+            // Banco indisponível na subida: tenta de novo na primeira consulta ou evento
+            log.warn("Ocupação dos pátios não carregada na inicialização: {}", e.getMessage());
+        }
+    }
+
+    private void garantirInicializado() {
+        if (!inicializado) {
+            recarregar();
+        }
+    }
+
+    /**
+     * Reconstrói todo o estado a partir do banco (ex.: após alterar pátios direto no banco)
+     */
+    public synchronized void recarregar() {
+        long inicio = System.currentTimeMillis();
+        Map<Long, Patio> novosPatios = new HashMap<>();
+        patioRepository.findAll().forEach(p -> novosPatios.put(p.getId(), p));
+
+        Set<Long> novosFora = new HashSet<>();
+        Map<Long, LocalDateTime> novasUltimas = new HashMap<>();
+        movimentacaoJdbcRepository.percorrerUltimasEntradasSaidas(rs -> {
+            long motoId = rs.getLong("moto_id");
+            if (MovimentacaoService.SAIDA.equals(rs.getString("tipo_evento"))) {
+                novosFora.add(motoId);
+            }
+            Timestamp dtEvento = rs.getTimestamp("dt_evento");
+            if (dtEvento != null) {
+                novasUltimas.put(motoId, dtEvento.toLocalDateTime());
+            }
+        });
+
+        List<Object[]> linhas = motoRepository.listarPatioEStatus();
+
+        patios.clear();
+        patios.putAll(novosPatios);
+        motosFora.clear();
+        motosFora.addAll(novosFora);
+        ultimasEntradasSaidas.clear();
+        ultimasEntradasSaidas.putAll(novasUltimas);
+        motos.clear();
+        contagens.clear();
+        for (Object[] linha : linhas) {
+            EstadoMoto estado = new EstadoMoto((Long) linha[1], (String) linha[2]);
+            motos.put((Long) linha[0], estado);
+            aplicar(estado, (Long) linha[0], 1);
+        }
+
+        retratos.clear();
+        patios.keySet().forEach(id -> publicar(id, false));
+        inicializado = true;
+        log.info("Ocupação de {} pátios carregada ({} motos) em {} ms",
+                patios.size(), motos.size(), System.currentTimeMillis() - inicio);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMotoAlterada(MotoAlteradaEvent event) {
+        if (!inicializado) {
+            // A carga inicial já vai refletir a alteração
+            aoIniciar();
+            return;
+        }
+        Long motoId = event.getMotoId();
+        EstadoMoto novo = null;
+        if (event.getTipo() != MotoAlteradaEvent.Tipo.REMOVIDA) {
+            // Consulta direta (não o cache do catálogo), que pode ainda não ter sido invalidado
+            List<Object[]> linhas = motoRepository.buscarPatioEStatus(motoId);
+            if (!linhas.isEmpty()) {
+                novo = new EstadoMoto((Long) linhas.get(0)[0], (String) linhas.get(0)[1]);
+                if (novo.patioId != null && !conhecePatio(novo.patioId)) {
+                    catalogo.buscarPatio(novo.patioId).ifPresent(this::registrarPatio);
+                }
+            }
+        }
+        atualizarMoto(motoId, novo);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovimentacoesRegistradas(MovimentacoesRegistradasEvent event) {
+        if (!inicializado) {
+            aoIniciar();
+            return;
+        }
+        synchronized (this) {
+            Set<Long> afetados = new HashSet<>();
+            int ignoradas = 0;
+            // A última movimentação de cada moto no lote é a que vale
+            List<MovimentacaoDTO> ordenadas = new ArrayList<>(event.getMovimentacoes());
+            ordenadas.sort(Comparator.comparing(MovimentacaoDTO::getDtEvento,
+                    Comparator.nullsLast(Comparator.naturalOrder())));
+            for (MovimentacaoDTO mov : ordenadas) {
+                boolean saida = MovimentacaoService.SAIDA.equals(mov.getTipoEvento());
+                if (!saida && !MovimentacaoService.ENTRADA.equals(mov.getTipoEvento())) {
+                    continue;
+                }
+                if (mov.getDtEvento() != null) {
+                    LocalDateTime ultima = ultimasEntradasSaidas.get(mov.getMotoId());
+                    if (ultima != null && mov.getDtEvento().isBefore(ultima)) {
+                        // Registro retroativo: a entrada/saída mais recente continua valendo
+                        ignoradas++;
+                        continue;
+                    }
+                    ultimasEntradasSaidas.put(mov.getMotoId(), mov.getDtEvento());
+                }
+                EstadoMoto estado = motos.get(mov.getMotoId());
+                if (estado != null) {
+                    aplicar(estado, mov.getMotoId(), -1);
+                }
+                if (saida) {
+                    motosFora.add(mov.getMotoId());
+                } else {
+                    motosFora.remove(mov.getMotoId());
+                }
+                if (estado != null) {
+                    aplicar(estado, mov.getMotoId(), 1);
+                    if (estado.patioId != null) {
+                        afetados.add(estado.patioId);
+                    }
+                }
+            }
+            afetados.forEach(id -> publicar(id, true));
+            if (ignoradas > 0) {
+                log.debug("{} entradas/saídas anteriores à última de suas motos ignoradas na ocupação", ignoradas);
+            }
+        }
+    }
+
+    private synchronized boolean conhecePatio(Long patioId) {
+        return patios.containsKey(patioId);
+    }
+
+    private synchronized void registrarPatio(Patio patio) {
+        patios.putIfAbsent(patio.getId(), patio);
+    }
+
+    private synchronized void atualizarMoto(Long motoId, EstadoMoto novo) {
+        EstadoMoto anterior = novo != null ? motos.put(motoId, novo) : motos.remove(motoId);
+        if (anterior != null) {
+            aplicar(anterior, motoId, -1);
+        }
+        if (novo != null) {
+            aplicar(novo, motoId, 1);
+        } else {
+            motosFora.remove(motoId);
+            ultimasEntradasSaidas.remove(motoId);
+        }
+        if (anterior != null && anterior.patioId != null) {
+            publicar(anterior.patioId, true);
+        }
+        if (novo != null && novo.patioId != null && (anterior == null || !novo.patioId.equals(anterior.patioId))) {
+            publicar(novo.patioId, true);
+        }
+    }
+
+    /**
+     * Soma (sinal 1) ou subtrai (sinal -1) a moto dos contadores do seu pátio
+     */
+    private void aplicar(EstadoMoto estado, Long motoId, int sinal) {
+        if (estado.patioId == null) {
+            return;
+        }
+        Contagem c = contagens.computeIfAbsent(estado.patioId, id -> new Contagem());
+        String status = estado.status != null ? estado.status : "SEM_STATUS";
+        c.porStatus.merge(status, sinal, Integer::sum);
+        if (c.porStatus.get(status) <= 0) {
+            c.porStatus.remove(status);
+        }
+        if (STATUS_ATIVOS.contains(status)) {
+            c.ativas += sinal;
+            if (!motosFora.contains(motoId)) {
+                c.presentes += sinal;
+            }
+        }
+    }
+
+    /**
+     * Gera o retrato do pátio a partir dos contadores e registra alerta se o nível mudou
+     */
+    private void publicar(Long patioId, boolean alertar) {
+        Patio patio = patios.get(patioId);
+        Contagem c = contagens.getOrDefault(patioId, new Contagem());
+        int capacidade = patio != null && patio.getCapacidade() != null ? patio.getCapacidade() : 0;
+        double percentual = capacidade > 0
+                ? Math.round(c.presentes * 10000.0 / capacidade) / 100.0
+                : (c.presentes > 0 ? 100.0 : 0.0);
+        String nivel = percentual >= lotadoPercentual ? LOTADO : percentual >= alertaPercentual ? ALERTA : NORMAL;
+        String nome = patio != null ? patio.getNome() : null;
+
+        OcupacaoPatioDTO anterior = retratos.put(patioId, new OcupacaoPatioDTO(patioId, nome, capacidade,
+                c.ativas, c.presentes, percentual, nivel, Map.copyOf(c.porStatus), LocalDateTime.now()));
+
+        String nivelAnterior = anterior != null ? anterior.getNivel() : NORMAL;
+        if (alertar && !nivel.equals(nivelAnterior)) {
+            AlertaOcupacaoDTO alerta = new AlertaOcupacaoDTO(patioId, nome, nivelAnterior, nivel, percentual, LocalDateTime.now());
+            if (alertas.size() >= maxAlertas) {
+                alertas.removeFirst();
+            }
+            alertas.addLast(alerta);
+            if (NORMAL.equals(nivel)) {
+                log.info("Pátio {} ({}) voltou ao nível NORMAL: {}% ocupado", patioId, nome, percentual);
+            } else {
+                log.warn("Pátio {} ({}) passou de {} para {}: {}% ocupado", patioId, nome, nivelAnterior, nivel, percentual);
+            }
+        }
+    }
+
+    /**
+     * Ocupação atual de todos os pátios conhecidos, ordenada por ID
+     */
+    public List<OcupacaoPatioDTO> listarOcupacao() {
+        garantirInicializado();
+        return retratos.values().stream()
+                .sorted(Comparator.comparing(OcupacaoPatioDTO::getPatioId))
+                .toList();
+    }
+
+    public Optional<OcupacaoPatioDTO> buscarOcupacao(Long patioId) {
+        garantirInicializado();
+        return Optional.ofNullable(retratos.get(patioId));
+    }
+
+    /**
+     * Alertas de mudança de nível mais recentes primeiro
+     */
+    public synchronized List<AlertaOcupacaoDTO> listarAlertas() {
+        List<AlertaOcupacaoDTO> lista = new ArrayList<>(alertas);
+        Collections.reverse(lista);
+        return lista;
+    }
+
+    /**
+     * Tamanho do estado em memória
+     */
+    public synchronized Map<String, Number> getMetricas() {
+        Map<String, Number> metricas = new LinkedHashMap<>();
+        metricas.put("patios", retratos.size());
+        metricas.put("motos", motos.size());
+        metricas.put("motosFora", motosFora.size());
+        metricas.put("alertas", alertas.size());
+        return metricas;
+    }
+
+    private static final class EstadoMoto {
+        private final Long patioId;
+        private final String status;
+
+        private EstadoMoto(Long patioId, String status) {
+            this.patioId = patioId;
+            this.status = status;
+        }
+    }
+
+    private static final class Contagem {
+        private final Map<String, Integer> porStatus = new HashMap<>();
+        private int ativas;
+        private int presentes;
+    }
+}
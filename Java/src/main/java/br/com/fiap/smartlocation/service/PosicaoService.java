@@ -0,0 +1,125 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.IngestaoResultadoDTO;
+import br.com.fiap.smartlocation.dto.PosicaoDTO;
+import br.com.fiap.smartlocation.event.PosicoesRegistradasEvent;
+import br.com.fiap.smartlocation.model.Posicao;
+import br.com.fiap.smartlocation.repository.MotoRepository;
+import br.com.fiap.smartlocation.repository.PosicaoJdbcRepository;
+import br.com.fiap.smartlocation.repository.PosicaoRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Registro de posições (latitude/longitude) das motos
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class PosicaoService {
+
+    private static final int LIMITE_LISTA_IN = 1000;
+
+    private final PosicaoRepository posicaoRepository;
+    private final MotoRepository motoRepository;
+    private final PosicaoJdbcRepository posicaoJdbcRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${posicoes.ingestao.tamanho-lote:1000}")
+    private int tamanhoLoteIngestao;
+
+    @Transactional
+    public PosicaoDTO registrar(PosicaoDTO posicao) {
+        return registrarVarias(List.of(posicao)).get(0);
+    }
+
+    /**
+     * Registra as posições numa transação; motoId inexistente recusa o lote inteiro
+     * com IllegalArgumentException (antes do INSERT, em vez de uma violação de FK no commit)
+     */
+    @Transactional
+    public List<PosicaoDTO> registrarVarias(List<PosicaoDTO> posicoes) {
+        log.info("Registrando {} posições", posicoes.size());
+        for (PosicaoDTO dto : posicoes) {
+            if (dto.getMotoId() == null || dto.getLatitude() == null || dto.getLongitude() == null) {
+                throw new IllegalArgumentException("Posição exige motoId, latitude e longitude");
+            }
+        }
+        validarMotos(posicoes);
+
+        List<Posicao> entidades = posicoes.stream()
+                .map(dto -> {
+                    Posicao p = new Posicao();
+                    p.setMoto(motoRepository.getReferenceById(dto.getMotoId()));
+                    p.setLatitude(dto.getLatitude());
+                    p.setLongitude(dto.getLongitude());
+                    p.setDtPosicao(dto.getDtPosicao() != null ? dto.getDtPosicao() : LocalDateTime.now());
+                    return p;
+                })
+                .toList();
+
+        List<PosicaoDTO> salvas = posicaoRepository.saveAll(entidades).stream()
+                .map(p -> new PosicaoDTO(p.getMoto().getId(), p.getLatitude(), p.getLongitude(), p.getDtPosicao()))
+                .toList();
+        eventPublisher.publishEvent(new PosicoesRegistradasEvent(salvas));
+        return salvas;
+    }
+
+    private void validarMotos(List<PosicaoDTO> posicoes) {
+        List<Long> ids = posicoes.stream().map(PosicaoDTO::getMotoId).distinct().toList();
+        Set<Long> existentes = new HashSet<>();
+        for (int i = 0; i < ids.size(); i += LIMITE_LISTA_IN) {
+            existentes.addAll(motoRepository.buscarIdsExistentes(ids.subList(i, Math.min(i + LIMITE_LISTA_IN, ids.size()))));
+        }
+        List<Long> inexistentes = ids.stream().filter(id -> !existentes.contains(id)).limit(10).toList();
+        if (!inexistentes.isEmpty()) {
+            throw new IllegalArgumentException("Motos inexistentes: " + inexistentes);
+        }
+    }
+
+    /**
+     * Acrescenta posições ao histórico em batches JDBC (sem uma entidade por linha).
+     * Posições de motos inexistentes são ignoradas em vez de desfazer o lote.
+     */
+    @Transactional
+    public IngestaoResultadoDTO ingerirEmLote(List<PosicaoDTO> posicoes) {
+        long inicio = System.nanoTime();
+        LocalDateTime agora = LocalDateTime.now();
+        for (PosicaoDTO p : posicoes) {
+            if (p.getMotoId() == null || p.getLatitude() == null || p.getLongitude() == null) {
+                throw new IllegalArgumentException("Posição exige motoId, latitude e longitude");
+            }
+            if (p.getDtPosicao() == null) {
+                p.setDtPosicao(agora);
+            }
+        }
+
+        int[] linhas = posicoes.isEmpty() ? new int[0] : posicaoJdbcRepository.inserirEmLote(posicoes, tamanhoLoteIngestao);
+        List<PosicaoDTO> inseridas = new ArrayList<>(posicoes.size());
+        for (int i = 0; i < linhas.length; i++) {
+            if (linhas[i] > 0) {
+                inseridas.add(posicoes.get(i));
+            }
+        }
+        if (!inseridas.isEmpty()) {
+            eventPublisher.publishEvent(new PosicoesRegistradasEvent(inseridas));
+        }
+
+        long duracaoNanos = System.nanoTime() - inicio;
+        double linhasPorSegundo = duracaoNanos > 0 ? inseridas.size() * 1_000_000_000d / duracaoNanos : 0;
+        log.info("Ingestão em lote: {} posições em {} ms ({} ignoradas)",
+                inseridas.size(), duracaoNanos / 1_000_000, posicoes.size() - inseridas.size());
+
+        return new IngestaoResultadoDTO(posicoes.size(), inseridas.size(), duracaoNanos / 1_000_000, linhasPorSegundo);
+    }
+}
@@ -2,7 +2,10 @@ package br.com.fiap.smartlocation.service;
 
 import br.com.fiap.smartlocation.dto.AnaliseResultadoDTO;
 import br.com.fiap.smartlocation.dto.DeteccaoDTO;
+import br.com.fiap.smartlocation.dto.WorkerRespostaDTO;
 import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -11,12 +14,16 @@ import org.springframework.stereotype.Service;
 
 import java.io.*;
 import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.function.Consumer;
 
 /**
  * Serviço responsável por executar o notebook Python e processar os resultados
@@ -35,47 +42,145 @@ public class PythonIntegrationService {
     @Value("${python.output.path:../visao_computacional/output}")
     private String outputPath;
 
+    @Value("${python.worker.enabled:true}")
+    private boolean workerHabilitado;
+
     private final DeteccaoMotoService deteccaoService;
+    private final AnaliseTrechosService analiseTrechos;
+    private final DeteccaoStreamService deteccaoStream;
     private final ObjectMapper objectMapper;
+    private final ArtefatosResultadoService artefatosResultado;
+
+    @Value("${analise.jobs.reter-resultados:5}")
+    private int reterResultados;
 
     private Process processoAtual;
-    private boolean analiseEmExecucao = false;
+    private volatile String jobNotebookAtual;
+    private final Object notebookLock = new Object();
+
+    // Jobs com saída em andamento em runs/jobs (não podem ser removidos na limpeza)
+    private final Set<String> jobsAtivos = ConcurrentHashMap.newKeySet();
+    // Diretório (contendo track/ e analise_detalhada/) do último job concluído com sucesso
+    private volatile Path ultimoDiretorioResultados;
 
     /**
-     * Executa a análise do notebook Python de forma assíncrona
+     * Executa um job de análise de forma síncrona (chamado pelo AnaliseJobService).
+     * Com o worker habilitado, cada job grava em runs/jobs/{jobId} e vários podem rodar em paralelo;
+     * no modo notebook as execuções são serializadas, pois o notebook grava sempre em runs/.
      */
-    public CompletableFuture<AnaliseResultadoDTO> executarAnalise() {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                if (analiseEmExecucao) {
-                    throw new RuntimeException("Já existe uma análise em execução");
-                }
+    public AnaliseResultadoDTO executarJob(String jobId, Path video) {
+        try {
+            log.info("Iniciando análise Python (job {})...", jobId);
 
-                analiseEmExecucao = true;
-                log.info("Iniciando análise Python...");
+            AnaliseResultadoDTO resultado;
+            if (workerHabilitado) {
+                resultado = executarNoWorker(jobId, video);
+            } else {
+                synchronized (notebookLock) {
+                    jobNotebookAtual = jobId;
+                    try {
+                        // Limpar arquivos temporários antes de iniciar
+                        limparArquivosTemporarios();
+
+                        // Executar o notebook diretamente
+                        resultado = executarNotebook();
+                    } finally {
+                        jobNotebookAtual = null;
+                    }
+                }
+            }
 
-                // Limpar arquivos temporários antes de iniciar
-                limparArquivosTemporarios();
+            log.info("Análise concluída com sucesso (job {})", jobId);
+            deteccaoStream.finalizar(jobId, resultado.getStatus());
+            return resultado;
 
-                // Executar o notebook diretamente
-                AnaliseResultadoDTO resultado = executarNotebook();
+        } catch (Exception e) {
+            log.error("Erro ao executar análise Python (job {})", jobId, e);
+
+            AnaliseResultadoDTO erro = new AnaliseResultadoDTO();
+            erro.setStatus("ERRO");
+            erro.setMensagem("Erro ao executar análise: " + e.getMessage());
+            erro.setDataAnalise(LocalDateTime.now());
+            deteccaoStream.finalizar(jobId, erro.getStatus());
+            return erro;
+        }
+    }
 
-                log.info("Análise concluída com sucesso");
-                analiseEmExecucao = false;
+    /**
+     * Executa a análise num worker Python residente, sem subir um kernel Jupyter a cada execução
+     */
+    private AnaliseResultadoDTO executarNoWorker(String jobId, Path video) throws IOException, InterruptedException {
+        Path jobDir = diretorioJobs().resolve(jobId);
+        jobsAtivos.add(jobId);
+        try {
+            Files.createDirectories(jobDir.resolve("track"));
+            Files.createDirectories(jobDir.resolve("analise_detalhada"));
+            // O worker acrescenta as detecções em track/deteccoes.ndjson a cada frame
+            // (na análise em trechos o stream passa a seguir os arquivos de cada trecho)
+            deteccaoStream.iniciar(jobId, jobDir.resolve("track").resolve("deteccoes.ndjson"));
+
+            // Vídeos longos são divididos em trechos analisados em paralelo por vários workers
+            WorkerRespostaDTO resposta = analiseTrechos.executar(
+                    jobId, video, jobDir.resolve("track"), jobDir.resolve("analise_detalhada"));
+
+            if (!"SUCESSO".equals(resposta.getStatus())) {
+                throw new RuntimeException("Worker de detecção finalizou com erro: " + resposta.getMensagem());
+            }
 
-                return resultado;
+            AnaliseResultadoDTO resultado = processarResultados(jobDir);
+            ultimoDiretorioResultados = jobDir;
+            return resultado;
+        } finally {
+            jobsAtivos.remove(jobId);
+            removerResultadosAntigos();
+        }
+    }
 
-            } catch (Exception e) {
-                log.error("Erro ao executar análise Python", e);
-                analiseEmExecucao = false;
-                
-                AnaliseResultadoDTO erro = new AnaliseResultadoDTO();
-                erro.setStatus("ERRO");
-                erro.setMensagem("Erro ao executar análise: " + e.getMessage());
-                erro.setDataAnalise(LocalDateTime.now());
-                return erro;
+    /**
+     * Resolve o vídeo a analisar dentro da pasta 'video'. Sem nome, usa o primeiro vídeo
+     * (ordem alfabética), mesmo critério usado pelo notebook.
+     */
+    public Path resolverVideo(String nome) throws IOException {
+        Path videoDir = Paths.get(notebookPath).getParent().toAbsolutePath().resolve("video");
+        if (nome == null || nome.isBlank()) {
+            Path primeiro = localizarVideo(videoDir);
+            if (primeiro == null) {
+                throw new FileNotFoundException("Não encontrei vídeo na pasta 'video': " + videoDir);
             }
-        });
+            return primeiro;
+        }
+        Path video = videoDir.resolve(nome).normalize();
+        if (!video.startsWith(videoDir) || !Files.isRegularFile(video)) {
+            throw new FileNotFoundException("Vídeo não encontrado na pasta 'video': " + nome);
+        }
+        return video;
+    }
+
+    private Path localizarVideo(Path videoDir) throws IOException {
+        if (!Files.isDirectory(videoDir)) {
+            return null;
+        }
+        PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:*.{mp4,mov,mkv,avi,webm,MP4,MOV,MKV,AVI,WEBM}");
+        try (var arquivos = Files.list(videoDir)) {
+            return arquivos
+                    .filter(Files::isRegularFile)
+                    .filter(p -> matcher.matches(p.getFileName()))
+                    .sorted()
+                    .findFirst()
+                    .orElse(null);
+        }
+    }
+
+    /**
+     * Interrompe a execução do job informado (worker ou notebook)
+     */
+    public void cancelarJob(String jobId) {
+        if (workerHabilitado) {
+            analiseTrechos.cancelar(jobId);
+        } else if (jobId.equals(jobNotebookAtual) && processoAtual != null && processoAtual.isAlive()) {
+            log.warn("Cancelando análise em execução...");
+            processoAtual.destroy();
+        }
     }
 
     /**
@@ -134,67 +239,46 @@ public class PythonIntegrationService {
 
         log.info("Notebook executado com sucesso!");
 
-        // Processar resultados
-        return processarResultados();
+        // Processar resultados (o notebook grava em runs/ dentro do diretório do notebook)
+        Path runsDir = outputDir.resolve("runs");
+        AnaliseResultadoDTO resultado = processarResultados(runsDir);
+        ultimoDiretorioResultados = runsDir;
+        return resultado;
     }
 
     /**
-     * Processa os resultados da análise Python
+     * Processa os resultados da análise Python gravados em {@code baseDir}/track e {@code baseDir}/analise_detalhada
      */
-    private AnaliseResultadoDTO processarResultados() throws IOException {
+    private AnaliseResultadoDTO processarResultados(Path baseDir) throws IOException {
         log.info("Processando resultados da análise...");
 
         AnaliseResultadoDTO resultado = new AnaliseResultadoDTO();
         resultado.setStatus("SUCESSO");
         resultado.setDataAnalise(LocalDateTime.now());
 
-        // O notebook salva os resultados em runs/track dentro do diretório do notebook
-        Path notebookDir = Paths.get(notebookPath).getParent().toAbsolutePath();
-        Path outputDir = notebookDir.resolve("runs").resolve("track");
-        
-        if (!Files.exists(outputDir)) {
-            log.warn("Diretório de saída não encontrado: {}, tentando diretório alternativo", outputDir);
-            outputDir = Paths.get(outputPath).toAbsolutePath();
-            
-            if (!Files.exists(outputDir)) {
-                log.warn("Diretório alternativo também não existe, usando diretório do notebook");
-                outputDir = notebookDir;
-            }
-        }
-        
-        log.info("Procurando resultados em: {}", outputDir);
+        // Indexa os artefatos uma única vez; as páginas passam a consultá-los em memória
+        ArtefatosResultadoService.Artefatos artefatos = artefatosResultado.reindexar(baseDir);
+        log.info("Resultados indexados em: {}", baseDir);
 
-        // Buscar vídeo de saída
-        Path videoPath = buscarArquivo(outputDir, "*.mp4", "*.avi", "*.mov");
-        if (videoPath != null) {
-            resultado.setCaminhoVideo(videoPath.toString());
-            log.info("Vídeo encontrado: {}", videoPath);
+        if (artefatos.getVideo() != null) {
+            resultado.setCaminhoVideo(artefatos.getVideo().getCaminho().toString());
+            log.info("Vídeo encontrado: {}", artefatos.getVideo().getCaminho());
         }
 
-        // Buscar gráfico primeiro em runs/analise_detalhada, depois em outputDir
-        Path analiseDir = notebookDir.resolve("runs").resolve("analise_detalhada");
-        Path graficoPath = null;
-        if (Files.exists(analiseDir)) {
-            graficoPath = buscarArquivo(analiseDir, "*.png", "*.jpg", "grafico*.png");
-        }
-        if (graficoPath == null) {
-            graficoPath = buscarArquivo(outputDir, "*.png", "*.jpg", "grafico*.png");
-        }
-        if (graficoPath != null) {
-            resultado.setCaminhoGrafico(graficoPath.toString());
-            log.info("Gráfico encontrado: {}", graficoPath);
+        if (artefatos.getGrafico() != null) {
+            resultado.setCaminhoGrafico(artefatos.getGrafico().getCaminho().toString());
+            log.info("Gráfico encontrado: {}", artefatos.getGrafico().getCaminho());
         }
 
-        // Buscar arquivo JSON com detecções
-        Path jsonPath = buscarArquivo(outputDir, "deteccoes*.json", "resultado*.json");
-        if (jsonPath != null) {
+        if (artefatos.getJson() != null) {
+            Path jsonPath = artefatos.getJson().getCaminho();
             resultado.setCaminhoLog(jsonPath.toString());
             
-            // Ler e contar detecções
-            List<DeteccaoDTO> deteccoes = lerDeteccoesDoJSON(jsonPath);
-            resultado.setTotalDeteccoes(deteccoes.size());
+            // Contar detecções sem materializar os registros
+            long total = lerDeteccoesDoJSON(jsonPath, null);
+            resultado.setTotalDeteccoes((int) total);
             
-            log.info("Total de detecções encontradas: {}", deteccoes.size());
+            log.info("Total de detecções encontradas: {}", total);
         } else {
             resultado.setTotalDeteccoes(0);
         }
@@ -205,145 +289,123 @@ public class PythonIntegrationService {
     }
 
     /**
-     * Busca um arquivo no diretório que corresponda aos padrões fornecidos
+     * Percorre o arquivo JSON gerado pelo Python token a token, entregando um registro por vez
+     * ao consumidor. Com consumidor nulo os registros são apenas contados, sem desserialização.
      */
-    private Path buscarArquivo(Path diretorio, String... padroes) throws IOException {
-        if (!Files.exists(diretorio)) {
-            return null;
-        }
-
-        for (String padrao : padroes) {
-            PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + padrao);
-            
-            List<Path> arquivos = Files.walk(diretorio, 2)
-                .filter(Files::isRegularFile)
-                .filter(p -> matcher.matches(p.getFileName()))
-                .sorted((p1, p2) -> {
-                    try {
-                        return Files.getLastModifiedTime(p2).compareTo(Files.getLastModifiedTime(p1));
-                    } catch (IOException e) {
-                        return 0;
-                    }
-                })
-                .collect(Collectors.toList());
-
-            if (!arquivos.isEmpty()) {
-                return arquivos.get(0);
-            }
-        }
-
-        return null;
+    private long lerDeteccoesDoJSON(Path jsonPath, Consumer<DeteccaoDTO> consumidor) {
+        return lerDeteccoesDoJSON(jsonPath, consumidor, Long.MAX_VALUE);
     }
 
     /**
-     * Lê as detecções do arquivo JSON gerado pelo Python
+     * Como {@link #lerDeteccoesDoJSON(Path, Consumer)}, mas para de ler o arquivo após {@code maximo} registros
+     *
+     * @return quantidade de detecções lidas
      */
-    private List<DeteccaoDTO> lerDeteccoesDoJSON(Path jsonPath) {
-        try {
-            String conteudo = Files.readString(jsonPath);
-            
-            // Tentar parsear como array de DeteccaoDTO
-            DeteccaoDTO[] array = objectMapper.readValue(conteudo, DeteccaoDTO[].class);
-            return List.of(array);
-            
+    private long lerDeteccoesDoJSON(Path jsonPath, Consumer<DeteccaoDTO> consumidor, long maximo) {
+        long total = 0;
+        if (maximo <= 0) {
+            return 0;
+        }
+        try (JsonParser parser = objectMapper.getFactory().createParser(jsonPath.toFile())) {
+            JsonToken raiz = parser.nextToken();
+            if (raiz == JsonToken.START_OBJECT) {
+                // Arquivo com um único registro
+                if (consumidor != null) {
+                    consumidor.accept(objectMapper.readValue(parser, DeteccaoDTO.class));
+                }
+                return 1;
+            }
+            if (raiz != JsonToken.START_ARRAY) {
+                log.warn("Formato inesperado no JSON de detecções: {}", jsonPath);
+                return 0;
+            }
+            while (total < maximo && parser.nextToken() == JsonToken.START_OBJECT) {
+                if (consumidor != null) {
+                    consumidor.accept(objectMapper.readValue(parser, DeteccaoDTO.class));
+                } else {
+                    parser.skipChildren();
+                }
+                total++;
+            }
         } catch (Exception e) {
             log.error("Erro ao ler detecções do JSON", e);
-            return new ArrayList<>();
         }
+        return total;
     }
 
     /**
-     * Carrega as detecções do último resultado para exibição
+     * Carrega as primeiras {@code limite} detecções do último resultado para exibição;
+     * o restante do arquivo não é lido
      */
-    public List<DeteccaoDTO> carregarDeteccoesPendentes() throws IOException {
-        // Procurar primeiro em runs/track
-        Path notebookDir = Paths.get(notebookPath).getParent().toAbsolutePath();
-        Path outputDir = notebookDir.resolve("runs").resolve("track");
-        
-        if (!Files.exists(outputDir)) {
-            log.warn("Diretório runs/track não encontrado, tentando output");
-            outputDir = Paths.get(outputPath).toAbsolutePath();
-            
-            if (!Files.exists(outputDir)) {
-                log.warn("Diretório output não encontrado, usando diretório do notebook");
-                outputDir = notebookDir;
-            }
-        }
-
-        Path jsonPath = buscarArquivo(outputDir, "deteccoes*.json", "resultado*.json");
-        
+    public List<DeteccaoDTO> carregarDeteccoesPendentes(int limite) throws IOException {
+        List<DeteccaoDTO> deteccoes = new ArrayList<>();
+        Path jsonPath = localizarJsonPendente();
         if (jsonPath != null) {
-            return lerDeteccoesDoJSON(jsonPath);
+            lerDeteccoesDoJSON(jsonPath, deteccoes::add, limite);
         }
-
-        return new ArrayList<>();
+        return deteccoes;
     }
 
     /**
-     * Obtém o caminho relativo do vídeo gerado pela análise
+     * Entrega as detecções do último resultado uma a uma ao consumidor
+     *
+     * @return total de detecções no arquivo
      */
-    public String obterCaminhoVideoGerado() {
-        try {
-            Path notebookDir = Paths.get(notebookPath).getParent().toAbsolutePath();
-            Path outputDir = notebookDir.resolve("runs").resolve("track");
+    public long percorrerDeteccoesPendentes(Consumer<DeteccaoDTO> consumidor) throws IOException {
+        Path jsonPath = localizarJsonPendente();
+        return jsonPath != null ? lerDeteccoesDoJSON(jsonPath, consumidor) : 0;
+    }
 
-            // Tentar também diretório alternativo configurado (output)
-            if (!Files.exists(outputDir)) {
-                log.warn("Diretório runs/track não encontrado, tentando diretório alternativo de saída");
-                outputDir = Paths.get(outputPath).toAbsolutePath();
-            }
-            
-            Path videoPath = buscarArquivo(outputDir, "*.mp4", "*.avi", "*.mov");
-            
-            if (videoPath != null) {
-                // Retornar caminho relativo a partir de visao_computacional
-                Path relative = notebookDir.relativize(videoPath);
-                return relative.toString().replace("\\", "/");
+    /**
+     * Entrega as detecções do último resultado em lotes de até {@code tamanhoLote},
+     * mantendo em memória apenas um lote por vez
+     *
+     * @return total de detecções no arquivo
+     */
+    public long lerDeteccoesPendentesEmLotes(int tamanhoLote, Consumer<List<DeteccaoDTO>> consumidor) throws IOException {
+        List<DeteccaoDTO> lote = new ArrayList<>(tamanhoLote);
+        long total = percorrerDeteccoesPendentes(d -> {
+            lote.add(d);
+            if (lote.size() >= tamanhoLote) {
+                consumidor.accept(List.copyOf(lote));
+                lote.clear();
             }
-            
-            return null;
-            
-        } catch (Exception e) {
-            log.error("Erro ao buscar vídeo gerado", e);
-            return null;
+        });
+        if (!lote.isEmpty()) {
+            consumidor.accept(List.copyOf(lote));
         }
+        return total;
+    }
+
+    private Path localizarJsonPendente() {
+        ArtefatosResultadoService.Artefato json = artefatosResultado.obter(diretorioResultados()).getJson();
+        return json != null ? json.getCaminho() : null;
+    }
+
+    /**
+     * Obtém a URL de streaming (com suporte a Range/ETag) do vídeo gerado pela análise
+     */
+    public String obterUrlVideoGerado() {
+        ArtefatosResultadoService.Artefatos artefatos = artefatosResultado.obter(diretorioResultados());
+        return artefatos.getVideo() != null ? "/resultados/" + artefatos.getExecucao() + "/video" : null;
     }
 
     /**
      * Obtém o caminho relativo do gráfico (imagem) gerado pela análise
      */
     public String obterCaminhoGraficoGerado() {
-        try {
-            Path notebookDir = Paths.get(notebookPath).getParent().toAbsolutePath();
-            // Priorizar runs/analise_detalhada
-            Path analiseDir = notebookDir.resolve("runs").resolve("analise_detalhada");
-            Path outputDir = notebookDir.resolve("runs").resolve("track");
-
-            Path graficoPath = null;
-            if (Files.exists(analiseDir)) {
-                graficoPath = buscarArquivo(analiseDir, "*.png", "*.jpg", "grafico*.png");
-            }
-            if (graficoPath == null) {
-                if (!Files.exists(outputDir)) {
-                    log.warn("Diretório runs/track não encontrado, tentando diretório alternativo de saída");
-                    outputDir = Paths.get(outputPath).toAbsolutePath();
-                    if (!Files.exists(outputDir)) {
-                        outputDir = notebookDir;
-                    }
-                }
-                graficoPath = buscarArquivo(outputDir, "*.png", "*.jpg", "grafico*.png");
-            }
-
-            if (graficoPath != null) {
-                Path relative = notebookDir.relativize(graficoPath);
-                return relative.toString().replace("\\", "/");
-            }
+        return caminhoRelativo(artefatosResultado.obter(diretorioResultados()).getGrafico());
+    }
 
-            return null;
-        } catch (Exception e) {
-            log.error("Erro ao buscar gráfico gerado", e);
+    /**
+     * Caminho relativo a partir de visao_computacional, como servido em /videos/**
+     */
+    private String caminhoRelativo(ArtefatosResultadoService.Artefato artefato) {
+        if (artefato == null) {
             return null;
         }
+        Path notebookDir = Paths.get(notebookPath).getParent().toAbsolutePath();
+        return notebookDir.relativize(artefato.getCaminho()).toString().replace("\\", "/");
     }
 
     /**
@@ -355,31 +417,10 @@ public class PythonIntegrationService {
         Path notebookDir = Paths.get(notebookPath).getParent().toAbsolutePath();
 
         // 1. Limpar pasta runs inteira (inclui runs/track e subpastas)
-        Path runsDir = notebookDir.resolve("runs");
-        if (Files.exists(runsDir)) {
-            log.info("Removendo pasta runs: {}", runsDir);
-            deletarDiretorioRecursivo(runsDir);
-        }
-        // Recriar estrutura esperada para saídas
-        try {
-            Files.createDirectories(runsDir.resolve("track"));
-            Files.createDirectories(runsDir.resolve("analise_detalhada"));
-            log.info("Recriada estrutura de saídas: {}/track e {}/analise_detalhada", runsDir, runsDir);
-        } catch (IOException e) {
-            log.warn("Não foi possível recriar diretórios de saída em {}: {}", runsDir, e.getMessage());
-        }
-        
-        // 2. Remover arquivo yolov8m.pt (modelo baixado)
-        Path modelPath = notebookDir.resolve("yolov8m.pt");
-        if (Files.exists(modelPath)) {
-            try {
-                Files.delete(modelPath);
-                log.info("Modelo YOLOv8 removido: {}", modelPath);
-            } catch (IOException e) {
-                log.warn("Não foi possível remover modelo: {}", modelPath, e);
-            }
-        }
-        
+        limparDiretorioRuns();
+
+        // 2. Os pesos do modelo (yolov8m.pt) são mantidos para não serem baixados novamente
+
         // 3. Remover CSV de detecções
         Path csvPath = notebookDir.resolve("deteccoes_motos_completo.csv");
         if (Files.exists(csvPath)) {
@@ -418,6 +459,93 @@ public class PythonIntegrationService {
         log.info("Limpeza de arquivos temporários concluída!");
     }
     
+    /**
+     * Limpa runs/track e runs/analise_detalhada (saídas do notebook) e recria a estrutura.
+     * A pasta runs/jobs, usada pelos workers, é preservada.
+     */
+    private void limparDiretorioRuns() throws IOException {
+        Path runsDir = Paths.get(notebookPath).getParent().toAbsolutePath().resolve("runs");
+        for (String sub : List.of("track", "analise_detalhada")) {
+            Path dir = runsDir.resolve(sub);
+            if (Files.exists(dir)) {
+                log.info("Removendo pasta: {}", dir);
+                deletarDiretorioRecursivo(dir);
+            }
+        }
+        try {
+            Files.createDirectories(runsDir.resolve("track"));
+            Files.createDirectories(runsDir.resolve("analise_detalhada"));
+            artefatosResultado.invalidar(runsDir);
+            log.info("Recriada estrutura de saídas: {}/track e {}/analise_detalhada", runsDir, runsDir);
+        } catch (IOException e) {
+            log.warn("Não foi possível recriar diretórios de saída em {}: {}", runsDir, e.getMessage());
+        }
+    }
+
+    private Path diretorioJobs() {
+        return Paths.get(notebookPath).getParent().toAbsolutePath().resolve("runs").resolve("jobs");
+    }
+
+    /**
+     * Diretório com as saídas mais recentes: o do último job concluído ou, após reiniciar a aplicação,
+     * o job mais recente em runs/jobs; na falta deles, a pasta runs do notebook.
+     */
+    private Path diretorioResultados() {
+        Path ultimo = ultimoDiretorioResultados;
+        if (ultimo != null) {
+            return ultimo;
+        }
+        Path jobsDir = diretorioJobs();
+        if (Files.isDirectory(jobsDir)) {
+            try (var dirs = Files.list(jobsDir)) {
+                Optional<Path> maisRecente = dirs
+                        .filter(Files::isDirectory)
+                        .filter(d -> !jobsAtivos.contains(d.getFileName().toString()))
+                        .max(Comparator.comparing(this::ultimaModificacao));
+                if (maisRecente.isPresent()) {
+                    ultimoDiretorioResultados = maisRecente.get();
+                    return maisRecente.get();
+                }
+            } catch (IOException e) {
+                log.warn("Não foi possível listar {}: {}", jobsDir, e.getMessage());
+            }
+        }
+        return Paths.get(notebookPath).getParent().toAbsolutePath().resolve("runs");
+    }
+
+    /**
+     * Mantém apenas os {@code reterResultados} diretórios de jobs mais recentes
+     */
+    private void removerResultadosAntigos() {
+        Path jobsDir = diretorioJobs();
+        if (!Files.isDirectory(jobsDir)) {
+            return;
+        }
+        try (var dirs = Files.list(jobsDir)) {
+            List<Path> antigos = dirs
+                    .filter(Files::isDirectory)
+                    .filter(d -> !jobsAtivos.contains(d.getFileName().toString()))
+                    .filter(d -> !d.equals(ultimoDiretorioResultados))
+                    .sorted(Comparator.comparing(this::ultimaModificacao).reversed())
+                    .skip(Math.max(0, reterResultados - 1))
+                    .toList();
+            for (Path dir : antigos) {
+                deletarDiretorioRecursivo(dir);
+                artefatosResultado.invalidar(dir);
+            }
+        } catch (IOException e) {
+            log.warn("Não foi possível remover resultados antigos em {}: {}", jobsDir, e.getMessage());
+        }
+    }
+
+    private FileTime ultimaModificacao(Path p) {
+        try {
+            return Files.getLastModifiedTime(p);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+
     /**
      * Deleta um diretório e todo seu conteúdo recursivamente
      */
@@ -437,22 +565,4 @@ public class PythonIntegrationService {
                 }
             });
     }
-
-    /**
-     * Verifica se há uma análise em execução
-     */
-    public boolean isAnaliseEmExecucao() {
-        return analiseEmExecucao;
-    }
-
-    /**
-     * Cancela a análise em execução
-     */
-    public void cancelarAnalise() {
-        if (processoAtual != null && processoAtual.isAlive()) {
-            log.warn("Cancelando análise em execução...");
-            processoAtual.destroy();
-            analiseEmExecucao = false;
-        }
-    }
 }
@@ -0,0 +1,200 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.EventoTrackDTO;
+import br.com.fiap.smartlocation.dto.TrackDTO;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Rastreador multiobjeto por centroide: associa as detecções de cada quadro às trilhas existentes
+ * com um casamento guloso pela menor distância (com velocidade constante como previsão)
+ * e envelhece as trilhas que deixam de ser vistas.
+ * Uma trilha só é confirmada (evento ENTRADA) após {@code quadrosConfirmacao} associações
+ * e é encerrada (evento SAIDA) após {@code quadrosAusenciaMax} quadros sem detecção.
+ * Com {@code maxEncerradas} > 0 só as últimas trilhas encerradas são mantidas (fluxos sem fim definido).
+ * Não é thread-safe: cada fluxo de detecções usa sua própria instância.
+ */
+class RastreadorMotos {
+
+    private final double distanciaMax;
+    private final int quadrosAusenciaMax;
+    private final int quadrosConfirmacao;
+    private final int maxEncerradas;
+
+    private final List<Trilha> ativas = new ArrayList<>();
+    private final Deque<Trilha> encerradas = new ArrayDeque<>();
+    private long proximoId = 1;
+
+    RastreadorMotos(double distanciaMax, int quadrosAusenciaMax, int quadrosConfirmacao) {
+        this(distanciaMax, quadrosAusenciaMax, quadrosConfirmacao, 0);
+    }
+
+    RastreadorMotos(double distanciaMax, int quadrosAusenciaMax, int quadrosConfirmacao, int maxEncerradas) {
+        this.distanciaMax = distanciaMax;
+        this.quadrosAusenciaMax = quadrosAusenciaMax;
+        this.quadrosConfirmacao = quadrosConfirmacao;
+        this.maxEncerradas = maxEncerradas;
+    }
+
+    /**
+     * Processa as detecções (centros x/y e confiança) de um quadro
+     *
+     * @return eventos de entrada/saída gerados neste quadro
+     */
+    List<EventoTrackDTO> atualizar(long quadro, double[] xs, double[] ys, double[] confs) {
+        List<EventoTrackDTO> eventos = new ArrayList<>();
+
+        int t = ativas.size();
+        int d = xs.length;
+        if (t > 0xffff || d > 0xffff) {
+            throw new IllegalArgumentException("Quantidade de trilhas ou detecções acima do suportado por quadro");
+        }
+
+        // Candidatos (trilha, detecção) dentro do limite, codificados como distância | trilha | detecção
+        long[] candidatos = new long[(int) Math.min(Math.max(16L, (long) t * d), 1 << 20)];
+        int total = 0;
+        double limite2 = distanciaMax * distanciaMax;
+        for (int i = 0; i < t; i++) {
+            Trilha trilha = ativas.get(i);
+            // Posição prevista para este quadro (velocidade constante desde a última associação)
+            long passo = Math.max(1, quadro - trilha.ultimoQuadro);
+            double px = trilha.x + trilha.vx * passo;
+            double py = trilha.y + trilha.vy * passo;
+            for (int j = 0; j < d; j++) {
+                double dx = xs[j] - px;
+                double dy = ys[j] - py;
+                double dist2 = dx * dx + dy * dy;
+                if (dist2 <= limite2) {
+                    if (total == candidatos.length) {
+                        candidatos = Arrays.copyOf(candidatos, candidatos.length * 2);
+                    }
+                    // Para floats não negativos a ordem dos bits é a ordem numérica
+                    candidatos[total++] = ((long) Float.floatToIntBits((float) dist2) << 32) | ((long) i << 16) | j;
+                }
+            }
+        }
+        Arrays.sort(candidatos, 0, total);
+
+        boolean[] trilhaUsada = new boolean[t];
+        boolean[] deteccaoUsada = new boolean[d];
+        for (int k = 0; k < total; k++) {
+            int i = (int) ((candidatos[k] >>> 16) & 0xffff);
+            int j = (int) (candidatos[k] & 0xffff);
+            if (trilhaUsada[i] || deteccaoUsada[j]) {
+                continue;
+            }
+            trilhaUsada[i] = true;
+            deteccaoUsada[j] = true;
+            Trilha trilha = ativas.get(i);
+            trilha.associar(quadro, xs[j], ys[j], confs[j]);
+            if (!trilha.confirmada && trilha.associacoes >= quadrosConfirmacao) {
+                trilha.confirmada = true;
+                eventos.add(evento("ENTRADA", trilha, trilha.primeiroQuadro));
+            }
+        }
+
+        // Detecções sem trilha iniciam trilhas tentativas
+        for (int j = 0; j < d; j++) {
+            if (!deteccaoUsada[j]) {
+                Trilha nova = new Trilha(proximoId++, quadro, xs[j], ys[j], confs[j]);
+                ativas.add(nova);
+                if (quadrosConfirmacao <= 1) {
+                    nova.confirmada = true;
+                    eventos.add(evento("ENTRADA", nova, quadro));
+                }
+            }
+        }
+
+        // Envelhecimento: trilhas não vistas há mais de quadrosAusenciaMax quadros são encerradas
+        ativas.removeIf(trilha -> {
+            if (quadro - trilha.ultimoQuadro <= quadrosAusenciaMax) {
+                return false;
+            }
+            encerrar(trilha, eventos);
+            return true;
+        });
+        return eventos;
+    }
+
+    /**
+     * Encerra todas as trilhas ativas (fim do fluxo)
+     */
+    List<EventoTrackDTO> finalizar() {
+        List<EventoTrackDTO> eventos = new ArrayList<>();
+        ativas.forEach(trilha -> encerrar(trilha, eventos));
+        ativas.clear();
+        return eventos;
+    }
+
+    /**
+     * Trilhas confirmadas, ativas e encerradas
+     */
+    List<TrackDTO> listar() {
+        List<TrackDTO> tracks = new ArrayList<>();
+        encerradas.forEach(trilha -> tracks.add(trilha.paraDTO(false)));
+        ativas.stream().filter(trilha -> trilha.confirmada).forEach(trilha -> tracks.add(trilha.paraDTO(true)));
+        return tracks;
+    }
+
+    private void encerrar(Trilha trilha, List<EventoTrackDTO> eventos) {
+        // Trilhas tentativas (ruído) são descartadas sem evento
+        if (trilha.confirmada) {
+            encerradas.addLast(trilha);
+            if (maxEncerradas > 0 && encerradas.size() > maxEncerradas) {
+                encerradas.removeFirst();
+            }
+            eventos.add(evento("SAIDA", trilha, trilha.ultimoQuadro));
+        }
+    }
+
+    private EventoTrackDTO evento(String tipo, Trilha trilha, long quadro) {
+        return new EventoTrackDTO(tipo, trilha.placaVirtual(), quadro, trilha.x, trilha.y);
+    }
+
+    private static final class Trilha {
+        private static final double SUAVIZACAO_VELOCIDADE = 0.5;
+
+        private final long id;
+        private final long primeiroQuadro;
+        private long ultimoQuadro;
+        private double x;
+        private double y;
+        private double vx;
+        private double vy;
+        private double confiancaMax;
+        private int associacoes = 1;
+        private boolean confirmada;
+
+        private Trilha(long id, long quadro, double x, double y, double confianca) {
+            this.id = id;
+            this.primeiroQuadro = quadro;
+            this.ultimoQuadro = quadro;
+            this.x = x;
+            this.y = y;
+            this.confiancaMax = confianca;
+        }
+
+        private void associar(long quadro, double nx, double ny, double confianca) {
+            long intervalo = Math.max(1, quadro - ultimoQuadro);
+            vx = SUAVIZACAO_VELOCIDADE * vx + (1 - SUAVIZACAO_VELOCIDADE) * (nx - x) / intervalo;
+            vy = SUAVIZACAO_VELOCIDADE * vy + (1 - SUAVIZACAO_VELOCIDADE) * (ny - y) / intervalo;
+            x = nx;
+            y = ny;
+            ultimoQuadro = quadro;
+            confiancaMax = Math.max(confiancaMax, confianca);
+            associacoes++;
+        }
+
+        private String placaVirtual() {
+            return String.format("TRK-%04d", id);
+        }
+
+        private TrackDTO paraDTO(boolean ativa) {
+            return new TrackDTO(placaVirtual(), primeiroQuadro, ultimoQuadro, x, y, confiancaMax, associacoes, ativa);
+        }
+    }
+}
@@ -0,0 +1,296 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.DeteccaoDTO;
+import br.com.fiap.smartlocation.dto.EventoTrackDTO;
+import br.com.fiap.smartlocation.dto.RastreamentoResultadoDTO;
+import br.com.fiap.smartlocation.dto.TrackDTO;
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rastreamento de motos entre quadros: transforma fluxos de detecções por quadro
+ * em uma trilha por moto física, com eventos de entrada e saída.
+ * Fluxos enviados pela API ficam em sessões nomeadas, limitadas em quantidade e removidas quando ociosas;
+ * os resultados dos jobs são rastreados a partir do deteccoes.ndjson gravado pelo worker.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RastreamentoService {
+
+    private final ObjectMapper objectMapper;
+    private final ArtefatosResultadoService artefatosResultado;
+
+    @Value("${rastreamento.distancia-max-px:80}")
+    private double distanciaMax;
+
+    @Value("${rastreamento.quadros-ausencia-max:15}")
+    private int quadrosAusenciaMax;
+
+    @Value("${rastreamento.quadros-confirmacao:3}")
+    private int quadrosConfirmacao;
+
+    @Value("${rastreamento.eventos-por-sessao:1000}")
+    private int maxEventosSessao;
+
+    @Value("${rastreamento.trilhas-encerradas-por-sessao:1000}")
+    private int maxEncerradasSessao;
+
+    @Value("${rastreamento.sessoes.max:100}")
+    private int maxSessoes;
+
+    @Value("${rastreamento.sessoes.ociosidade-minutos:30}")
+    private long ociosidadeMinutos;
+
+    private final Map<String, Sessao> sessoes = new ConcurrentHashMap<>();
+
+    /**
+     * Processa detecções de uma sessão. As detecções são agrupadas pelo campo {@code quadro};
+     * sem ele, o lote inteiro é tratado como o quadro seguinte ao último processado.
+     *
+     * @return eventos de entrada/saída gerados pelo lote
+     */
+    public List<EventoTrackDTO> processar(String sessaoId, List<DeteccaoDTO> deteccoes) {
+        Sessao existente = sessoes.get(sessaoId);
+        Sessao sessao = existente != null ? existente : novaSessao(sessaoId);
+        synchronized (sessao) {
+            sessao.ultimoAcesso = System.nanoTime();
+            List<EventoTrackDTO> eventos = new ArrayList<>();
+            Map<Long, List<DeteccaoDTO>> porQuadro = new LinkedHashMap<>();
+            long semQuadro = sessao.ultimoQuadro + 1;
+            for (DeteccaoDTO d : deteccoes) {
+                long quadro = d.getQuadro() != null ? d.getQuadro() : semQuadro;
+                porQuadro.computeIfAbsent(quadro, q -> new ArrayList<>()).add(d);
+            }
+            porQuadro.entrySet().stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(e -> eventos.addAll(sessao.processarQuadro(e.getKey(), e.getValue())));
+            sessao.registrar(eventos, maxEventosSessao);
+            return eventos;
+        }
+    }
+
+    /**
+     * Cria a sessão removendo antes as ociosas; no limite de sessões, a menos usada recentemente é descartada
+     */
+    private Sessao novaSessao(String sessaoId) {
+        long limite = System.nanoTime() - TimeUnit.MINUTES.toNanos(ociosidadeMinutos);
+        sessoes.entrySet().removeIf(e -> {
+            if (e.getValue().ultimoAcesso - limite >= 0) {
+                return false;
+            }
+            log.info("Sessão de rastreamento {} removida por ociosidade", e.getKey());
+            return true;
+        });
+        while (!sessoes.isEmpty() && sessoes.size() >= maxSessoes) {
+            sessoes.entrySet().stream()
+                    .min(Comparator.comparingLong(e -> e.getValue().ultimoAcesso))
+                    .ifPresent(e -> {
+                        sessoes.remove(e.getKey(), e.getValue());
+                        log.warn("Limite de {} sessões de rastreamento atingido; sessão {} descartada", maxSessoes, e.getKey());
+                    });
+        }
+        return sessoes.computeIfAbsent(sessaoId,
+                id -> new Sessao(new RastreadorMotos(distanciaMax, quadrosAusenciaMax, quadrosConfirmacao, maxEncerradasSessao)));
+    }
+
+    public Optional<RastreamentoResultadoDTO> consultar(String sessaoId) {
+        Sessao sessao = sessoes.get(sessaoId);
+        if (sessao == null) {
+            return Optional.empty();
+        }
+        synchronized (sessao) {
+            return Optional.of(sessao.resultado());
+        }
+    }
+
+    /**
+     * Encerra a sessão: fecha as trilhas ativas (eventos SAIDA) e devolve o resultado final
+     */
+    public Optional<RastreamentoResultadoDTO> encerrar(String sessaoId) {
+        Sessao sessao = sessoes.remove(sessaoId);
+        if (sessao == null) {
+            return Optional.empty();
+        }
+        synchronized (sessao) {
+            sessao.registrar(sessao.rastreador.finalizar(), maxEventosSessao);
+            return Optional.of(sessao.resultado());
+        }
+    }
+
+    /**
+     * Rastreia um arquivo NDJSON de detecções (uma por linha, agrupadas por quadro em ordem),
+     * lendo uma linha por vez
+     */
+    public RastreamentoResultadoDTO rastrearArquivo(Path ndjson) throws IOException {
+        Sessao sessao = new Sessao(novoRastreador());
+        List<EventoTrackDTO> eventos = new ArrayList<>();
+        List<DeteccaoDTO> quadroAtual = new ArrayList<>();
+        long numeroQuadro = -1;
+        try (MappingIterator<DeteccaoDTO> it = objectMapper.readerFor(DeteccaoDTO.class).readValues(ndjson.toFile())) {
+            while (it.hasNextValue()) {
+                DeteccaoDTO d = it.nextValue();
+                long quadro = d.getQuadro() != null ? d.getQuadro() : Math.max(numeroQuadro, 0);
+                if (quadro != numeroQuadro && !quadroAtual.isEmpty()) {
+                    eventos.addAll(sessao.processarQuadro(numeroQuadro, quadroAtual));
+                    quadroAtual = new ArrayList<>();
+                }
+                numeroQuadro = quadro;
+                quadroAtual.add(d);
+            }
+        }
+        if (!quadroAtual.isEmpty()) {
+            eventos.addAll(sessao.processarQuadro(numeroQuadro, quadroAtual));
+        }
+        eventos.addAll(sessao.rastreador.finalizar());
+        sessao.eventos.addAll(eventos);
+
+        RastreamentoResultadoDTO resultado = sessao.resultado();
+        log.info("Rastreamento de {}: {} detecções em {} quadros -> {} motos",
+                ndjson.getFileName(), resultado.getDeteccoes(), resultado.getQuadros(), resultado.getTracks().size());
+        return resultado;
+    }
+
+    /**
+     * Rastreia o resultado de um job (runs/jobs/{id}/track/deteccoes.ndjson gravado pelo worker)
+     */
+    public Optional<RastreamentoResultadoDTO> rastrearExecucao(String execucao) throws IOException {
+        Optional<Path> ndjson = artefatosResultado.obterPorExecucao(execucao)
+                .map(a -> a.getBase().resolve("track").resolve("deteccoes.ndjson"))
+                .filter(Files::isRegularFile);
+        return ndjson.isPresent() ? Optional.of(rastrearArquivo(ndjson.get())) : Optional.empty();
+    }
+
+    /**
+     * Registra que as trilhas do job foram salvas, num marcador no diretório do job (sobrevive a reinícios)
+     *
+     * @return false se já tinham sido salvas
+     */
+    public boolean marcarTracksSalvas(String execucao) throws IOException {
+        Optional<Path> marcador = marcadorTracksSalvas(execucao);
+        if (marcador.isEmpty()) {
+            return false;
+        }
+        try {
+            Files.createFile(marcador.get());
+            return true;
+        } catch (FileAlreadyExistsException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Desfaz o registro quando a gravação das trilhas falha, para permitir uma nova tentativa
+     */
+    public void desmarcarTracksSalvas(String execucao) {
+        marcadorTracksSalvas(execucao).ifPresent(marcador -> {
+            try {
+                Files.deleteIfExists(marcador);
+            } catch (IOException e) {
+                log.warn("Não foi possível remover {}: {}", marcador, e.getMessage());
+            }
+        });
+    }
+
+    private Optional<Path> marcadorTracksSalvas(String execucao) {
+        return artefatosResultado.obterPorExecucao(execucao)
+                .map(a -> a.getBase().resolve("track").resolve("tracks-salvos"));
+    }
+
+    /**
+     * Uma detecção por trilha (última posição e maior confiança), para persistir
+     * no lugar de todas as detecções por quadro
+     */
+    public List<DeteccaoMoto> consolidar(RastreamentoResultadoDTO resultado) {
+        LocalDateTime agora = LocalDateTime.now();
+        return resultado.getTracks().stream()
+                .map(t -> {
+                    DeteccaoMoto d = new DeteccaoMoto();
+                    d.setPosicaoX(t.getPosicaoX());
+                    d.setPosicaoY(t.getPosicaoY());
+                    d.setConfianca(t.getConfiancaMax());
+                    d.setHorarioRegistro(agora);
+                    d.setPlacaVirtual(t.getPlacaVirtual());
+                    return d;
+                })
+                .toList();
+    }
+
+    private RastreadorMotos novoRastreador() {
+        return new RastreadorMotos(distanciaMax, quadrosAusenciaMax, quadrosConfirmacao);
+    }
+
+    private static final class Sessao {
+        private final RastreadorMotos rastreador;
+        private final List<EventoTrackDTO> eventos = new ArrayList<>();
+        private volatile long ultimoAcesso = System.nanoTime();
+        private long ultimoQuadro = -1;
+        private long quadros;
+        private long deteccoes;
+
+        private Sessao(RastreadorMotos rastreador) {
+            this.rastreador = rastreador;
+        }
+
+        private List<EventoTrackDTO> processarQuadro(long quadro, List<DeteccaoDTO> lote) {
+            int n = lote.size();
+            double[] xs = new double[n];
+            double[] ys = new double[n];
+            double[] confs = new double[n];
+            int k = 0;
+            for (DeteccaoDTO d : lote) {
+                if (d.getPosicaoX() == null || d.getPosicaoY() == null) {
+                    continue;
+                }
+                xs[k] = d.getPosicaoX();
+                ys[k] = d.getPosicaoY();
+                confs[k] = d.getConfianca() != null ? d.getConfianca() : 0d;
+                k++;
+            }
+            if (k < n) {
+                xs = Arrays.copyOf(xs, k);
+                ys = Arrays.copyOf(ys, k);
+                confs = Arrays.copyOf(confs, k);
+            }
+            quadros++;
+            deteccoes += k;
+            ultimoQuadro = Math.max(ultimoQuadro, quadro);
+            return rastreador.atualizar(quadro, xs, ys, confs);
+        }
+
+        /**
+         * Mantém apenas os últimos {@code limite} eventos
+         */
+        private void registrar(List<EventoTrackDTO> novos, int limite) {
+            eventos.addAll(novos);
+            if (eventos.size() > limite) {
+                eventos.subList(0, eventos.size() - limite).clear();
+            }
+        }
+
+        private RastreamentoResultadoDTO resultado() {
+            List<TrackDTO> tracks = rastreador.listar();
+            return new RastreamentoResultadoDTO(quadros, deteccoes, tracks, List.copyOf(eventos));
+        }
+    }
+}
@@ -0,0 +1,408 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.MovimentacaoDTO;
+import br.com.fiap.smartlocation.event.DeteccoesSalvasEvent;
+import br.com.fiap.smartlocation.event.MotoAlteradaEvent;
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import br.com.fiap.smartlocation.model.Moto;
+import br.com.fiap.smartlocation.repository.DeteccaoMotoRepository;
+import br.com.fiap.smartlocation.repository.MovimentacaoJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gera movimentações de ENTRADA e SAIDA a partir das detecções salvas.
+ * Cada pátio tem um polígono (em pixels da câmera) que delimita a área do pátio; uma moto que passa
+ * de fora para dentro do polígono entra, e de dentro para fora sai. A mudança de lado só vale depois de
+ * {@code confirmacoes} detecções seguidas do novo lado, o que evita eventos em sequência na borda.
+ * O lado atual de cada moto fica em memória (partindo da última ENTRADA/SAIDA gravada), de modo que cada
+ * detecção é avaliada em tempo constante. As movimentações geradas são gravadas em batches.
+ * Detecções novas (de qualquer caminho de gravação, inclusive a ingestão em lote, cujo evento só traz a
+ * quantidade) são relidas do banco em páginas, a partir do maior ID já avaliado; as do evento com ID já lido
+ * são edições. Só são avaliadas detecções de motos cadastradas (o idMoto da análise de vídeo é o ID do
+ * rastreador e é descartado pelo catálogo).
+ * Todo o estado é acessado por um único thread.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class RegrasMovimentacaoService {
+
+    private final MovimentacaoService movimentacaoService;
+    private final MovimentacaoJdbcRepository movimentacaoJdbcRepository;
+    private final DeteccaoMotoRepository deteccaoRepository;
+    private final CacheCatalogoService catalogo;
+
+    @Value("${movimentacoes.regras.habilitado:true}")
+    private boolean habilitado;
+
+    // Polígono "x,y;x,y;..." usado para motos sem pátio ou de pátios sem polígono próprio
+    @Value("${movimentacoes.regras.zona-padrao:}")
+    private String zonaPadrao;
+
+    // ID do pátio -> polígono "x,y;x,y;..."
+    @Value("#{${movimentacoes.regras.zonas:{:}}}")
+    private Map<String, String> zonasPorPatio;
+
+    @Value("${movimentacoes.regras.confirmacoes:2}")
+    private int confirmacoes;
+
+    @Value("${movimentacoes.regras.tamanho-lote:200}")
+    private int tamanhoLote;
+
+    @Value("${movimentacoes.regras.intervalo-gravacao-ms:1000}")
+    private long intervaloGravacaoMs;
+
+    // Detecções relidas do banco por consulta
+    @Value("${movimentacoes.regras.tamanho-leitura:1000}")
+    private int tamanhoLeitura;
+
+    private Poligono poligonoPadrao;
+    private final Map<Long, Poligono> poligonos = new HashMap<>();
+    private final Map<Long, EstadoMoto> estados = new HashMap<>();
+    private final List<MovimentacaoDTO> pendentes = new ArrayList<>();
+    // Maior ID de detecção já avaliado; null até ser lido (as anteriores à inicialização não são avaliadas)
+    private Long maiorIdLido;
+
+    private final AtomicLong avaliadas = new AtomicLong();
+    private final AtomicLong ignoradas = new AtomicLong();
+    private final AtomicLong entradas = new AtomicLong();
+    private final AtomicLong saidas = new AtomicLong();
+    private final AtomicLong gravadas = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+
+    private final ScheduledExecutorService motor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "regras-movimentacao");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aoIniciar() {
+        poligonoPadrao = zonaPadrao == null || zonaPadrao.isBlank() ? null : Poligono.ler(zonaPadrao);
+        zonasPorPatio.forEach((patio, zona) -> poligonos.put(Long.valueOf(patio.trim()), Poligono.ler(zona)));
+        if (!habilitado || (poligonoPadrao == null && poligonos.isEmpty())) {
+            log.info("Geração automática de movimentações desativada (nenhuma zona configurada)");
+            habilitado = false;
+            return;
+        }
+        motor.execute(this::carregarEstados);
+        motor.scheduleWithFixedDelay(this::gravarPendentes, intervaloGravacaoMs, intervaloGravacaoMs, TimeUnit.MILLISECONDS);
+        log.info("Geração automática de movimentações ativa: {} zonas por pátio, zona padrão {}",
+                poligonos.size(), poligonoPadrao != null ? "configurada" : "ausente");
+    }
+
+    /**
+     * Parte da última ENTRADA/SAIDA de cada moto, para a primeira detecção já poder gerar um evento
+     */
+    private void carregarEstados() {
+        lerMaiorId();
+        try {
+            movimentacaoJdbcRepository.percorrerUltimasEntradasSaidas(rs -> {
+                EstadoMoto estado = estados.computeIfAbsent(rs.getLong("moto_id"), id -> new EstadoMoto());
+                if (estado.dentro == null) {
+                    estado.dentro = MovimentacaoService.ENTRADA.equals(rs.getString("tipo_evento"));
+                }
+            });
+            log.info("Lado inicial de {} motos carregado das movimentações", estados.size());
+        } catch (RuntimeException e) {
+            // Sem o histórico, a primeira detecção de cada moto apenas define o lado
+            log.warn("Não foi possível carregar as últimas entradas/saídas: {}", e.getMessage());
+        }
+    }
+
+    private void lerMaiorId() {
+        try {
+            Long maior = deteccaoRepository.buscarMaiorId();
+            maiorIdLido = maior != null ? maior : 0L;
+        } catch (RuntimeException e) {
+            log.warn("Não foi possível ler o maior ID de detecção: {}", e.getMessage());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onDeteccoesSalvas(DeteccoesSalvasEvent event) {
+        if (!habilitado) {
+            return;
+        }
+        List<DeteccaoMoto> editadas = new ArrayList<>();
+        for (DeteccaoMoto d : event.getDeteccoes()) {
+            if (d.getIdDeteccao() != null) {
+                editadas.add(d);
+            }
+        }
+        boolean novas = event.getNovas() > 0;
+        if (!novas && editadas.isEmpty()) {
+            return;
+        }
+        motor.execute(() -> {
+            // Inserções chegam pela releitura; do evento, só as edições de detecções já avaliadas
+            List<DeteccaoMoto> edicoes = maiorIdLido == null ? List.of() : editadas.stream()
+                    .filter(d -> d.getIdDeteccao() <= maiorIdLido)
+                    .toList();
+            avaliar(avaliaveis(edicoes));
+            if (novas) {
+                lerNovas();
+            }
+        });
+    }
+
+    /**
+     * Relê em páginas, na ordem de inserção, as detecções de motos cadastradas gravadas depois da última
+     * avaliada, até o maior ID atual (lido antes, para que detecções de IDs do rastreador não sejam relidas)
+     */
+    private void lerNovas() {
+        if (maiorIdLido == null) {
+            lerMaiorId();
+            return;
+        }
+        try {
+            Long teto = deteccaoRepository.buscarMaiorId();
+            if (teto == null || teto <= maiorIdLido) {
+                return;
+            }
+            List<DeteccaoMoto> pagina;
+            do {
+                pagina = deteccaoRepository.findDeMotosEntreIds(maiorIdLido, teto, PageRequest.of(0, tamanhoLeitura));
+                if (!pagina.isEmpty()) {
+                    maiorIdLido = pagina.get(pagina.size() - 1).getIdDeteccao();
+                    avaliar(avaliaveis(pagina));
+                }
+            } while (pagina.size() == tamanhoLeitura);
+            maiorIdLido = teto;
+        } catch (RuntimeException e) {
+            // Tenta de novo na próxima gravação, a partir da última página avaliada
+            log.warn("Falha ao reler as detecções novas: {}", e.getMessage());
+        }
+    }
+
+    private static List<DeteccaoMoto> avaliaveis(List<DeteccaoMoto> deteccoes) {
+        List<DeteccaoMoto> resultado = new ArrayList<>(deteccoes.size());
+        for (DeteccaoMoto d : deteccoes) {
+            if (d.getIdMoto() != null && d.getPosicaoX() != null && d.getPosicaoY() != null) {
+                resultado.add(d);
+            }
+        }
+        return resultado;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMotoAlterada(MotoAlteradaEvent event) {
+        if (!habilitado) {
+            return;
+        }
+        motor.execute(() -> {
+            if (event.getTipo() == MotoAlteradaEvent.Tipo.REMOVIDA) {
+                estados.remove(event.getMotoId());
+            } else {
+                // O pátio pode ter mudado: relido na próxima detecção
+                EstadoMoto estado = estados.get(event.getMotoId());
+                if (estado != null) {
+                    estado.poligono = null;
+                }
+            }
+        });
+    }
+
+    private void avaliar(List<DeteccaoMoto> deteccoes) {
+        if (deteccoes.isEmpty()) {
+            return;
+        }
+        try {
+            aplicarRegras(deteccoes);
+        } catch (RuntimeException e) {
+            log.warn("Falha ao avaliar {} detecções nas zonas dos pátios: {}", deteccoes.size(), e.getMessage());
+        }
+        if (pendentes.size() >= tamanhoLote) {
+            gravarPendentes();
+        }
+    }
+
+    void aplicarRegras(List<DeteccaoMoto> deteccoes) {
+        // Ordem cronológica dentro do lote, para as transições saírem na sequência em que aconteceram
+        deteccoes.sort(Comparator.comparing(DeteccaoMoto::getHorarioRegistro,
+                Comparator.nullsLast(Comparator.naturalOrder())));
+        for (DeteccaoMoto d : deteccoes) {
+            avaliadas.incrementAndGet();
+            Optional<Moto> moto = catalogo.buscarMoto(d.getIdMoto());
+            if (moto.isEmpty()) {
+                // idMoto que não corresponde a uma moto cadastrada: não gera movimentação
+                estados.remove(d.getIdMoto());
+                ignoradas.incrementAndGet();
+                continue;
+            }
+            EstadoMoto estado = estados.computeIfAbsent(d.getIdMoto(), id -> new EstadoMoto());
+            LocalDateTime horario = d.getHorarioRegistro() != null ? d.getHorarioRegistro() : LocalDateTime.now();
+            if (estado.ultimoHorario != null && horario.isBefore(estado.ultimoHorario)) {
+                // Detecção antiga (ou edição de uma antiga): não altera o lado atual
+                ignoradas.incrementAndGet();
+                continue;
+            }
+            estado.ultimoHorario = horario;
+            if (estado.poligono == null) {
+                estado.poligono = poligonoDa(moto.get());
+            }
+            if (estado.poligono == Poligono.NENHUM) {
+                ignoradas.incrementAndGet();
+                continue;
+            }
+            boolean dentro = estado.poligono.contem(d.getPosicaoX(), d.getPosicaoY());
+            if (estado.dentro == null) {
+                estado.dentro = dentro;
+                continue;
+            }
+            if (dentro == estado.dentro) {
+                estado.candidatas = 0;
+                continue;
+            }
+            if (++estado.candidatas < confirmacoes) {
+                continue;
+            }
+            estado.dentro = dentro;
+            estado.candidatas = 0;
+            String tipo = dentro ? MovimentacaoService.ENTRADA : MovimentacaoService.SAIDA;
+            (dentro ? entradas : saidas).incrementAndGet();
+            pendentes.add(new MovimentacaoDTO(null, d.getIdMoto(), tipo,
+                    String.format("Gerada automaticamente: detecção em (%.0f, %.0f) %s da zona do pátio",
+                            d.getPosicaoX(), d.getPosicaoY(), dentro ? "dentro" : "fora"),
+                    horario));
+        }
+    }
+
+    private Poligono poligonoDa(Moto moto) {
+        Long patioId = moto.getPatio() != null ? moto.getPatio().getId() : null;
+        Poligono poligono = patioId != null ? poligonos.get(patioId) : null;
+        if (poligono == null) {
+            poligono = poligonoPadrao;
+        }
+        return poligono != null ? poligono : Poligono.NENHUM;
+    }
+
+    private void gravarPendentes() {
+        if (pendentes.isEmpty()) {
+            return;
+        }
+        List<MovimentacaoDTO> lote = new ArrayList<>(pendentes);
+        try {
+            gravadas.addAndGet(movimentacaoService.registrarEmLote(lote, tamanhoLote));
+            pendentes.clear();
+        } catch (RuntimeException e) {
+            falhas.incrementAndGet();
+            // Mantém as pendentes para o próximo ciclo
+            log.warn("Falha ao gravar {} movimentações geradas: {}", lote.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void encerrar() throws InterruptedException {
+        motor.shutdown();
+        if (motor.awaitTermination(10, TimeUnit.SECONDS)) {
+            gravarPendentes();
+        } else {
+            log.warn("Motor de regras não terminou a tempo; {} movimentações geradas não foram gravadas", pendentes.size());
+        }
+    }
+
+    /**
+     * Métricas do motor de regras: detecções avaliadas, transições geradas e gravadas
+     */
+    public Map<String, Number> getMetricas() {
+        Map<String, Number> metricas = new LinkedHashMap<>();
+        metricas.put("avaliadas", avaliadas.get());
+        metricas.put("ignoradas", ignoradas.get());
+        metricas.put("entradas", entradas.get());
+        metricas.put("saidas", saidas.get());
+        metricas.put("gravadas", gravadas.get());
+        metricas.put("falhasGravacao", falhas.get());
+        return metricas;
+    }
+
+    private static final class EstadoMoto {
+        private Boolean dentro; // null = lado ainda desconhecido
+        private int candidatas; // detecções seguidas do outro lado
+        private LocalDateTime ultimoHorario;
+        private Poligono poligono;
+    }
+
+    /**
+     * Polígono em pixels com teste de ponto por ray casting, precedido do retângulo envolvente
+     */
+    static final class Poligono {
+        private static final Poligono NENHUM = new Poligono(new double[0], new double[0]);
+
+        private final double[] xs;
+        private final double[] ys;
+        private final double xMin, xMax, yMin, yMax;
+
+        private Poligono(double[] xs, double[] ys) {
+            this.xs = xs;
+            this.ys = ys;
+            double x0 = Double.MAX_VALUE, x1 = -Double.MAX_VALUE, y0 = Double.MAX_VALUE, y1 = -Double.MAX_VALUE;
+            for (int i = 0; i < xs.length; i++) {
+                x0 = Math.min(x0, xs[i]);
+                x1 = Math.max(x1, xs[i]);
+                y0 = Math.min(y0, ys[i]);
+                y1 = Math.max(y1, ys[i]);
+            }
+            xMin = x0;
+            xMax = x1;
+            yMin = y0;
+            yMax = y1;
+        }
+
+        /**
+         * Lê "x,y;x,y;..." (ao menos três vértices)
+         */
+        static Poligono ler(String texto) {
+            String[] vertices = texto.trim().split("\\s*;\\s*");
+            if (vertices.length < 3) {
+                throw new IllegalArgumentException("Zona precisa de ao menos 3 vértices: " + texto);
+            }
+            double[] xs = new double[vertices.length];
+            double[] ys = new double[vertices.length];
+            for (int i = 0; i < vertices.length; i++) {
+                String[] xy = vertices[i].split("\\s*,\\s*");
+                if (xy.length != 2) {
+                    throw new IllegalArgumentException("Vértice inválido na zona: " + vertices[i]);
+                }
+                xs[i] = Double.parseDouble(xy[0]);
+                ys[i] = Double.parseDouble(xy[1]);
+            }
+            return new Poligono(xs, ys);
+        }
+
+        boolean contem(double x, double y) {
+            if (x < xMin || x > xMax || y < yMin || y > yMax) {
+                return false;
+            }
+            boolean dentro = false;
+            for (int i = 0, j = xs.length - 1; i < xs.length; j = i++) {
+                if ((ys[i] > y) != (ys[j] > y)
+                        && x < (xs[j] - xs[i]) * (y - ys[i]) / (ys[j] - ys[i]) + xs[i]) {
+                    dentro = !dentro;
+                }
+            }
+            return dentro;
+        }
+    }
+}
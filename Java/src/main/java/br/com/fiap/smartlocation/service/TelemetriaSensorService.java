@@ -0,0 +1,295 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.IngestaoTelemetriaDTO;
+import br.com.fiap.smartlocation.dto.LeituraSensorDTO;
+import br.com.fiap.smartlocation.event.MotoAlteradaEvent;
+import br.com.fiap.smartlocation.repository.SensorJdbcRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ingestão de telemetria dos sensores das motos (tabela SENSOR).
+ * As leituras são aplicadas em memória, onde ficam o estado atual de cada moto (servido nas consultas)
+ * e o último valor ainda não gravado por moto: várias leituras da mesma moto entre duas gravações
+ * viram uma só linha. Um thread grava periodicamente as pendentes com MERGE em batches JDBC,
+ * em vez de um UPDATE por leitura, de modo que a conexão do pool é usada uma vez por ciclo.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class TelemetriaSensorService {
+
+    private static final ZoneId ZONA = ZoneId.systemDefault();
+
+    private final SensorJdbcRepository sensorRepository;
+
+    @Value("${sensores.telemetria.intervalo-gravacao-ms:1000}")
+    private long intervaloGravacaoMs;
+
+    @Value("${sensores.telemetria.tamanho-lote:500}")
+    private int tamanhoLote;
+
+    // Estado atual por moto e último valor ainda não gravado por moto
+    private final Map<Long, Leitura> atuais = new ConcurrentHashMap<>();
+    private final Map<Long, Leitura> pendentes = new ConcurrentHashMap<>();
+    private volatile boolean inicializado = false;
+
+    private final AtomicLong recebidas = new AtomicLong();
+    private final AtomicLong rejeitadas = new AtomicLong();
+    private final AtomicLong foraDeOrdem = new AtomicLong();
+    private final AtomicLong coalescidas = new AtomicLong();
+    private final AtomicLong gravadas = new AtomicLong();
+    private final AtomicLong ciclos = new AtomicLong();
+    private final AtomicLong falhas = new AtomicLong();
+    private final AtomicLong nanosGravacao = new AtomicLong();
+
+    private final ScheduledExecutorService gravador = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "telemetria-sensores");
+        t.setDaemon(true);
+        return t;
+    });
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aoIniciar() {
+        try {
+            garantirInicializado();
+        } catch (Exception e) {
+            // Banco indisponível na subida: a carga é refeita na primeira consulta ou leitura
+            log.warn("Não foi possível carregar o estado dos sensores: {}", e.getMessage());
+        }
+        gravador.scheduleWithFixedDelay(this::gravarAgendado, intervaloGravacaoMs, intervaloGravacaoMs, TimeUnit.MILLISECONDS);
+    }
+
+    public void garantirInicializado() {
+        if (inicializado) {
+            return;
+        }
+        synchronized (this) {
+            if (inicializado) {
+                return;
+            }
+            sensorRepository.percorrerSensores(rs -> {
+                Timestamp dt = rs.getTimestamp("ultima_atualizacao");
+                int ligado = rs.getInt("ligado");
+                Boolean ligadoOuNulo = rs.wasNull() ? null : ligado != 0;
+                Leitura gravada = new Leitura(ligadoOuNulo, valorOuNulo(rs, "nivel_bateria"),
+                        valorOuNulo(rs, "nivel_combustivel"), dt != null ? dt.getTime() : 0L);
+                // Leituras recebidas antes da carga prevalecem se forem mais recentes
+                atuais.merge(rs.getLong("moto_id"), gravada, TelemetriaSensorService::combinar);
+            });
+            inicializado = true;
+            log.info("Estado dos sensores carregado: {} motos", atuais.size());
+        }
+    }
+
+    /**
+     * Aplica um lote de leituras; a gravação no banco acontece no próximo ciclo do gravador
+     */
+    public IngestaoTelemetriaDTO registrar(List<LeituraSensorDTO> leituras) {
+        garantirInicializado();
+        recebidas.addAndGet(leituras.size());
+
+        // Só motos ainda sem estado em memória são conferidas no banco, uma vez por lote
+        Set<Long> desconhecidas = new HashSet<>();
+        for (LeituraSensorDTO l : leituras) {
+            if (valida(l) && !atuais.containsKey(l.getMotoId())) {
+                desconhecidas.add(l.getMotoId());
+            }
+        }
+        Set<Long> existentes = desconhecidas.isEmpty() ? Set.of() : sensorRepository.motosExistentes(desconhecidas);
+
+        int aceitas = 0;
+        long agora = System.currentTimeMillis();
+        for (LeituraSensorDTO l : leituras) {
+            if (!valida(l) || (desconhecidas.contains(l.getMotoId()) && !existentes.contains(l.getMotoId()))) {
+                continue;
+            }
+            long epochMillis = l.getUltimaAtualizacao() != null
+                    ? l.getUltimaAtualizacao().atZone(ZONA).toInstant().toEpochMilli()
+                    : agora;
+            Leitura nova = new Leitura(l.getLigado(), l.getNivelBateria(), l.getNivelCombustivel(), epochMillis);
+            Leitura resultado = atuais.merge(l.getMotoId(), nova, TelemetriaSensorService::combinar);
+            if (resultado.epochMillis != epochMillis) {
+                // Mais antiga que o estado atual: descartada
+                foraDeOrdem.incrementAndGet();
+                continue;
+            }
+            if (pendentes.merge(l.getMotoId(), resultado, TelemetriaSensorService::combinar) != resultado) {
+                coalescidas.incrementAndGet();
+            }
+            aceitas++;
+        }
+        int rejeitadasLote = leituras.size() - aceitas;
+        rejeitadas.addAndGet(rejeitadasLote);
+        return new IngestaoTelemetriaDTO(leituras.size(), aceitas, rejeitadasLote, pendentes.size());
+    }
+
+    /**
+     * Estado atual do sensor de todas as motos
+     */
+    public List<LeituraSensorDTO> listar() {
+        garantirInicializado();
+        List<LeituraSensorDTO> lista = new ArrayList<>(atuais.size());
+        atuais.forEach((motoId, l) -> lista.add(l.paraDTO(motoId)));
+        return lista;
+    }
+
+    public Optional<LeituraSensorDTO> buscar(Long motoId) {
+        garantirInicializado();
+        Leitura l = atuais.get(motoId);
+        return l != null ? Optional.of(l.paraDTO(motoId)) : Optional.empty();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMotoAlterada(MotoAlteradaEvent event) {
+        if (event.getTipo() == MotoAlteradaEvent.Tipo.REMOVIDA) {
+            // A linha em SENSOR já foi apagada junto com a moto
+            atuais.remove(event.getMotoId());
+            pendentes.remove(event.getMotoId());
+        }
+    }
+
+    private void gravarAgendado() {
+        try {
+            gravarPendentes();
+        } catch (Exception e) {
+            // As leituras voltaram para as pendentes: tenta de novo no próximo ciclo
+            log.warn("Falha ao gravar leituras de sensores: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Grava as leituras pendentes; em caso de falha elas voltam para a próxima tentativa
+     */
+    public synchronized void gravarPendentes() {
+        if (pendentes.isEmpty()) {
+            return;
+        }
+        Map<Long, Leitura> lote = new LinkedHashMap<>();
+        for (Long motoId : pendentes.keySet()) {
+            Leitura l = pendentes.remove(motoId);
+            if (l != null) {
+                lote.put(motoId, l);
+            }
+        }
+        long inicio = System.nanoTime();
+        try {
+            List<LeituraSensorDTO> linhas = new ArrayList<>(lote.size());
+            lote.forEach((motoId, l) -> linhas.add(l.paraDTO(motoId)));
+            sensorRepository.mesclar(linhas, tamanhoLote);
+        } catch (RuntimeException e) {
+            falhas.incrementAndGet();
+            // Uma leitura mais nova recebida durante a gravação prevalece sobre a devolvida
+            lote.forEach((motoId, l) -> {
+                if (atuais.containsKey(motoId)) {
+                    pendentes.merge(motoId, l, TelemetriaSensorService::combinar);
+                }
+            });
+            throw e;
+        }
+        gravadas.addAndGet(lote.size());
+        ciclos.incrementAndGet();
+        nanosGravacao.addAndGet(System.nanoTime() - inicio);
+    }
+
+    @PreDestroy
+    public void encerrar() {
+        gravador.shutdownNow();
+        try {
+            gravarPendentes();
+        } catch (RuntimeException e) {
+            log.error("{} leituras de sensores não foram gravadas no encerramento: {}", pendentes.size(), e.getMessage());
+        }
+    }
+
+    /**
+     * Métricas da ingestão: leituras recebidas, coalescidas e gravadas, e latência média por ciclo (ms)
+     */
+    public Map<String, Number> getMetricas() {
+        long n = ciclos.get();
+        Map<String, Number> metricas = new LinkedHashMap<>();
+        metricas.put("motos", atuais.size());
+        metricas.put("pendentes", pendentes.size());
+        metricas.put("recebidas", recebidas.get());
+        metricas.put("rejeitadas", rejeitadas.get());
+        metricas.put("foraDeOrdem", foraDeOrdem.get());
+        metricas.put("coalescidas", coalescidas.get());
+        metricas.put("gravadas", gravadas.get());
+        metricas.put("ciclosGravacao", n);
+        metricas.put("falhasGravacao", falhas.get());
+        metricas.put("latenciaMediaGravacaoMs", n > 0 ? nanosGravacao.get() / 1_000_000d / n : 0d);
+        return metricas;
+    }
+
+    private static boolean valida(LeituraSensorDTO l) {
+        return l != null && l.getMotoId() != null
+                && percentualValido(l.getNivelBateria()) && percentualValido(l.getNivelCombustivel());
+    }
+
+    private static boolean percentualValido(Double valor) {
+        return valor == null || (valor >= 0 && valor <= 100);
+    }
+
+    private static Double valorOuNulo(ResultSet rs, String coluna) throws SQLException {
+        double valor = rs.getDouble(coluna);
+        return rs.wasNull() ? null : valor;
+    }
+
+    /**
+     * A leitura mais recente prevalece; campos que ela não traz vêm da anterior
+     */
+    private static Leitura combinar(Leitura atual, Leitura nova) {
+        if (nova.epochMillis < atual.epochMillis) {
+            return atual;
+        }
+        return new Leitura(
+                nova.ligado != null ? nova.ligado : atual.ligado,
+                nova.nivelBateria != null ? nova.nivelBateria : atual.nivelBateria,
+                nova.nivelCombustivel != null ? nova.nivelCombustivel : atual.nivelCombustivel,
+                nova.epochMillis);
+    }
+
+    private static final class Leitura {
+        private final Boolean ligado;
+        private final Double nivelBateria;
+        private final Double nivelCombustivel;
+        private final long epochMillis;
+
+        private Leitura(Boolean ligado, Double nivelBateria, Double nivelCombustivel, long epochMillis) {
+            this.ligado = ligado;
+            this.nivelBateria = nivelBateria;
+            this.nivelCombustivel = nivelCombustivel;
+            this.epochMillis = epochMillis;
+        }
+
+        private LeituraSensorDTO paraDTO(Long motoId) {
+            return new LeituraSensorDTO(motoId, ligado, nivelBateria, nivelCombustivel,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONA));
+        }
+    }
+}
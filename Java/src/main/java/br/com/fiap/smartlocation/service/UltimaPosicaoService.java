@@ -0,0 +1,144 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.PosicaoDTO;
+import br.com.fiap.smartlocation.event.MotoAlteradaEvent;
+import br.com.fiap.smartlocation.event.PosicoesRegistradasEvent;
+import br.com.fiap.smartlocation.repository.PosicaoJdbcRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Última posição conhecida de cada moto mantida em memória.
+ * É carregada uma única vez com uma consulta de janela (uma linha por moto)
+ * e atualizada a cada posição registrada, sem consultar o banco nas leituras.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class UltimaPosicaoService {
+
+    private static final ZoneId ZONA = ZoneId.systemDefault();
+
+    private final PosicaoJdbcRepository posicaoJdbcRepository;
+
+    private final Map<Long, UltimaPosicao> posicoes = new ConcurrentHashMap<>();
+    // Snapshot da frota reaproveitado entre leituras enquanto a versão não muda
+    private final AtomicLong versao = new AtomicLong();
+    private volatile Snapshot snapshot;
+    private volatile boolean inicializado = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void aoIniciar() {
+        try {
+            garantirInicializado();
+        } catch (Exception e) {
+            // Banco indisponível na subida: a carga é refeita na primeira consulta
+            log.warn("Não foi possível carregar as últimas posições: {}", e.getMessage());
+        }
+    }
+
+    public void garantirInicializado() {
+        if (inicializado) {
+            return;
+        }
+        synchronized (this) {
+            if (inicializado) {
+                return;
+            }
+            posicaoJdbcRepository.percorrerUltimasPosicoes(rs -> {
+                Timestamp dt = rs.getTimestamp("dt_posicao");
+                atualizar(rs.getLong("moto_id"), rs.getDouble("latitude"), rs.getDouble("longitude"),
+                        dt != null ? dt.getTime() : 0L);
+            });
+            inicializado = true;
+            log.info("Últimas posições carregadas: {} motos", posicoes.size());
+        }
+    }
+
+    /**
+     * Última posição de todas as motos
+     */
+    public List<PosicaoDTO> listar() {
+        garantirInicializado();
+        long versaoAtual = versao.get();
+        Snapshot atual = snapshot;
+        if (atual != null && atual.versao == versaoAtual) {
+            return atual.posicoes;
+        }
+        List<PosicaoDTO> novo = new ArrayList<>(posicoes.size());
+        posicoes.forEach((motoId, p) -> novo.add(p.paraDTO(motoId)));
+        List<PosicaoDTO> lista = Collections.unmodifiableList(novo);
+        snapshot = new Snapshot(versaoAtual, lista);
+        return lista;
+    }
+
+    public Optional<PosicaoDTO> buscar(Long motoId) {
+        garantirInicializado();
+        UltimaPosicao p = posicoes.get(motoId);
+        return p != null ? Optional.of(p.paraDTO(motoId)) : Optional.empty();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onPosicoesRegistradas(PosicoesRegistradasEvent event) {
+        for (PosicaoDTO p : event.getPosicoes()) {
+            atualizar(p.getMotoId(), p.getLatitude(), p.getLongitude(),
+                    p.getDtPosicao().atZone(ZONA).toInstant().toEpochMilli());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMotoAlterada(MotoAlteradaEvent event) {
+        if (event.getTipo() == MotoAlteradaEvent.Tipo.REMOVIDA && posicoes.remove(event.getMotoId()) != null) {
+            versao.incrementAndGet();
+        }
+    }
+
+    private void atualizar(long motoId, double latitude, double longitude, long epochMillis) {
+        UltimaPosicao nova = new UltimaPosicao(latitude, longitude, epochMillis);
+        // Posições fora de ordem não sobrescrevem uma mais recente
+        posicoes.merge(motoId, nova, (atual, n) -> n.epochMillis >= atual.epochMillis ? n : atual);
+        versao.incrementAndGet();
+    }
+
+    @RequiredArgsConstructor
+    private static final class Snapshot {
+        private final long versao;
+        private final List<PosicaoDTO> posicoes;
+    }
+
+    /**
+     * Registro compacto com campos primitivos
+     */
+    private static final class UltimaPosicao {
+        private final double latitude;
+        private final double longitude;
+        private final long epochMillis;
+
+        private UltimaPosicao(double latitude, double longitude, long epochMillis) {
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.epochMillis = epochMillis;
+        }
+
+        private PosicaoDTO paraDTO(Long motoId) {
+            return new PosicaoDTO(motoId, latitude, longitude,
+                    LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZONA));
+        }
+    }
+}
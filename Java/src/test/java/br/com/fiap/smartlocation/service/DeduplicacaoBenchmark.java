@@ -0,0 +1,115 @@
+package br.com.fiap.smartlocation.service;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+/**
+ * Medição da deduplicação por grade ({@link DeduplicacaoDeteccoesService#deduplicar}) contra a comparação
+ * de todos contra todos, em quadros sintéticos com grupos de detecções próximas (como as caixas repetidas
+ * do YOLO). Cada quadro é conferido: os índices mantidos precisam ser os mesmos nas duas versões.
+ * <p>
+ * Execução (após {@code mvn test-compile}):
+ * {@code mvn exec:java -Dexec.mainClass=br.com.fiap.smartlocation.service.DeduplicacaoBenchmark -Dexec.classpathScope=test}
+ * <br>Argumentos opcionais: quadros, pontos por quadro e distância (padrão 2000, 800 e 60).
+ */
+public class DeduplicacaoBenchmark {
+
+    private static final double LARGURA = 1920;
+    private static final double ALTURA = 1080;
+
+    public static void main(String[] args) {
+        int quadros = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int pontos = args.length > 1 ? Integer.parseInt(args[1]) : 800;
+        double distancia = args.length > 2 ? Double.parseDouble(args[2]) : 60;
+
+        DeduplicacaoDeteccoesService servico = new DeduplicacaoDeteccoesService();
+        Random random = new Random(42);
+        double[][][] amostras = new double[quadros][][];
+        for (int q = 0; q < quadros; q++) {
+            amostras[q] = gerarQuadro(random, pontos, distancia);
+        }
+
+        // Aquecimento do JIT e conferência do resultado em todos os quadros
+        for (double[][] quadro : amostras) {
+            int[] grade = servico.deduplicar(quadro[0], quadro[1], quadro[2], distancia);
+            int[] referencia = deduplicarReferencia(quadro[0], quadro[1], quadro[2], distancia);
+            if (!Arrays.equals(grade, referencia)) {
+                System.err.printf("Divergência: grade manteve %d, referência %d%n", grade.length, referencia.length);
+                System.exit(1);
+            }
+        }
+
+        long mantidos = 0;
+        long inicio = System.nanoTime();
+        for (double[][] quadro : amostras) {
+            mantidos += servico.deduplicar(quadro[0], quadro[1], quadro[2], distancia).length;
+        }
+        long nanosGrade = System.nanoTime() - inicio;
+
+        // Os totais das duas medições são usados na saída, para o JIT não descartar as chamadas
+        long mantidosReferencia = 0;
+        inicio = System.nanoTime();
+        for (double[][] quadro : amostras) {
+            mantidosReferencia += deduplicarReferencia(quadro[0], quadro[1], quadro[2], distancia).length;
+        }
+        long nanosReferencia = System.nanoTime() - inicio;
+
+        System.out.printf("%d quadros de %d detecções, distância %.0f px: resultados idênticos, %.1f/%.1f mantidas por quadro%n",
+                quadros, pontos, distancia, (double) mantidos / quadros, (double) mantidosReferencia / quadros);
+        System.out.printf("grade:           %8.1f µs/quadro%n", nanosGrade / 1_000d / quadros);
+        System.out.printf("todos x todos:   %8.1f µs/quadro%n", nanosReferencia / 1_000d / quadros);
+        System.out.printf("ganho:           %8.1fx%n", (double) nanosReferencia / nanosGrade);
+    }
+
+    /**
+     * Metade das detecções espalhadas pelo quadro e metade em grupos de 2 a 4 caixas a poucos pixels
+     * de um centro, com confianças de 4 casas (empates acontecem e testam o desempate pelo índice)
+     */
+    private static double[][] gerarQuadro(Random random, int pontos, double distancia) {
+        double[] xs = new double[pontos];
+        double[] ys = new double[pontos];
+        double[] confs = new double[pontos];
+        int i = 0;
+        while (i < pontos) {
+            double cx = random.nextDouble() * LARGURA;
+            double cy = random.nextDouble() * ALTURA;
+            int grupo = i < pontos / 2 ? 1 : 2 + random.nextInt(3);
+            for (int k = 0; k < grupo && i < pontos; k++, i++) {
+                xs[i] = cx + (k == 0 ? 0 : random.nextGaussian() * distancia / 3);
+                ys[i] = cy + (k == 0 ? 0 : random.nextGaussian() * distancia / 3);
+                confs[i] = random.nextInt(10_000) / 10_000d;
+            }
+        }
+        return new double[][]{xs, ys, confs};
+    }
+
+    /**
+     * Mesma supressão gulosa (confiança decrescente, empate pelo menor índice), comparando cada
+     * detecção com todas as já mantidas
+     */
+    static int[] deduplicarReferencia(double[] xs, double[] ys, double[] confs, double distanciaMinima) {
+        int n = xs.length;
+        Integer[] ordem = IntStream.range(0, n).boxed().toArray(Integer[]::new);
+        Arrays.sort(ordem, Comparator.<Integer>comparingDouble(i -> -Math.max(0d, Math.min(1d, confs[i])))
+                .thenComparingInt(i -> i));
+        double r2 = distanciaMinima * distanciaMinima;
+        int[] mantidos = new int[n];
+        int total = 0;
+        for (int i : ordem) {
+            boolean suprimido = false;
+            for (int k = 0; k < total && !suprimido; k++) {
+                double dx = xs[mantidos[k]] - xs[i];
+                double dy = ys[mantidos[k]] - ys[i];
+                suprimido = dx * dx + dy * dy < r2;
+            }
+            if (!suprimido) {
+                mantidos[total++] = i;
+            }
+        }
+        int[] resultado = Arrays.copyOf(mantidos, total);
+        Arrays.sort(resultado);
+        return resultado;
+    }
+}
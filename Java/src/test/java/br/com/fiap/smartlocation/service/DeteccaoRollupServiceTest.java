@@ -0,0 +1,217 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.repository.DeteccaoRollupJdbcRepository;
+import br.com.fiap.smartlocation.service.DeteccaoRollupService.Resolucao;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Divisão dos intervalos entre baldes e detecções brutas: o repositório é simulado por uma lista de horários,
+ * e cada contagem é comparada com a contagem direta da lista
+ */
+class DeteccaoRollupServiceTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 0, 0);
+
+    private final List<LocalDateTime> horarios = new ArrayList<>();
+    // Trechos [inicio, fim) consultados nas detecções brutas
+    private final List<LocalDateTime[]> consultasBrutas = new ArrayList<>();
+    private DeteccaoRollupJdbcRepository repositorio;
+    private DeteccaoRollupService servico;
+
+    @BeforeEach
+    void preparar() {
+        Random random = new Random(7);
+        for (int i = 0; i < 5000; i++) {
+            horarios.add(BASE.minusDays(2).plusSeconds(random.nextInt(8 * 24 * 3600)));
+        }
+        // Detecções exatamente nas bordas dos baldes
+        horarios.add(BASE);
+        horarios.add(BASE.plusHours(10));
+        horarios.add(BASE.plusHours(10).plusMinutes(5));
+
+        repositorio = mock(DeteccaoRollupJdbcRepository.class);
+        when(repositorio.contarBrutas(any(), any())).thenAnswer(inv -> {
+            LocalDateTime inicio = inv.getArgument(0);
+            LocalDateTime fim = inv.getArgument(1);
+            consultasBrutas.add(new LocalDateTime[]{inicio, fim});
+            return contarDireto(inicio, fim);
+        });
+        when(repositorio.somarQuantidade(anyString(), any(), any())).thenAnswer(inv -> {
+            Resolucao r = resolucao(inv.getArgument(0));
+            LocalDateTime inicio = inv.getArgument(1);
+            LocalDateTime fim = inv.getArgument(2);
+            // Baldes só podem ser somados inteiros
+            assertThat(r.truncar(inicio)).isEqualTo(inicio);
+            assertThat(r.truncar(fim)).isEqualTo(fim);
+            return contarDireto(inicio, fim);
+        });
+        servico = new DeteccaoRollupService(repositorio, mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(servico, "maxPontos", 1500L);
+    }
+
+    @Test
+    void intervaloAlinhadoEmDiasUsaSoBaldesDiarios() {
+        LocalDateTime inicio = BASE;
+        LocalDateTime fim = BASE.plusDays(4);
+
+        assertThat(contar(inicio, fim)).isEqualTo(contarDireto(inicio, fim));
+        verify(repositorio).somarQuantidade("D", inicio, fim);
+        verify(repositorio, never()).somarQuantidade(eq("H"), any(), any());
+        assertThat(consultasBrutas).isEmpty();
+    }
+
+    @Test
+    void intervaloAlinhadoEmHorasUsaSoBaldesPorHora() {
+        LocalDateTime inicio = BASE.plusHours(10);
+        LocalDateTime fim = BASE.plusHours(15);
+
+        assertThat(contar(inicio, fim)).isEqualTo(contarDireto(inicio, fim));
+        verify(repositorio).somarQuantidade("H", inicio, fim);
+        verify(repositorio, never()).somarQuantidade(eq("M"), any(), any());
+        assertThat(consultasBrutas).isEmpty();
+    }
+
+    @Test
+    void intervaloAlinhadoEmMinutosUsaSoBaldesPorMinuto() {
+        LocalDateTime inicio = BASE.plusHours(10).plusMinutes(5);
+        LocalDateTime fim = BASE.plusHours(10).plusMinutes(42);
+
+        assertThat(contar(inicio, fim)).isEqualTo(contarDireto(inicio, fim));
+        verify(repositorio).somarQuantidade("M", inicio, fim);
+        assertThat(consultasBrutas).isEmpty();
+    }
+
+    @Test
+    void intervaloNaoAlinhadoVaiAsBrutasSoNasBordas() {
+        LocalDateTime inicio = LocalDateTime.of(2024, 2, 28, 22, 17, 31);
+        LocalDateTime fim = LocalDateTime.of(2024, 3, 4, 3, 8, 12);
+
+        assertThat(contar(inicio, fim)).isEqualTo(contarDireto(inicio, fim));
+        // 2024 é bissexto: o primeiro dia inteiro é 29/02
+        verify(repositorio).somarQuantidade("D", LocalDateTime.of(2024, 2, 29, 0, 0), LocalDateTime.of(2024, 3, 4, 0, 0));
+        assertThat(consultasBrutas).hasSize(2);
+        consultasBrutas.forEach(c -> assertThat(Duration.between(c[0], c[1])).isLessThan(Duration.ofMinutes(1)));
+    }
+
+    @Test
+    void intervalosAleatoriosBatemComAContagemDireta() {
+        Random random = new Random(11);
+        for (int i = 0; i < 500; i++) {
+            LocalDateTime inicio = BASE.minusDays(2).plusSeconds(random.nextInt(8 * 24 * 3600));
+            LocalDateTime fim = inicio.plusSeconds(random.nextInt(4 * 24 * 3600));
+            assertThat(contar(inicio, fim)).as("[%s, %s)", inicio, fim).isEqualTo(contarDireto(inicio, fim));
+        }
+    }
+
+    @Test
+    void fimNuloContaAteORegistroMaisRecente() {
+        LocalDateTime agora = LocalDateTime.now();
+        horarios.clear();
+        Random random = new Random(3);
+        for (int i = 0; i < 2000; i++) {
+            horarios.add(agora.minusSeconds(1 + random.nextInt(5 * 24 * 3600)));
+        }
+        LocalDateTime inicio = agora.minusDays(3).minusMinutes(17).minusSeconds(9);
+
+        assertThat(contar(inicio, null)).isEqualTo(contarDireto(inicio, null));
+    }
+
+    @Test
+    void intervaloMenorQueUmMinutoVaiDiretoAsBrutas() {
+        LocalDateTime inicio = BASE.plusHours(10).plusMinutes(5).plusSeconds(10);
+        LocalDateTime fim = inicio.plusSeconds(40);
+
+        assertThat(contar(inicio, fim)).isEqualTo(contarDireto(inicio, fim));
+        verify(repositorio, never()).somarQuantidade(anyString(), any(), any());
+        assertThat(consultasBrutas).hasSize(1);
+        assertThat(consultasBrutas.get(0)).containsExactly(inicio, fim);
+    }
+
+    @Test
+    void intervaloVazioOuInvertidoContaZero() {
+        assertThat(contar(BASE, BASE)).isZero();
+        assertThat(contar(BASE.plusHours(1), BASE)).isZero();
+    }
+
+    @Test
+    void tetoMantemHorarioAlinhadoEAvancaOsDemais() {
+        assertThat(Resolucao.HORA.teto(BASE.plusHours(3))).isEqualTo(BASE.plusHours(3));
+        assertThat(Resolucao.HORA.teto(BASE.plusHours(3).plusSeconds(1))).isEqualTo(BASE.plusHours(4));
+        assertThat(Resolucao.MINUTO.teto(BASE.plusNanos(1))).isEqualTo(BASE.plusMinutes(1));
+        assertThat(Resolucao.DIA.teto(BASE.minusMinutes(1))).isEqualTo(BASE);
+    }
+
+    @Test
+    void resolucaoParaEscolheAMaisFinaDentroDoLimiteDePontos() {
+        assertThat(servico.resolucaoPara(BASE, BASE.plusHours(2))).isEqualTo(Resolucao.MINUTO);
+        assertThat(servico.resolucaoPara(BASE, BASE.plusMinutes(1500))).isEqualTo(Resolucao.MINUTO);
+        assertThat(servico.resolucaoPara(BASE, BASE.plusMinutes(1501))).isEqualTo(Resolucao.HORA);
+        assertThat(servico.resolucaoPara(BASE, BASE.plusDays(3))).isEqualTo(Resolucao.HORA);
+        assertThat(servico.resolucaoPara(BASE, BASE.plusYears(1))).isEqualTo(Resolucao.DIA);
+        // Acima do limite até em dias: fica com a mais grossa
+        assertThat(servico.resolucaoPara(BASE, BASE.plusYears(10))).isEqualTo(Resolucao.DIA);
+    }
+
+    @Test
+    void faixasJuntamBaldesConsecutivos() {
+        TreeSet<LocalDateTime> inicios = new TreeSet<>(List.of(
+                BASE, BASE.plusMinutes(1), BASE.plusMinutes(2), BASE.plusMinutes(10), BASE.plusMinutes(12)));
+
+        List<LocalDateTime[]> faixas = DeteccaoRollupService.faixas(Resolucao.MINUTO, inicios);
+
+        assertThat(faixas).hasSize(3);
+        assertThat(faixas.get(0)).containsExactly(BASE, BASE.plusMinutes(3));
+        assertThat(faixas.get(1)).containsExactly(BASE.plusMinutes(10), BASE.plusMinutes(11));
+        assertThat(faixas.get(2)).containsExactly(BASE.plusMinutes(12), BASE.plusMinutes(13));
+    }
+
+    @Test
+    void faixasDemaisViramUmaSoDoPrimeiroAoUltimoBalde() {
+        TreeSet<LocalDateTime> inicios = new TreeSet<>();
+        for (int i = 0; i < 60; i++) {
+            inicios.add(BASE.plusHours(2L * i));
+        }
+
+        List<LocalDateTime[]> faixas = DeteccaoRollupService.faixas(Resolucao.HORA, inicios);
+
+        assertThat(faixas).hasSize(1);
+        assertThat(faixas.get(0)).containsExactly(BASE, BASE.plusHours(119));
+    }
+
+    private long contar(LocalDateTime inicio, LocalDateTime fim) {
+        return servico.contar(inicio, fim, Resolucao.values().length - 1);
+    }
+
+    private long contarDireto(LocalDateTime inicio, LocalDateTime fim) {
+        return horarios.stream()
+                .filter(h -> !h.isBefore(inicio) && (fim == null || h.isBefore(fim)))
+                .count();
+    }
+
+    private static Resolucao resolucao(String codigo) {
+        return switch (codigo) {
+            case "M" -> Resolucao.MINUTO;
+            case "H" -> Resolucao.HORA;
+            default -> Resolucao.DIA;
+        };
+    }
+}
@@ -0,0 +1,181 @@
+package br.com.fiap.smartlocation.service;
+
+import br.com.fiap.smartlocation.dto.MovimentacaoDTO;
+import br.com.fiap.smartlocation.model.DeteccaoMoto;
+import br.com.fiap.smartlocation.model.Moto;
+import br.com.fiap.smartlocation.repository.DeteccaoMotoRepository;
+import br.com.fiap.smartlocation.repository.MovimentacaoJdbcRepository;
+import br.com.fiap.smartlocation.service.RegrasMovimentacaoService.Poligono;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Teste de ponto nos polígonos das zonas e geração de ENTRADA/SAIDA a partir das detecções
+ */
+class RegrasMovimentacaoServiceTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 8, 0);
+    private static final Long MOTO = 7L;
+
+    private final Poligono quadrado = Poligono.ler("0,0; 10,0; 10,10; 0,10");
+    // "U": o entalhe entre x=10 e x=20, acima de y=10, fica fora
+    private final Poligono u = Poligono.ler("0,0;30,0;30,30;20,30;20,10;10,10;10,30;0,30");
+
+    private CacheCatalogoService catalogo;
+    private RegrasMovimentacaoService servico;
+
+    @BeforeEach
+    void preparar() {
+        catalogo = mock(CacheCatalogoService.class);
+        when(catalogo.buscarMoto(anyLong())).thenReturn(Optional.empty());
+        when(catalogo.buscarMoto(MOTO)).thenReturn(Optional.of(new Moto()));
+        servico = new RegrasMovimentacaoService(mock(MovimentacaoService.class), mock(MovimentacaoJdbcRepository.class),
+                mock(DeteccaoMotoRepository.class), catalogo);
+        ReflectionTestUtils.setField(servico, "confirmacoes", 2);
+        ReflectionTestUtils.setField(servico, "poligonoPadrao", quadrado);
+    }
+
+    @AfterEach
+    void encerrar() throws InterruptedException {
+        servico.encerrar();
+    }
+
+    @Test
+    void pontosDentroEForaDoPoligono() {
+        assertThat(quadrado.contem(5, 5)).isTrue();
+        assertThat(quadrado.contem(0.01, 9.99)).isTrue();
+        assertThat(quadrado.contem(11, 5)).isFalse();
+        assertThat(quadrado.contem(-1, 5)).isFalse();
+        assertThat(quadrado.contem(5, 11)).isFalse();
+        assertThat(quadrado.contem(5, -0.01)).isFalse();
+    }
+
+    @Test
+    void pontoNaBordaPertenceAUmSoDeDoisPoligonosVizinhos() {
+        Poligono vizinho = Poligono.ler("10,0;20,0;20,10;10,10");
+        for (double y : new double[]{0, 2.5, 5, 9.99}) {
+            assertThat(quadrado.contem(10, y)).as("y=%s", y).isNotEqualTo(vizinho.contem(10, y));
+        }
+        // Bordas esquerda/inferior contam como dentro, direita/superior como fora
+        assertThat(quadrado.contem(0, 5)).isTrue();
+        assertThat(quadrado.contem(5, 0)).isTrue();
+        assertThat(quadrado.contem(10, 5)).isFalse();
+        assertThat(quadrado.contem(5, 10)).isFalse();
+    }
+
+    @Test
+    void poligonoConcavo() {
+        assertThat(u.contem(5, 20)).isTrue();
+        assertThat(u.contem(25, 20)).isTrue();
+        assertThat(u.contem(15, 5)).isTrue();
+        // Dentro do retângulo envolvente, mas no entalhe
+        assertThat(u.contem(15, 20)).isFalse();
+        assertThat(u.contem(15, 29)).isFalse();
+        assertThat(u.contem(15, 10)).isFalse();
+    }
+
+    @Test
+    void zonaComMenosDeTresVerticesOuVerticeInvalidoERecusada() {
+        assertThatThrownBy(() -> Poligono.ler("0,0;10,0")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> Poligono.ler("0,0;10;10,10")).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void primeiraDeteccaoSoDefineOLado() {
+        servico.aplicarRegras(lista(deteccao(5, 5, 0)));
+
+        assertThat(pendentes()).isEmpty();
+    }
+
+    @Test
+    void saidaConfirmadaGeraUmaMovimentacao() {
+        servico.aplicarRegras(lista(deteccao(5, 5, 0), deteccao(15, 5, 1), deteccao(16, 5, 2), deteccao(17, 5, 3)));
+
+        assertThat(pendentes()).hasSize(1);
+        MovimentacaoDTO saida = pendentes().get(0);
+        assertThat(saida.getMotoId()).isEqualTo(MOTO);
+        assertThat(saida.getTipoEvento()).isEqualTo(MovimentacaoService.SAIDA);
+        // Horário da detecção que confirmou a mudança de lado
+        assertThat(saida.getDtEvento()).isEqualTo(T0.plusSeconds(2));
+    }
+
+    @Test
+    void oscilacaoNaBordaNaoGeraMovimentacao() {
+        servico.aplicarRegras(lista(deteccao(9, 5, 0), deteccao(10.5, 5, 1), deteccao(9.5, 5, 2),
+                deteccao(10.2, 5, 3), deteccao(9.8, 5, 4), deteccao(10.1, 5, 5), deteccao(9.9, 5, 6)));
+
+        assertThat(pendentes()).isEmpty();
+
+        // Duas seguidas do outro lado confirmam a saída, e a volta também precisa de duas
+        servico.aplicarRegras(lista(deteccao(11, 5, 7), deteccao(12, 5, 8), deteccao(9, 5, 9)));
+
+        assertThat(pendentes()).extracting(MovimentacaoDTO::getTipoEvento).containsExactly(MovimentacaoService.SAIDA);
+    }
+
+    @Test
+    void loteForaDeOrdemEAvaliadoEmOrdemCronologica() {
+        servico.aplicarRegras(lista(deteccao(16, 5, 3), deteccao(5, 5, 0), deteccao(15, 5, 2), deteccao(4, 4, 1)));
+
+        assertThat(pendentes()).hasSize(1);
+        assertThat(pendentes().get(0).getTipoEvento()).isEqualTo(MovimentacaoService.SAIDA);
+        assertThat(pendentes().get(0).getDtEvento()).isEqualTo(T0.plusSeconds(3));
+    }
+
+    @Test
+    void deteccaoAnteriorAUltimaAvaliadaEIgnorada() {
+        servico.aplicarRegras(lista(deteccao(5, 5, 10)));
+        // Chegam depois, mas são anteriores: não podem tirar a moto do pátio
+        servico.aplicarRegras(lista(deteccao(15, 5, 1), deteccao(16, 5, 2)));
+
+        assertThat(pendentes()).isEmpty();
+        assertThat(servico.getMetricas().get("ignoradas")).isEqualTo(2L);
+
+        servico.aplicarRegras(lista(deteccao(15, 5, 11), deteccao(16, 5, 12)));
+
+        assertThat(pendentes()).extracting(MovimentacaoDTO::getTipoEvento).containsExactly(MovimentacaoService.SAIDA);
+    }
+
+    @Test
+    void motoNaoCadastradaOuSemZonaNaoGeraMovimentacao() {
+        DeteccaoMoto rastreador = deteccao(5, 5, 0);
+        rastreador.setIdMoto(99L);
+        servico.aplicarRegras(lista(rastreador));
+
+        ReflectionTestUtils.setField(servico, "poligonoPadrao", null);
+        servico.aplicarRegras(lista(deteccao(5, 5, 1), deteccao(15, 5, 2), deteccao(16, 5, 3)));
+
+        assertThat(pendentes()).isEmpty();
+        assertThat(servico.getMetricas().get("ignoradas")).isEqualTo(4L);
+    }
+
+    private static DeteccaoMoto deteccao(double x, double y, int segundos) {
+        DeteccaoMoto d = new DeteccaoMoto();
+        d.setIdMoto(MOTO);
+        d.setPosicaoX(x);
+        d.setPosicaoY(y);
+        d.setHorarioRegistro(T0.plusSeconds(segundos));
+        return d;
+    }
+
+    private static List<DeteccaoMoto> lista(DeteccaoMoto... deteccoes) {
+        return new ArrayList<>(List.of(deteccoes));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<MovimentacaoDTO> pendentes() {
+        return (List<MovimentacaoDTO>) ReflectionTestUtils.getField(servico, "pendentes");
+    }
+}
@@ -18,6 +18,7 @@ DROP TABLE manutencao CASCADE CONSTRAINTS;
 DROP TABLE moto CASCADE CONSTRAINTS;
 DROP TABLE patio CASCADE CONSTRAINTS;
 DROP TABLE usuario CASCADE CONSTRAINTS;
+DROP TABLE DETECCOES_ROLLUP CASCADE CONSTRAINTS;
 DROP TABLE DETECCOES_MOTO CASCADE CONSTRAINTS;
 
 -- ========================================================================
@@ -54,6 +55,9 @@ CREATE TABLE posicao (
   FOREIGN KEY (moto_id) REFERENCES moto(id)
 );
 
+-- Histórico por moto em ordem cronológica (trajetória e paginação por cursor)
+CREATE INDEX idx_posicao_moto_dt ON posicao (moto_id, dt_posicao, id);
+
 -- Movimentações (CORRIGIDO: timestamp → dt_evento para consistência)
 CREATE TABLE movimentacao (
   id NUMBER GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
@@ -104,6 +108,19 @@ CREATE TABLE DETECCOES_MOTO (
     HORARIO_REGISTRO   DATE DEFAULT SYSDATE
 );
 
+CREATE INDEX IDX_DETECCOES_HORARIO ON DETECCOES_MOTO (HORARIO_REGISTRO);
+
+-- Agregados das detecções por minuto (M), hora (H) e dia (D) e por pátio da moto (0 = sem pátio)
+CREATE TABLE DETECCOES_ROLLUP (
+    RESOLUCAO          CHAR(1) NOT NULL CHECK (RESOLUCAO IN ('M', 'H', 'D')),
+    INICIO             DATE NOT NULL,
+    PATIO_ID           NUMBER DEFAULT 0 NOT NULL,
+    QUANTIDADE         NUMBER DEFAULT 0 NOT NULL,
+    SOMA_CONFIANCA     NUMBER DEFAULT 0 NOT NULL,
+    CELULAS_OCUPADAS   NUMBER DEFAULT 0 NOT NULL,
+    CONSTRAINT PK_DETECCOES_ROLLUP PRIMARY KEY (RESOLUCAO, INICIO, PATIO_ID)
+);
+
 -- ========================================================================
 -- INSERÇÃO DE DADOS DE EXEMPLO
 -- ========================================================================
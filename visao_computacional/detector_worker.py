@@ -0,0 +1,281 @@
+"""
+SmartLocation - Worker de detecção residente
+
+Processo de longa duração que carrega o modelo YOLO uma única vez e atende
+jobs de análise recebidos pela entrada padrão, um JSON por linha:
+
+    {"id": "job-1", "video": "/caminho/video.mp4", "saida": "/caminho/runs/track",
+     "grafico": "/caminho/runs/analise_detalhada"}
+
+Opcionalmente o job cobre só um trecho do vídeo: "inicio" e "fim" (quadros, fim exclusivo)
+delimitam o que é analisado e "gravar_desde" o primeiro quadro gravado no vídeo anotado.
+Os quadros anteriores a ele servem apenas para aquecer o rastreador (sobreposição entre trechos).
+O campo "quadro" das detecções é sempre o índice absoluto no vídeo.
+
+Comandos auxiliares usados na análise em trechos:
+
+    {"comando": "INFO", "id": "...", "video": "..."}               -> {"frames": <quadros do vídeo>}
+    {"comando": "MESCLAR", "id": "...", "videos": [...], "destino": "...", "json": "...", "grafico": "..."}
+        concatena os vídeos anotados dos trechos e gera o gráfico a partir do JSON já mesclado
+
+Durante o job as detecções de cada frame são acrescentadas (e descarregadas em disco)
+em <saida>/deteccoes.ndjson, um objeto por linha, para consumo incremental pelo Java.
+
+Ao final de cada job escreve uma linha JSON na saída padrão:
+
+    {"id": "job-1", "status": "SUCESSO", "video": "...", "json": "...", "grafico": "...", "total": 123}
+
+A saída padrão é reservada ao protocolo; logs vão para a saída de erro.
+"""
+import json
+import os
+import sys
+import traceback
+
+import cv2
+import numpy as np
+from ultralytics import YOLO
+
+# Mesmos parâmetros da célula 5 do notebook
+CONF = 0.01
+IOU = 0.6
+MAX_DET = 800
+CLASSES = [3]        # COCO id 3 = motorcycle
+IMG_SIZE = 1280
+DEDUP_DIST = 60.0
+
+
+def log(msg):
+    print(msg, file=sys.stderr, flush=True)
+
+
+def responder(payload):
+    sys.stdout.write(json.dumps(payload) + "\n")
+    sys.stdout.flush()
+
+
+def filtrar_motos_proximas_indices(xyxy, confs, distancia_minima=DEDUP_DIST):
+    """Deduplicação gulosa por distância entre centros (mantém a maior confiança)"""
+    if xyxy is None or len(xyxy) == 0:
+        return np.array([], dtype=int)
+
+    centers = np.column_stack(((xyxy[:, 0] + xyxy[:, 2]) * 0.5, (xyxy[:, 1] + xyxy[:, 3]) * 0.5))
+    order = np.argsort(-confs)
+    keep = []
+    suprimido = np.zeros(len(xyxy), dtype=bool)
+    r2 = distancia_minima * distancia_minima
+
+    for idx in order:
+        if suprimido[idx]:
+            continue
+        keep.append(idx)
+        dx = centers[:, 0] - centers[idx, 0]
+        dy = centers[:, 1] - centers[idx, 1]
+        suprimido |= (dx * dx + dy * dy) < r2
+
+    return np.array(keep, dtype=int)
+
+
+def detectar_dispositivo():
+    try:
+        import torch
+        if torch.cuda.is_available():
+            return 0, True
+    except Exception:
+        pass
+    return 'cpu', False
+
+
+def salvar_grafico(deteccoes, w, h, grafico_dir):
+    """Gráfico simplificado (posições e distribuição de confiança) para a página de análise"""
+    try:
+        import matplotlib
+        matplotlib.use('Agg')
+        import matplotlib.pyplot as plt
+    except Exception:
+        log("matplotlib indisponível, gráfico não gerado")
+        return None
+
+    os.makedirs(grafico_dir, exist_ok=True)
+    xs = [d['posicaoX'] for d in deteccoes]
+    ys = [d['posicaoY'] for d in deteccoes]
+    confs = [d['confianca'] for d in deteccoes]
+
+    fig, (ax1, ax2) = plt.subplots(1, 2, figsize=(14, 6))
+    fig.suptitle('Análise SmartLocation - Detecção de Motos', fontsize=16, fontweight='bold')
+    sc = ax1.scatter(xs, ys, c=confs, cmap='viridis', alpha=0.7, s=40)
+    ax1.set_xlim(0, w)
+    ax1.set_ylim(0, h)
+    ax1.set_title('Posições das Motos')
+    plt.colorbar(sc, ax=ax1)
+    ax2.hist(confs, bins=20, color='skyblue', edgecolor='navy')
+    ax2.set_title('Distribuição de Confiança')
+
+    caminho = os.path.join(grafico_dir, 'grafico_analise.png')
+    fig.savefig(caminho, dpi=150, bbox_inches='tight')
+    plt.close(fig)
+    return caminho
+
+
+def reiniciar_rastreador(model):
+    """Zera o estado do ByteTrack (e a numeração dos IDs) antes de um novo vídeo ou trecho"""
+    for tracker in getattr(model.predictor, 'trackers', None) or []:
+        tracker.reset()
+
+
+def quadros(cap, inicio, fim):
+    """Quadros de [inicio, fim) com seu índice absoluto (fim None = até o final)"""
+    if inicio > 0:
+        cap.set(cv2.CAP_PROP_POS_FRAMES, inicio)
+    quadro = inicio
+    while fim is None or quadro < fim:
+        ok, frame = cap.read()
+        if not ok:
+            break
+        yield quadro, frame
+        quadro += 1
+
+
+def contar_quadros(video_path):
+    cap = cv2.VideoCapture(video_path)
+    try:
+        return int(cap.get(cv2.CAP_PROP_FRAME_COUNT))
+    finally:
+        cap.release()
+
+
+def processar_job(model, device, half, job):
+    video_path = job['video']
+    saida_dir = job['saida']
+    os.makedirs(saida_dir, exist_ok=True)
+    inicio = int(job.get('inicio') or 0)
+    fim = job.get('fim')
+    gravar_desde = int(job.get('gravar_desde') or inicio)
+
+    cap = cv2.VideoCapture(video_path)
+    fps = cap.get(cv2.CAP_PROP_FPS) or 30
+    w = int(cap.get(cv2.CAP_PROP_FRAME_WIDTH))
+    h = int(cap.get(cv2.CAP_PROP_FRAME_HEIGHT))
+
+    base = os.path.splitext(os.path.basename(video_path))[0]
+    output_path = os.path.join(saida_dir, f"{base}_motos.mp4")
+    writer = cv2.VideoWriter(output_path, cv2.VideoWriter_fourcc(*'mp4v'), fps, (w, h))
+
+    deteccoes = []
+    frames = 0
+    ndjson = open(os.path.join(saida_dir, 'deteccoes.ndjson'), 'w', encoding='utf-8')
+    # Um quadro por chamada com persist=True: o rastreador é mantido ao longo do trecho
+    # e reiniciado explicitamente a cada job (o modelo continua carregado)
+    reiniciar_rastreador(model)
+
+    for quadro, original in quadros(cap, inicio, fim):
+        r = model.track(source=original, conf=CONF, iou=IOU, max_det=MAX_DET, classes=CLASSES,
+                        tracker='bytetrack.yaml', persist=True, save=False,
+                        imgsz=IMG_SIZE, device=device, half=half, verbose=False)[0]
+        frames += 1
+        frame = original.copy()
+        inicio_frame = len(deteccoes)
+        boxes = r.boxes
+        if boxes is not None and len(boxes) > 0:
+            xyxy = boxes.xyxy.cpu().numpy()
+            confs = boxes.conf.cpu().numpy()
+            ids_arr = boxes.id.cpu().numpy().reshape(-1) if boxes.id is not None else None
+
+            for i in filtrar_motos_proximas_indices(xyxy, confs):
+                x1, y1, x2, y2 = map(int, xyxy[i])
+                tid = int(ids_arr[i]) if ids_arr is not None and np.isfinite(ids_arr[i]) else None
+                deteccoes.append({
+                    'idMoto': tid,
+                    'placaVirtual': f"DET-{len(deteccoes) + 1:04d}",
+                    'posicaoX': float((x1 + x2) / 2),
+                    'posicaoY': float((y1 + y2) / 2),
+                    'confianca': float(confs[i]),
+                    'status': 'PENDENTE',
+                    'quadro': quadro,
+                })
+                cv2.rectangle(frame, (x1, y1), (x2, y2), (0, 140, 255), 2)
+        if quadro >= gravar_desde:
+            writer.write(frame)
+
+        if len(deteccoes) > inicio_frame:
+            ndjson.write(''.join(json.dumps(d) + '\n' for d in deteccoes[inicio_frame:]))
+            ndjson.flush()
+
+    cap.release()
+    writer.release()
+    ndjson.close()
+
+    json_path = os.path.join(saida_dir, 'deteccoes.json')
+    with open(json_path, 'w', encoding='utf-8') as f:
+        json.dump(deteccoes, f)
+
+    grafico = None
+    if job.get('grafico') and deteccoes:
+        grafico = salvar_grafico(deteccoes, w, h, job['grafico'])
+
+    log(f"Job {job['id']}: {frames} frames, {len(deteccoes)} detecções")
+    return {'video': output_path, 'json': json_path, 'grafico': grafico, 'total': len(deteccoes), 'frames': frames}
+
+
+def mesclar_trechos(job):
+    """Concatena os vídeos anotados dos trechos (em ordem) e gera o gráfico das detecções mescladas"""
+    destino = job['destino']
+    writer = None
+    w = h = 0
+    for caminho in job['videos']:
+        cap = cv2.VideoCapture(caminho)
+        if writer is None:
+            fps = cap.get(cv2.CAP_PROP_FPS) or 30
+            w = int(cap.get(cv2.CAP_PROP_FRAME_WIDTH))
+            h = int(cap.get(cv2.CAP_PROP_FRAME_HEIGHT))
+            writer = cv2.VideoWriter(destino, cv2.VideoWriter_fourcc(*'mp4v'), fps, (w, h))
+        while True:
+            ok, frame = cap.read()
+            if not ok:
+                break
+            writer.write(frame)
+        cap.release()
+    if writer is not None:
+        writer.release()
+
+    with open(job['json'], encoding='utf-8') as f:
+        deteccoes = json.load(f)
+    grafico = None
+    if job.get('grafico') and deteccoes:
+        grafico = salvar_grafico(deteccoes, w, h, job['grafico'])
+
+    log(f"Job {job['id']}: {len(job['videos'])} trechos mesclados, {len(deteccoes)} detecções")
+    return {'video': destino, 'json': job['json'], 'grafico': grafico, 'total': len(deteccoes)}
+
+
+def main():
+    pesos = sys.argv[1] if len(sys.argv) > 1 else 'yolov8m.pt'
+    device, half = detectar_dispositivo()
+    log(f"Carregando modelo {pesos} (device={device}, half={half})")
+    model = YOLO(pesos)
+    responder({'evento': 'PRONTO', 'modelo': pesos})
+
+    for linha in sys.stdin:
+        linha = linha.strip()
+        if not linha:
+            continue
+        job = None
+        try:
+            job = json.loads(linha)
+            comando = job.get('comando')
+            if comando == 'ENCERRAR':
+                break
+            if comando == 'INFO':
+                resultado = {'frames': contar_quadros(job['video'])}
+            elif comando == 'MESCLAR':
+                resultado = mesclar_trechos(job)
+            else:
+                resultado = processar_job(model, device, half, job)
+            responder({'id': job['id'], 'status': 'SUCESSO', **resultado})
+        except Exception as e:
+            traceback.print_exc(file=sys.stderr)
+            responder({'id': job.get('id') if isinstance(job, dict) else None, 'status': 'ERRO', 'mensagem': str(e)})
+
+
+if __name__ == '__main__':
+    main()